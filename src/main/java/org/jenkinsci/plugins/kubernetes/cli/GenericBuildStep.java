@@ -10,12 +10,21 @@ import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.model.Computer;
 import hudson.model.Item;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.security.ACL;
 import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.DiscoveryPrewarmer;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigCleaner;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigTimingsAction;
 import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
 import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriterFactory;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubectlCache;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubectlProxy;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.MultiKubeConfigWriter;
 import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
 import org.jenkinsci.plugins.plaincredentials.FileCredentials;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
@@ -34,21 +43,64 @@ import java.util.stream.Collectors;
 public class GenericBuildStep extends AbstractStepExecutionImpl {
     private static final long serialVersionUID = 1L;
     private transient List<KubectlCredential> kubectlCredentials;
+    private transient boolean mergeKubeConfigs;
+    private transient String functionName;
+    private transient boolean inheritKubeConfig;
+    private transient boolean prewarmDiscovery;
+    private transient boolean localProxy;
 
     public GenericBuildStep(List<KubectlCredential> credentials, StepContext context) {
         super(context);
         this.kubectlCredentials = credentials;
     }
 
+    /**
+     * Merge the kubeconfigs of all the credentials into a single file.
+     */
+    public void setMergeKubeConfigs(boolean mergeKubeConfigs) {
+        this.mergeKubeConfigs = mergeKubeConfigs;
+    }
+
+    /**
+     * Put the kubeconfig files in front of the ones of the enclosing blocks, instead of replacing them.
+     */
+    public void setInheritKubeConfig(boolean inheritKubeConfig) {
+        this.inheritKubeConfig = inheritKubeConfig;
+    }
+
+    /**
+     * Name of the step, under which the timings of the block are recorded.
+     */
+    public void setFunctionName(String functionName) {
+        this.functionName = functionName;
+    }
+
+    /**
+     * Fetch the discovery documents of the clusters into the kubectl cache while the body starts.
+     */
+    public void setPrewarmDiscovery(boolean prewarmDiscovery) {
+        this.prewarmDiscovery = prewarmDiscovery;
+    }
+
+    /**
+     * Run the kubectl calls of the body through local proxies, see {@link KubectlProxy}.
+     */
+    public void setLocalProxy(boolean localProxy) {
+        this.localProxy = localProxy;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean start() throws Exception {
-        List<String> configFiles = new ArrayList<String>();
-
         boolean skipUseContext = this.kubectlCredentials.size() >= 2;
+        KubeConfigEnvironment environment = KubeConfigEnvironment.of(getContext());
+        environment.prefetchCredentials(this.kubectlCredentials.stream()
+                .map(cred -> cred.credentialsId)
+                .collect(Collectors.toList()));
 
+        List<KubeConfigWriter> kubeConfigWriters = new ArrayList<KubeConfigWriter>();
         for(KubectlCredential cred: this.kubectlCredentials) {
             KubeConfigWriter kubeConfigWriter = KubeConfigWriterFactory.get(
                     cred.serverUrl,
@@ -58,21 +110,55 @@ public class GenericBuildStep extends AbstractStepExecutionImpl {
                     cred.contextName,
                     cred.namespace,
                     skipUseContext,
-                    getContext());
+                    environment);
+            kubeConfigWriter.setPruneKubeConfig(cred.pruneKubeConfig);
 
-            configFiles.add(kubeConfigWriter.writeKubeConfig());
+            kubeConfigWriters.add(kubeConfigWriter);
         }
+        MultiKubeConfigWriter multiKubeConfigWriter = new MultiKubeConfigWriter(kubeConfigWriters,
+                environment.getWorkspace(),
+                getContext().get(TaskListener.class));
+
+        List<String> configFiles;
+        if (mergeKubeConfigs) {
+            configFiles = Collections.singletonList(multiKubeConfigWriter.writeMergedKubeConfig());
+        } else {
+            configFiles = multiKubeConfigWriter.writeKubeConfigs();
+        }
+        int invocationId = KubeConfigTimingsAction.record(environment.getBuild(), multiKubeConfigWriter.getInvocation(functionName));
+
+        TaskListener listener = getContext().get(TaskListener.class);
+        Map<String, String> proxies = Collections.emptyMap();
+        String cacheDirectory;
+        try {
+            if (localProxy) {
+                proxies = KubectlProxy.start(environment.getWorkspace(), configFiles, listener);
+            }
+            cacheDirectory = KubectlCache.get().prepare(environment.getWorkspace(), proxies.values());
+            if (prewarmDiscovery) {
+                EnvVars envVars = getContext().get(EnvVars.class);
+                String inheritedCacheDirectory = envVars == null || !proxies.isEmpty() ? null : envVars.get(KubectlCache.ENV_VARIABLE_NAME);
+                DiscoveryPrewarmer.start(environment.getWorkspace(), configFiles,
+                        inheritedCacheDirectory == null || inheritedCacheDirectory.isEmpty() ? cacheDirectory : inheritedCacheDirectory,
+                        listener);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            KubectlProxy.stop(environment.getWorkspace(), new ArrayList<>(proxies.keySet()), listener);
+            KubeConfigCleaner.get().cleanup(getNodeName(), environment.getWorkspace(), configFiles, listener);
+            throw e;
+        }
+        List<String> proxyIds = proxies.isEmpty() ? null : new ArrayList<>(proxies.keySet());
 
         // Prepare a new environment
         String configFileList = String.join(File.pathSeparator, configFiles);
         EnvironmentExpander envExpander = EnvironmentExpander.merge(
                 getContext().get(EnvironmentExpander.class),
-                new KubeConfigExpander(configFileList));
+                new KubeConfigExpander(configFileList, inheritKubeConfig, cacheDirectory, !proxies.isEmpty()));
 
         // Execute the commands in the body within this environment
         getContext().newBodyInvoker()
                 .withContext(envExpander)
-                .withCallback(new Callback(configFiles))
+                .withCallback(new Callback(getNodeName(), configFiles, invocationId, proxyIds))
                 .start();
 
         return false;
@@ -86,19 +172,34 @@ public class GenericBuildStep extends AbstractStepExecutionImpl {
         getContext().onFailure(cause);
     }
 
+    private String getNodeName() throws IOException, InterruptedException {
+        Computer computer = getContext().get(Computer.class);
+        return computer == null ? null : computer.getName();
+    }
+
     private static final class Callback extends BodyExecutionCallback.TailCall {
         private static final long serialVersionUID = 1L;
+        private final String nodeName;
         private final List<String> configFiles;
+        private final Integer invocationId;
+        private final List<String> proxyIds;
 
-        Callback(List<String> configFiles) {
+        Callback(String nodeName, List<String> configFiles, Integer invocationId, List<String> proxyIds) {
+            this.nodeName = nodeName;
             this.configFiles = configFiles;
+            this.invocationId = invocationId;
+            this.proxyIds = proxyIds;
         }
 
         protected void finished(StepContext context) throws Exception {
-            for(String configFile : configFiles) {
-                context.get(FilePath.class).child(configFile).delete();
+            KubectlProxy.stop(context.get(FilePath.class), proxyIds, context.get(TaskListener.class));
+            long start = System.nanoTime();
+            KubeConfigCleaner.get().cleanup(nodeName, context.get(FilePath.class), configFiles, context.get(TaskListener.class));
+            Run<?, ?> run = context.get(Run.class);
+            // callbacks serialized before timings were recorded have no invocation
+            if (invocationId != null && run != null) {
+                KubeConfigTimingsAction.recordCleanup(run, invocationId, start);
             }
-            context.get(TaskListener.class).getLogger().println("kubectl configuration cleaned up");
         }
 
     }
@@ -3,6 +3,10 @@ package org.jenkinsci.plugins.kubernetes.cli;
 import hudson.EnvVars;
 import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
 import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubectlCache;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,13 +20,56 @@ final class KubeConfigExpander extends EnvironmentExpander {
 
     private final Map<String, String> overrides;
 
+    /**
+     * Whether the files are put in front of the ones of the enclosing blocks, instead of replacing them.
+     */
+    private final boolean inherit;
+
+    /**
+     * Managed kubectl cache folder, only used if the block does not have one already.
+     */
+    private final String cacheDirectory;
+
+    /**
+     * Whether the managed cache folder replaces the one of the block, for blocks running kubectl through local proxies.
+     */
+    private final boolean replaceCacheDirectory;
+
     KubeConfigExpander(String path) {
+        this(path, false);
+    }
+
+    KubeConfigExpander(String path, boolean inherit) {
+        this(path, inherit, null);
+    }
+
+    KubeConfigExpander(String path, boolean inherit, @CheckForNull String cacheDirectory) {
+        this(path, inherit, cacheDirectory, false);
+    }
+
+    KubeConfigExpander(String path, boolean inherit, @CheckForNull String cacheDirectory, boolean replaceCacheDirectory) {
         this.overrides = new HashMap<>();
         this.overrides.put(KubeConfigWriter.ENV_VARIABLE_NAME, path);
+        this.inherit = inherit;
+        this.cacheDirectory = cacheDirectory;
+        this.replaceCacheDirectory = replaceCacheDirectory;
     }
 
     @Override
     public void expand(EnvVars env) throws IOException, InterruptedException {
-        env.overrideAll(overrides);
+        if (cacheDirectory != null) {
+            String current = env.get(KubectlCache.ENV_VARIABLE_NAME);
+            if (replaceCacheDirectory || current == null || current.isEmpty()) {
+                env.override(KubectlCache.ENV_VARIABLE_NAME, cacheDirectory);
+            }
+        }
+        String inherited = inherit ? env.get(KubeConfigWriter.ENV_VARIABLE_NAME) : null;
+        if (inherited == null || inherited.isEmpty()) {
+            env.overrideAll(overrides);
+            return;
+        }
+        // kubectl gives precedence to the first files, so the inner block wins on name conflicts and current context
+        env.override(KubeConfigWriter.ENV_VARIABLE_NAME,
+                overrides.get(KubeConfigWriter.ENV_VARIABLE_NAME) + File.pathSeparator + inherited);
     }
 }
@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSession;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSessionsAction;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubectlCache;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Runs a block with the kubeconfig of a session opened by {@link KubeConfigSessionStep}. The kubeconfig is only
+ * written the first time the session is used on a node, and left in place for the following blocks.
+ *
+ * @author Max Laverse
+ */
+public class KubeConfigSessionBuildStep extends Step {
+    public final String session;
+
+    @DataBoundConstructor
+    public KubeConfigSessionBuildStep(String session) {
+        this.session = session;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(session, context, getDescriptor().getFunctionName());
+    }
+
+    private static final class Execution extends AbstractStepExecutionImpl {
+        private static final long serialVersionUID = 1L;
+        private final String session;
+        private final transient String functionName;
+
+        Execution(String session, StepContext context, String functionName) {
+            super(context);
+            this.session = session;
+            this.functionName = functionName;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            Run<?, ?> run = getContext().get(Run.class);
+            KubeConfigSession kubeConfigSession = KubeConfigSessionsAction.get(run, session);
+            if (kubeConfigSession == null) {
+                throw new AbortException("Unable to find kubeconfig session '" + session + "'");
+            }
+            KubeConfigEnvironment environment = KubeConfigEnvironment.of(getContext());
+            String path = kubeConfigSession.acquire(environment, getContext().get(TaskListener.class), functionName);
+
+            EnvironmentExpander envExpander = EnvironmentExpander.merge(
+                    getContext().get(EnvironmentExpander.class),
+                    new KubeConfigExpander(path, false, KubectlCache.get().prepare(environment.getWorkspace())));
+            getContext().newBodyInvoker()
+                    .withContext(envExpander)
+                    .withCallback(new Callback(session, KubeConfigSession.nodeName(environment)))
+                    .start();
+            return false;
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            getContext().onFailure(cause);
+        }
+    }
+
+    private static final class Callback extends BodyExecutionCallback.TailCall {
+        private static final long serialVersionUID = 1L;
+        private final String session;
+        private final String nodeName;
+
+        Callback(String session, String nodeName) {
+            this.session = session;
+            this.nodeName = nodeName;
+        }
+
+        @Override
+        protected void finished(StepContext context) throws Exception {
+            Run<?, ?> run = context.get(Run.class);
+            KubeConfigSession kubeConfigSession = run == null ? null : KubeConfigSessionsAction.get(run, session);
+            if (kubeConfigSession != null) {
+                kubeConfigSession.release(nodeName);
+            }
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "Configure Kubernetes CLI (kubectl) from a session";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFunctionName() {
+            return "withKubeConfigSession";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Collections.singleton(Run.class);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSession;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSessionsAction;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Opens a kubeconfig session for the rest of the build, and returns its handle for {@link KubeConfigSessionBuildStep}.
+ * The kubeconfig is written to the current node right away if there is one, and to other nodes by the first block
+ * using it there.
+ *
+ * @author Max Laverse
+ */
+public class KubeConfigSessionStep extends Step {
+
+    @DataBoundSetter
+    public String serverUrl;
+
+    @DataBoundSetter
+    public String credentialsId;
+
+    @DataBoundSetter
+    public String caCertificate;
+
+    @DataBoundSetter
+    public String contextName;
+
+    @DataBoundSetter
+    public String clusterName;
+
+    @DataBoundSetter
+    public String namespace;
+
+    @DataBoundSetter
+    public boolean pruneKubeConfig;
+
+    @DataBoundConstructor
+    public KubeConfigSessionStep() {
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<String> {
+        private static final long serialVersionUID = 1L;
+        private final transient KubeConfigSessionStep step;
+
+        Execution(KubeConfigSessionStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected String run() throws Exception {
+            KubeConfigEnvironment environment = KubeConfigEnvironment.of(getContext());
+            KubeConfigSession session = KubeConfigSessionsAction.open(getContext().get(Run.class), step.serverUrl,
+                    step.credentialsId, step.caCertificate, step.clusterName, step.contextName, step.namespace,
+                    step.pruneKubeConfig);
+            if (environment.getWorkspace() != null) {
+                session.acquire(environment, getContext().get(TaskListener.class), step.getDescriptor().getFunctionName());
+                session.release(KubeConfigSession.nodeName(environment));
+            }
+            return session.getId();
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "Open a Kubernetes CLI (kubectl) configuration session for the whole build";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFunctionName() {
+            return "kubeConfigSession";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Collections.singleton(Run.class);
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@Nonnull @AncestorInPath Item item, @QueryParameter String serverUrl) {
+            return new StandardListBoxModel()
+                    .includeEmptyValue()
+                    .includeMatchingAs(
+                            ACL.SYSTEM,
+                            item,
+                            StandardCredentials.class,
+                            URIRequirementBuilder.fromUri(serverUrl).build(),
+                            KubectlCredential.supportedCredentials);
+        }
+    }
+}
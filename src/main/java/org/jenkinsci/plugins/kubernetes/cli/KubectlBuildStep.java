@@ -52,6 +52,18 @@ public class KubectlBuildStep extends Step {
     @DataBoundSetter
     public String namespace;
 
+    @DataBoundSetter
+    public boolean pruneKubeConfig;
+
+    @DataBoundSetter
+    public boolean inheritKubeConfig;
+
+    @DataBoundSetter
+    public boolean prewarmDiscovery;
+
+    @DataBoundSetter
+    public boolean localProxy;
+
     @DataBoundConstructor
     public KubectlBuildStep() {
     }
@@ -65,11 +77,17 @@ public class KubectlBuildStep extends Step {
         cred.contextName = this.contextName;
         cred.clusterName = this.clusterName;
         cred.namespace = this.namespace;
+        cred.pruneKubeConfig = this.pruneKubeConfig;
 
         List<KubectlCredential> list = new ArrayList<KubectlCredential>();
         list.add(cred);
 
-        return new GenericBuildStep(list, context);
+        GenericBuildStep execution = new GenericBuildStep(list, context);
+        execution.setInheritKubeConfig(inheritKubeConfig);
+        execution.setFunctionName(getDescriptor().getFunctionName());
+        execution.setPrewarmDiscovery(prewarmDiscovery);
+        execution.setLocalProxy(localProxy);
+        return execution;
     }
 
     @Extension
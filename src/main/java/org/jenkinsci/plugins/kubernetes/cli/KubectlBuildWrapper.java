@@ -56,6 +56,9 @@ public class KubectlBuildWrapper extends SimpleBuildWrapper {
     @DataBoundSetter
     public String namespace;
 
+    @DataBoundSetter
+    public boolean pruneKubeConfig;
+
     @DataBoundConstructor
     public KubectlBuildWrapper() {
     }
@@ -74,6 +77,7 @@ public class KubectlBuildWrapper extends SimpleBuildWrapper {
         cred.contextName = this.contextName;
         cred.clusterName = this.clusterName;
         cred.namespace = this.namespace;
+        cred.pruneKubeConfig = this.pruneKubeConfig;
 
         List<KubectlCredential> list = new ArrayList<KubectlCredential>();
         list.add(cred);
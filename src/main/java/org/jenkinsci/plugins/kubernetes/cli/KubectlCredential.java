@@ -58,6 +58,9 @@ public class KubectlCredential extends AbstractDescribableImpl<KubectlCredential
     @DataBoundSetter
     public String namespace;
 
+    @DataBoundSetter
+    public boolean pruneKubeConfig;
+
     @DataBoundConstructor
     public KubectlCredential() {
     }
@@ -0,0 +1,145 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSerializer;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriterFactory;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.ManifestApplier;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Applies manifests server-side with the credentials of the plugin, in-process instead of through kubectl, see
+ * {@link ManifestApplier}. Returns the number of objects applied.
+ *
+ * @author Max Laverse
+ */
+public class KubernetesApplyStep extends Step {
+
+    @DataBoundSetter
+    public String serverUrl;
+
+    @DataBoundSetter
+    public String credentialsId;
+
+    @DataBoundSetter
+    public String caCertificate;
+
+    @DataBoundSetter
+    public String contextName;
+
+    @DataBoundSetter
+    public String clusterName;
+
+    @DataBoundSetter
+    public String namespace;
+
+    @DataBoundSetter
+    public String manifests;
+
+    @DataBoundSetter
+    public String fieldManager = ManifestApplier.DEFAULT_FIELD_MANAGER;
+
+    @DataBoundSetter
+    public boolean forceConflicts;
+
+    @DataBoundSetter
+    public int parallelism = ManifestApplier.DEFAULT_PARALLELISM;
+
+    @DataBoundSetter
+    public int establishedTimeout = ManifestApplier.DEFAULT_ESTABLISHED_TIMEOUT;
+
+    @DataBoundConstructor
+    public KubernetesApplyStep() {
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Integer> {
+        private static final long serialVersionUID = 1L;
+        private final transient KubernetesApplyStep step;
+
+        Execution(KubernetesApplyStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Integer run() throws Exception {
+            if (step.manifests == null || step.manifests.isEmpty()) {
+                throw new AbortException("No manifests given to apply");
+            }
+            KubeConfigEnvironment environment = KubeConfigEnvironment.of(getContext());
+            KubeConfigWriter writer = KubeConfigWriterFactory.get(step.serverUrl, step.credentialsId, step.caCertificate,
+                    step.clusterName, step.contextName, step.namespace, false, environment);
+            // the kubeconfig is sent to the node along with the request, and never written to disk
+            byte[] kubeConfig = KubeConfigSerializer.toBytes(writer.buildKubeConfig());
+            String fieldManager = step.fieldManager == null || step.fieldManager.isEmpty()
+                    ? ManifestApplier.DEFAULT_FIELD_MANAGER : step.fieldManager;
+            return ManifestApplier.apply(getContext().get(FilePath.class), kubeConfig, step.manifests, fieldManager,
+                    step.forceConflicts, step.parallelism, step.establishedTimeout, getContext().get(TaskListener.class));
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "Apply Kubernetes manifests server-side";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFunctionName() {
+            return "kubernetesApply";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(Run.class, FilePath.class, Launcher.class, TaskListener.class));
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@Nonnull @AncestorInPath Item item, @QueryParameter String serverUrl) {
+            return new StandardListBoxModel()
+                    .includeEmptyValue()
+                    .includeMatchingAs(
+                            ACL.SYSTEM,
+                            item,
+                            StandardCredentials.class,
+                            URIRequirementBuilder.fromUri(serverUrl).build(),
+                            KubectlCredential.supportedCredentials);
+        }
+    }
+}
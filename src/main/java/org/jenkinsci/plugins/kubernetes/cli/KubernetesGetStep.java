@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSerializer;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriterFactory;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.ResourceLister;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the objects of a resource with the credentials of the plugin, in-process instead of through kubectl, see
+ * {@link ResourceLister}. Objects are either written to a file of the workspace, and the step returns how many, or
+ * reduced to a few fields, and the step returns a list of maps.
+ *
+ * @author Max Laverse
+ */
+public class KubernetesGetStep extends Step {
+
+    @DataBoundSetter
+    public String serverUrl;
+
+    @DataBoundSetter
+    public String credentialsId;
+
+    @DataBoundSetter
+    public String caCertificate;
+
+    @DataBoundSetter
+    public String contextName;
+
+    @DataBoundSetter
+    public String clusterName;
+
+    @DataBoundSetter
+    public String namespace;
+
+    @DataBoundSetter
+    public String apiVersion = "v1";
+
+    @DataBoundSetter
+    public String kind;
+
+    @DataBoundSetter
+    public boolean allNamespaces;
+
+    @DataBoundSetter
+    public String labelSelector;
+
+    @DataBoundSetter
+    public String fieldSelector;
+
+    @DataBoundSetter
+    public int limit = ResourceLister.DEFAULT_LIMIT;
+
+    @DataBoundSetter
+    public boolean metadataOnly;
+
+    @DataBoundSetter
+    public String file;
+
+    @DataBoundSetter
+    public String fields;
+
+    @DataBoundConstructor
+    public KubernetesGetStep() {
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    /**
+     * @return the fields to select, from a comma-separated list
+     */
+    static List<String> parseFields(String fields) {
+        List<String> parsed = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                parsed.add(field.trim());
+            }
+        }
+        return parsed;
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Object> {
+        private static final long serialVersionUID = 1L;
+        private final transient KubernetesGetStep step;
+
+        Execution(KubernetesGetStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Object run() throws Exception {
+            if (step.kind == null || step.kind.isEmpty()) {
+                throw new AbortException("No kind given to list");
+            }
+            boolean toFile = step.file != null && !step.file.isEmpty();
+            List<String> fields = step.fields == null ? new ArrayList<>() : parseFields(step.fields);
+            if (toFile == !fields.isEmpty()) {
+                throw new AbortException("Exactly one of file or fields must be given");
+            }
+            String apiVersion = step.apiVersion == null || step.apiVersion.isEmpty() ? "v1" : step.apiVersion;
+            int limit = step.limit > 0 ? step.limit : ResourceLister.DEFAULT_LIMIT;
+
+            KubeConfigEnvironment environment = KubeConfigEnvironment.of(getContext());
+            KubeConfigWriter writer = KubeConfigWriterFactory.get(step.serverUrl, step.credentialsId, step.caCertificate,
+                    step.clusterName, step.contextName, step.namespace, false, environment);
+            // the kubeconfig is sent to the node along with the request, and never written to disk
+            byte[] kubeConfig = KubeConfigSerializer.toBytes(writer.buildKubeConfig());
+            FilePath workspace = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            if (toFile) {
+                return ResourceLister.listToFile(workspace, kubeConfig, apiVersion, step.kind, step.allNamespaces,
+                        step.labelSelector, step.fieldSelector, limit, step.metadataOnly, step.file, listener);
+            }
+            return ResourceLister.listFields(workspace, kubeConfig, apiVersion, step.kind, step.allNamespaces,
+                    step.labelSelector, step.fieldSelector, limit, step.metadataOnly, fields, listener);
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "List Kubernetes objects page by page";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFunctionName() {
+            return "kubernetesGet";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(Run.class, FilePath.class, Launcher.class, TaskListener.class));
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@Nonnull @AncestorInPath Item item, @QueryParameter String serverUrl) {
+            return new StandardListBoxModel()
+                    .includeEmptyValue()
+                    .includeMatchingAs(
+                            ACL.SYSTEM,
+                            item,
+                            StandardCredentials.class,
+                            URIRequirementBuilder.fromUri(serverUrl).build(),
+                            KubectlCredential.supportedCredentials);
+        }
+    }
+}
@@ -35,6 +35,18 @@ import java.util.stream.Collectors;
 public class MultiKubectlBuildStep extends Step {
     final transient public List<KubectlCredential> kubectlCredentials;
 
+    @DataBoundSetter
+    public boolean mergeKubeConfigs;
+
+    @DataBoundSetter
+    public boolean inheritKubeConfig;
+
+    @DataBoundSetter
+    public boolean prewarmDiscovery;
+
+    @DataBoundSetter
+    public boolean localProxy;
+
     @DataBoundConstructor
     public MultiKubectlBuildStep(List<KubectlCredential> kubectlCredentials) {
         if (kubectlCredentials == null || kubectlCredentials.size() == 0) {
@@ -45,7 +57,13 @@ public class MultiKubectlBuildStep extends Step {
 
     @Override
     public final StepExecution start(StepContext context) throws Exception {
-        return new GenericBuildStep(this.kubectlCredentials, context);
+        GenericBuildStep execution = new GenericBuildStep(this.kubectlCredentials, context);
+        execution.setMergeKubeConfigs(this.mergeKubeConfigs);
+        execution.setInheritKubeConfig(this.inheritKubeConfig);
+        execution.setFunctionName(getDescriptor().getFunctionName());
+        execution.setPrewarmDiscovery(this.prewarmDiscovery);
+        execution.setLocalProxy(this.localProxy);
+        return execution;
     }
 
     @Extension
@@ -12,6 +12,7 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractProject;
+import hudson.model.Computer;
 import hudson.model.Item;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -19,8 +20,13 @@ import hudson.security.ACL;
 import hudson.tasks.BuildWrapperDescriptor;
 import hudson.util.ListBoxModel;
 import jenkins.tasks.SimpleBuildWrapper;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigCleaner;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigTimingsAction;
 import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
 import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriterFactory;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubectlCache;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.MultiKubeConfigWriter;
 import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
 import org.jenkinsci.plugins.plaincredentials.FileCredentials;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
@@ -32,11 +38,21 @@ import org.kohsuke.stapler.QueryParameter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class MultiKubectlBuildWrapper extends SimpleBuildWrapper {
+    /**
+     * Name of the build wrappers in the kubeconfig timings of builds, see {@link KubeConfigTimingsAction}.
+     */
+    static final String STEP_NAME = "kubectlBuildWrapper";
+
     final transient public List<KubectlCredential> kubectlCredentials;
 
+    @DataBoundSetter
+    public boolean mergeKubeConfigs;
+
     @DataBoundConstructor
     public MultiKubectlBuildWrapper(List<KubectlCredential> kubectlCredentials) {
         if (kubectlCredentials == null || kubectlCredentials.size() == 0) {
@@ -52,8 +68,13 @@ public class MultiKubectlBuildWrapper extends SimpleBuildWrapper {
                       TaskListener listener,
                       EnvVars initialEnvironment) throws IOException, InterruptedException {
 
-        List<String> configFiles = new ArrayList<String>();
         boolean skipUseContext = this.kubectlCredentials.size() >= 2;
+        // the initial environment already holds the variables of the build
+        KubeConfigEnvironment environment = new KubeConfigEnvironment(workspace, launcher, build, initialEnvironment);
+        environment.prefetchCredentials(this.kubectlCredentials.stream()
+                .map(cred -> cred.credentialsId)
+                .collect(Collectors.toList()));
+        List<KubeConfigWriter> kubeConfigWriters = new ArrayList<KubeConfigWriter>();
         for(KubectlCredential cred: this.kubectlCredentials) {
             KubeConfigWriter kubeConfigWriter = KubeConfigWriterFactory.get(
                     cred.serverUrl,
@@ -63,19 +84,33 @@ public class MultiKubectlBuildWrapper extends SimpleBuildWrapper {
                     cred.contextName,
                     cred.namespace,
                     skipUseContext,
-                    workspace,
-                    launcher,
-                    build);
+                    environment);
+            kubeConfigWriter.setPruneKubeConfig(cred.pruneKubeConfig);
 
-            configFiles.add(kubeConfigWriter.writeKubeConfig());
+            kubeConfigWriters.add(kubeConfigWriter);
+        }
+        MultiKubeConfigWriter multiKubeConfigWriter = new MultiKubeConfigWriter(kubeConfigWriters, workspace, listener);
+
+        List<String> configFiles;
+        if (mergeKubeConfigs) {
+            configFiles = Collections.singletonList(multiKubeConfigWriter.writeMergedKubeConfig());
+        } else {
+            configFiles = multiKubeConfigWriter.writeKubeConfigs();
         }
 
         // Remove it when the build is finished
-        context.setDisposer(new CleanupDisposer(configFiles));
+        Computer computer = workspace.toComputer();
+        CleanupDisposer disposer = new CleanupDisposer(computer == null ? null : computer.getName(), configFiles);
+        context.setDisposer(disposer);
+        disposer.invocationId = KubeConfigTimingsAction.record(build, multiKubeConfigWriter.getInvocation(STEP_NAME));
 
         // Set environment for the kubectl calls to find the configuration
         String configFileList = String.join(File.pathSeparator, configFiles);
         context.env(KubeConfigWriter.ENV_VARIABLE_NAME, configFileList);
+        String cacheDirectory = KubectlCache.get().prepare(workspace);
+        if (cacheDirectory != null && initialEnvironment.get(KubectlCache.ENV_VARIABLE_NAME, "").isEmpty()) {
+            context.env(KubectlCache.ENV_VARIABLE_NAME, cacheDirectory);
+        }
     }
 
     @Extension
@@ -95,9 +130,21 @@ public class MultiKubectlBuildWrapper extends SimpleBuildWrapper {
 
         private static final long serialVersionUID = 1L;
         private List<String> filesToBeRemoved;
+        private String nodeName;
+        private Integer invocationId;
 
         public CleanupDisposer(List<String > files) {
+            this(null, files);
+        }
+
+        public CleanupDisposer(String nodeName, List<String> files) {
+            this(nodeName, files, null);
+        }
+
+        public CleanupDisposer(String nodeName, List<String> files, Integer invocationId) {
+            this.nodeName = nodeName;
             this.filesToBeRemoved = files;
+            this.invocationId = invocationId;
         }
 
         @Override
@@ -105,10 +152,11 @@ public class MultiKubectlBuildWrapper extends SimpleBuildWrapper {
                              FilePath workspace,
                              Launcher launcher,
                              TaskListener listener) throws IOException, InterruptedException {
-            for(String file : filesToBeRemoved) {
-                workspace.child(file).delete();
+            long start = System.nanoTime();
+            KubeConfigCleaner.get().cleanup(nodeName, workspace, filesToBeRemoved, listener);
+            if (invocationId != null) {
+                KubeConfigTimingsAction.recordCleanup(build, invocationId, start);
             }
-            listener.getLogger().println("kubectl configuration cleaned up");
         }
     }
 }
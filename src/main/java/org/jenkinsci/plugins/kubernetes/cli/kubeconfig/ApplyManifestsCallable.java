@@ -0,0 +1,273 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import hudson.AbortException;
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies manifests of a workspace server-side, see {@link ManifestApplier}. Runs on the node of the workspace.
+ * <p>
+ * Objects are applied in dependency order: namespaces and custom resource definitions first, waiting for the
+ * definitions to be established so that their custom resources can be resolved, then all the other objects.
+ * Objects of the same phase do not depend on each other and are applied in parallel. Failing objects are reported
+ * and do not stop the others from being applied.
+ *
+ * @author Max Laverse
+ */
+class ApplyManifestsCallable extends MasterToSlaveFileCallable<ApplyManifestsCallable.Result> {
+    private static final long serialVersionUID = 1L;
+
+    private static final String CUSTOM_RESOURCE_DEFINITION = "CustomResourceDefinition";
+    private static final String NAMESPACE = "Namespace";
+    private static final List<String> EXTENSIONS = Arrays.asList(".yaml", ".yml", ".json");
+    private static final long ESTABLISHED_POLL_INTERVAL = 250;
+
+    private final byte[] kubeConfig;
+    private final String manifests;
+    private final String fieldManager;
+    private final boolean force;
+    private final int parallelism;
+    private final long establishedTimeout;
+    private final TaskListener listener;
+
+    /**
+     * @param kubeConfig         kubeconfig to authenticate with, its current context is used
+     * @param manifests          manifest file or folder, or Ant pattern of manifest files, relative to the workspace
+     * @param fieldManager       name of the manager of the applied fields
+     * @param force              true to take over the fields owned by other managers
+     * @param parallelism        maximum number of objects applied concurrently
+     * @param establishedTimeout seconds to wait for custom resource definitions to be established
+     * @param listener           listener reporting the progress of each object
+     */
+    ApplyManifestsCallable(byte[] kubeConfig, String manifests, String fieldManager, boolean force, int parallelism,
+                           long establishedTimeout, TaskListener listener) {
+        this.kubeConfig = kubeConfig;
+        this.manifests = manifests;
+        this.fieldManager = fieldManager;
+        this.force = force;
+        this.parallelism = Math.max(1, parallelism);
+        this.establishedTimeout = establishedTimeout;
+        this.listener = listener;
+    }
+
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        List<Manifest> objects = new ArrayList<>();
+        for (File file : files(workspace)) {
+            objects.addAll(read(file));
+        }
+        if (objects.isEmpty()) {
+            throw new AbortException("No Kubernetes objects found in '" + manifests + "'");
+        }
+
+        List<Manifest> first = new ArrayList<>();
+        List<Manifest> then = new ArrayList<>();
+        for (Manifest object : objects) {
+            (object.kind.equals(NAMESPACE) || object.kind.equals(CUSTOM_RESOURCE_DEFINITION) ? first : then).add(object);
+        }
+
+        Result result = new Result();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (KubernetesApiClient client = KubernetesApiClient.of(kubeConfig)) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(establishedTimeout);
+            result.applied += run(executor, first, object -> {
+                apply(client, object);
+                return object.kind.equals(CUSTOM_RESOURCE_DEFINITION) ? waitForEstablished(client, object, deadline) : object;
+            }, result).size();
+            result.applied += run(executor, then, object -> apply(client, object), result).size();
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private List<File> files(File workspace) throws IOException {
+        File base = new File(workspace, manifests);
+        List<File> files = new ArrayList<>();
+        if (base.isFile()) {
+            files.add(base);
+        } else if (base.isDirectory()) {
+            // like kubectl, folders are not read recursively
+            File[] children = base.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isFile() && EXTENSIONS.stream().anyMatch(child.getName()::endsWith)) {
+                        files.add(child);
+                    }
+                }
+            }
+        } else {
+            String[] included = Util.createFileSet(workspace, manifests).getDirectoryScanner().getIncludedFiles();
+            Arrays.sort(included);
+            for (String path : included) {
+                files.add(new File(workspace, path));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new AbortException("No manifests match '" + manifests + "'");
+        }
+        return files;
+    }
+
+    /**
+     * Read the objects of a manifest file, which can hold multiple YAML documents and lists.
+     */
+    static List<Manifest> read(File file) throws IOException {
+        List<Manifest> objects = new ArrayList<>();
+        ObjectReader reader = SerializationUtils.getMapper().readerFor(JsonNode.class);
+        try (MappingIterator<JsonNode> documents = reader.readValues(file)) {
+            int index = 0;
+            while (documents.hasNextValue()) {
+                JsonNode document = documents.nextValue();
+                index++;
+                if (document == null || !document.isObject() || document.size() == 0) {
+                    continue;
+                }
+                if (document.path("kind").asText().endsWith("List") && document.has("items")) {
+                    for (JsonNode item : document.get("items")) {
+                        objects.add(Manifest.of(item, file.getName() + "#" + index));
+                    }
+                } else {
+                    objects.add(Manifest.of(document, file.getName() + "#" + index));
+                }
+            }
+        }
+        return objects;
+    }
+
+    private Manifest apply(KubernetesApiClient client, Manifest object) throws IOException {
+        long start = System.nanoTime();
+        KubernetesApiClient.Resource resource = client.resource(object.apiVersion, object.kind);
+        if (resource == null) {
+            throw new IOException("the API server does not serve " + object.kind + " in " + object.apiVersion);
+        }
+        String namespace = object.namespace == null ? client.getNamespace() : object.namespace;
+        int status = client.apply(resource.path(namespace, object.name), object.content, fieldManager, force);
+        print(object.describe() + (status == 201 ? " created" : " serverside-applied") + " (" + elapsed(start) + " ms)");
+        return object;
+    }
+
+    private Manifest waitForEstablished(KubernetesApiClient client, Manifest definition, long deadline)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        KubernetesApiClient.Resource resource = client.resource(definition.apiVersion, definition.kind);
+        String path = resource.path(null, definition.name);
+        while (true) {
+            for (JsonNode condition : client.get(path).path("status").path("conditions")) {
+                if ("Established".equals(condition.path("type").asText()) && "True".equals(condition.path("status").asText())) {
+                    print(definition.describe() + " established (" + elapsed(start) + " ms)");
+                    return definition;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("not established after " + establishedTimeout + "s");
+            }
+            Thread.sleep(ESTABLISHED_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Run a task for each object, at most {@link #parallelism} at a time. Failures are reported and counted.
+     *
+     * @return the objects the task succeeded for, in order
+     */
+    private List<Manifest> run(ExecutorService executor, List<Manifest> objects, Task task, Result result)
+            throws InterruptedException {
+        List<Future<Manifest>> futures = new ArrayList<>();
+        for (Manifest object : objects) {
+            futures.add(executor.submit(() -> task.run(object)));
+        }
+        List<Manifest> succeeded = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                succeeded.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                result.failed++;
+                print(objects.get(i).describe() + " failed: " + e.getCause().getMessage());
+            }
+        }
+        return succeeded;
+    }
+
+    private void print(String line) {
+        PrintStream logger = listener.getLogger();
+        synchronized (logger) {
+            logger.println(line);
+        }
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        Manifest run(Manifest object) throws Exception;
+    }
+
+    /**
+     * An object of a manifest file.
+     */
+    static final class Manifest {
+        final String apiVersion;
+        final String kind;
+        final String name;
+        final String namespace;
+        final JsonNode content;
+
+        private Manifest(String apiVersion, String kind, String name, String namespace, JsonNode content) {
+            this.apiVersion = apiVersion;
+            this.kind = kind;
+            this.name = name;
+            this.namespace = namespace;
+            this.content = content;
+        }
+
+        static Manifest of(JsonNode object, String location) throws AbortException {
+            String apiVersion = object.path("apiVersion").asText("");
+            String kind = object.path("kind").asText("");
+            String name = object.path("metadata").path("name").asText("");
+            if (apiVersion.isEmpty() || kind.isEmpty() || name.isEmpty()) {
+                throw new AbortException("Object " + location + " has no apiVersion, kind or metadata.name");
+            }
+            String namespace = object.path("metadata").path("namespace").asText("");
+            return new Manifest(apiVersion, kind, name, namespace.isEmpty() ? null : namespace, object);
+        }
+
+        /**
+         * @return the object as kubectl names it, e.g. {@code deployment.apps/web}
+         */
+        String describe() {
+            int slash = apiVersion.indexOf('/');
+            String group = slash < 0 ? "" : "." + apiVersion.substring(0, slash);
+            return kind.toLowerCase() + group + "/" + name;
+        }
+    }
+
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        int applied;
+        int failed;
+    }
+}
@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+import hudson.AbortException;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the PEM encoded client certificate and private key of certificate credentials for a short time, so that
+ * the keystore is not decrypted by every block.
+ * <p>
+ * Entries are keyed by the id of the credentials and a digest of the keystore and of its password, so a modified
+ * credential never hits a stale entry and same-id credentials of different folders do not evict each other. They are
+ * only kept in memory, expire after {@link #DEFAULT_TTL} and are cleared whenever a credentials store is saved. Only
+ * {@link CertificateCredentialsImpl} credentials, whose keystore content is known, are cached.
+ *
+ * @author Max Laverse
+ */
+public final class CertificateKeyCache {
+    /**
+     * Lifetime in seconds of the cached key material. Set to 0 to disable the cache.
+     */
+    public static final long DEFAULT_TTL = SystemProperties.getLong(CertificateKeyCache.class.getName() + ".ttl", 60L);
+
+    private static final CertificateKeyCache INSTANCE = new CertificateKeyCache(DEFAULT_TTL, System::currentTimeMillis);
+
+    private final long ttl;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CertificateKeyCache(long ttl, LongSupplier clock) {
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cache shared by all the steps and build wrappers
+     */
+    public static CertificateKeyCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return the client certificate and private key of credentials, extracting them if they are not cached.
+     *
+     * @param credentials certificate credentials
+     * @return the PEM encoded certificate and key
+     * @throws AbortException if the keystore cannot be read
+     */
+    public CertificateHelper.ClientCertificate get(@Nonnull StandardCertificateCredentials credentials) throws AbortException {
+        String key = ttl > 0 ? key(credentials) : null;
+        if (key == null) {
+            misses.incrementAndGet();
+            return CertificateHelper.extract(credentials);
+        }
+
+        long now = clock.getAsLong();
+        Entry entry = entries.get(key);
+        if (entry != null && now < entry.expiresAt) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        entries.values().removeIf(e -> now >= e.expiresAt);
+        CertificateHelper.ClientCertificate value = CertificateHelper.extract(credentials);
+        entries.put(key, new Entry(value, now + ttl));
+        return value;
+    }
+
+    /**
+     * Drop all the cached key material.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Identify credentials by their id and a digest of the keystore and its password.
+     *
+     * @return the key, or null if the credentials cannot be fingerprinted
+     */
+    @CheckForNull
+    static String key(StandardCertificateCredentials credentials) {
+        if (!(credentials instanceof CertificateCredentialsImpl)) {
+            return null;
+        }
+        MessageDigest digest = CredentialsDigest.newDigest();
+        CredentialsDigest.add(digest, credentials.getId());
+        try {
+            CredentialsDigest.addSecret(digest, credentials);
+        } catch (IOException e) {
+            // keystores are read from memory
+            return null;
+        }
+        return CredentialsDigest.toHex(digest.digest());
+    }
+
+    private static final class Entry {
+        final CertificateHelper.ClientCertificate value;
+        final long expiresAt;
+
+        Entry(CertificateHelper.ClientCertificate value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
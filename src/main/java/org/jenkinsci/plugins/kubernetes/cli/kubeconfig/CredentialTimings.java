@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it took to build the kubeconfig of a credential, by phase, in milliseconds.
+ * Phases which did not run are reported as -1.
+ *
+ * @author Max Laverse
+ */
+@ExportedBean(defaultVisibility = 3)
+public class CredentialTimings {
+    private final String credentialsId;
+    private int lookup = -1;
+    private int conversion = -1;
+    private int build = -1;
+    private int serialization = -1;
+    private boolean cached;
+
+    public CredentialTimings(String credentialsId) {
+        this.credentialsId = credentialsId;
+    }
+
+    void record(KubeConfigMetrics.Phase phase, long nanos) {
+        int millis = (int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), Integer.MAX_VALUE);
+        switch (phase) {
+            case CREDENTIALS_LOOKUP:
+                lookup = millis;
+                break;
+            case AUTH_CONVERSION:
+                conversion = millis;
+                break;
+            case CONFIG_BUILD:
+                build = millis;
+                break;
+            case SERIALIZATION:
+                serialization = millis;
+                break;
+            default:
+                throw new IllegalArgumentException("Phase " + phase + " is not timed per credential");
+        }
+    }
+
+    void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    @Exported
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    @Exported
+    public int getLookup() {
+        return lookup;
+    }
+
+    @Exported
+    public int getConversion() {
+        return conversion;
+    }
+
+    @Exported
+    public int getBuild() {
+        return build;
+    }
+
+    @Exported
+    public int getSerialization() {
+        return serialization;
+    }
+
+    /**
+     * @return whether the kubeconfig was served from the {@link KubeConfigCache}, skipping its build
+     */
+    @Exported
+    public boolean isCached() {
+        return cached;
+    }
+}
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests of credentials content, for the caches keyed by the secrets they were built from.
+ *
+ * @author Max Laverse
+ */
+abstract class CredentialsDigest {
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Add the secret content of the credentials to a digest.
+     *
+     * @return false if the type of the credentials is not known, and nothing was added
+     * @throws IOException on credentials content access
+     */
+    static boolean addSecret(MessageDigest digest, StandardCredentials credentials) throws IOException {
+        return update(digest, credentials) >= 0;
+    }
+
+    /**
+     * Digest the secret content of the credentials on its own, so that it is read once per block however many cache
+     * keys are built from it.
+     *
+     * @return the digest, or null if the type of the credentials is not known
+     * @throws IOException on credentials content access
+     */
+    @CheckForNull
+    static Secret ofSecret(StandardCredentials credentials) throws IOException {
+        MessageDigest digest = newDigest();
+        long size = update(digest, credentials);
+        return size < 0 ? null : new Secret(digest.digest(), size);
+    }
+
+    /**
+     * @return number of secret bytes added, or -1 if the type of the credentials is not known
+     */
+    private static long update(MessageDigest digest, StandardCredentials credentials) throws IOException {
+        if (credentials instanceof UsernamePasswordCredentials) {
+            return add(digest, ((UsernamePasswordCredentials) credentials).getUsername())
+                    + add(digest, ((UsernamePasswordCredentials) credentials).getPassword().getPlainText());
+        } else if (credentials instanceof StringCredentials) {
+            return add(digest, ((StringCredentials) credentials).getSecret().getPlainText());
+        } else if (credentials instanceof CertificateCredentialsImpl) {
+            CertificateCredentialsImpl certificate = (CertificateCredentialsImpl) credentials;
+            return add(digest, certificate.getKeyStoreSource().getKeyStoreBytes())
+                    + add(digest, certificate.getPassword().getPlainText());
+        } else if (credentials instanceof FileCredentials) {
+            long size = 0;
+            try (InputStream in = ((FileCredentials) credentials).getContent()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+            return size;
+        }
+        return -1;
+    }
+
+    static int add(MessageDigest digest, String value) {
+        return add(digest, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return number of bytes of the value
+     */
+    static int add(MessageDigest digest, byte[] value) {
+        // length prefixed, so that values cannot be shifted from one field to the next
+        digest.update(ByteBuffer.allocate(4).putInt(value == null ? -1 : value.length).array());
+        if (value == null) {
+            return 0;
+        }
+        digest.update(value);
+        return value.length;
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Digest of the secret content of credentials.
+     */
+    static final class Secret {
+        final byte[] digest;
+        /**
+         * Size in bytes of the secret content.
+         */
+        final long size;
+
+        Secret(byte[] digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+    }
+}
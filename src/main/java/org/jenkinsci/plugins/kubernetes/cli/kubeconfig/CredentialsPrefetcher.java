@@ -0,0 +1,228 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsParameterValue;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.AbortException;
+import hudson.model.Computer;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.acegisecurity.Authentication;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Looks up the credentials of a step in the background, before the kubeconfigs are built.
+ * <p>
+ * Lookups of the same credentials id, by the same job and authentication, are coalesced: while a lookup is in
+ * flight, and for a short window after it completed, other builds get its result instead of querying the
+ * credentials providers again. Failed lookups are never shared once completed.
+ * Lookups which can depend on the build itself, through credentials parameters, are never shared.
+ *
+ * @author Max Laverse
+ */
+public final class CredentialsPrefetcher {
+    /**
+     * Maximum time in milliseconds a step waits for the lookup of a credential.
+     */
+    public static final long DEFAULT_TIMEOUT = SystemProperties.getLong(CredentialsPrefetcher.class.getName() + ".timeout", 60_000L);
+
+    /**
+     * Time in milliseconds during which the result of a completed lookup is shared with other builds.
+     */
+    public static final long DEFAULT_SHARING_WINDOW = SystemProperties.getLong(CredentialsPrefetcher.class.getName() + ".sharingWindow", 2_000L);
+
+    private static final CredentialsPrefetcher INSTANCE = new CredentialsPrefetcher(DEFAULT_SHARING_WINDOW, DEFAULT_TIMEOUT);
+
+    private final long sharingWindowNanos;
+    private final long timeout;
+    private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<>();
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    CredentialsPrefetcher(long sharingWindow, long timeout) {
+        this.sharingWindowNanos = TimeUnit.MILLISECONDS.toNanos(sharingWindow);
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the prefetcher shared by all the steps and build wrappers
+     */
+    public static CredentialsPrefetcher get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start looking up credentials for a build, concurrently.
+     * Must be called with the authentication of the build.
+     *
+     * @param run            build needing the credentials
+     * @param credentialsIds ids of the credentials
+     * @return pending lookups, by credentials id
+     */
+    public Map<String, Future<StandardCredentials>> prefetch(@Nonnull Run<?, ?> run, @Nonnull Collection<String> credentialsIds) {
+        evictExpired();
+
+        Authentication authentication = Jenkins.getAuthentication();
+        boolean shareable = !hasCredentialsParameters(run);
+
+        Map<String, Future<StandardCredentials>> pending = new HashMap<>();
+        for (String credentialsId : credentialsIds) {
+            if (credentialsId == null || credentialsId.isEmpty() || pending.containsKey(credentialsId)) {
+                continue;
+            }
+            // ids can be expressions resolved against the build parameters
+            if (shareable && !credentialsId.contains("${")) {
+                pending.put(credentialsId, shared(run, credentialsId, authentication));
+            } else {
+                pending.put(credentialsId, start(new Lookup(), run, credentialsId, authentication));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Wait for a pending lookup.
+     *
+     * @param credentialsId id of the credentials
+     * @param lookup        pending lookup
+     * @return the credentials, or null if they could not be found
+     * @throws IOException          if the lookup failed or timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @CheckForNull
+    public StandardCredentials await(String credentialsId, Future<StandardCredentials> lookup) throws IOException, InterruptedException {
+        try {
+            return lookup.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new AbortException("Timed out after " + timeout + "ms looking up credentials with id '" + credentialsId + "'");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Forget the results of completed lookups.
+     */
+    public void invalidateAll() {
+        lookups.entrySet().removeIf(e -> e.getValue().future.isDone());
+    }
+
+    /**
+     * @return number of lookups actually sent to the credentials providers
+     */
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return number of lookups served by another build's lookup
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    private Future<StandardCredentials> shared(Run<?, ?> run, String credentialsId, Authentication authentication) {
+        String key = run.getParent().getFullName() + '\n' + authentication.getName() + '\n' + credentialsId;
+        long now = System.nanoTime();
+        Lookup created = new Lookup();
+        Lookup lookup = lookups.compute(key, (k, existing) -> existing == null || existing.isExpired(now) ? created : existing);
+
+        if (lookup == created) {
+            start(lookup, run, credentialsId, authentication);
+            // failures are for the builds waiting right now only
+            lookup.future.whenComplete((credentials, t) -> {
+                if (t != null) {
+                    lookups.remove(key, lookup);
+                }
+            });
+            return lookup.future;
+        }
+
+        sharedCount.incrementAndGet();
+        // the build starting the lookup is tracked by the credentials provider, the others have to be tracked here
+        return lookup.future.thenApply(credentials -> credentials == null ? null : CredentialsProvider.track(run, credentials));
+    }
+
+    private Future<StandardCredentials> start(Lookup lookup, Run<?, ?> run, String credentialsId, Authentication authentication) {
+        lookupCount.incrementAndGet();
+        Computer.threadPoolForRemoting.submit(() -> {
+            try (ACLContext ignored = ACL.as(authentication)) {
+                lookup.complete(CredentialsProvider.findCredentialById(credentialsId, StandardCredentials.class, run, Collections.emptyList()));
+            } catch (Throwable t) {
+                lookup.fail(t);
+            }
+        });
+        return lookup.future;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        lookups.entrySet().removeIf(e -> e.getValue().isExpired(now));
+    }
+
+    private static boolean hasCredentialsParameters(Run<?, ?> run) {
+        ParametersAction parameters = run.getAction(ParametersAction.class);
+        if (parameters == null) {
+            return false;
+        }
+        for (ParameterValue parameter : parameters) {
+            if (parameter instanceof CredentialsParameterValue) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A lookup, in flight or completed.
+     */
+    private final class Lookup {
+        final CompletableFuture<StandardCredentials> future = new CompletableFuture<>();
+        private volatile boolean completed;
+        private volatile long completedAt;
+
+        void complete(StandardCredentials credentials) {
+            completedAt = System.nanoTime();
+            completed = true;
+            future.complete(credentials);
+        }
+
+        void fail(Throwable t) {
+            completedAt = System.nanoTime();
+            completed = true;
+            future.completeExceptionally(t);
+        }
+
+        boolean isExpired(long now) {
+            return completed && now - completedAt > sharingWindowNanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * Drops everything derived from credentials when a credentials store is saved, so that removed or rotated secrets
+ * do not linger in memory.
+ *
+ * @author Max Laverse
+ */
+@Extension
+public class CredentialsSaveListener extends SaveableListener {
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+        // system, user and folder credentials stores are respectively saved with these objects
+        if (o instanceof SystemCredentialsProvider || o instanceof User || o instanceof ItemGroup) {
+            KubeConfigCache.get().invalidateAll();
+            ParsedKubeConfigCache.get().invalidateAll();
+            CertificateKeyCache.get().invalidateAll();
+            CredentialsPrefetcher.get().invalidateAll();
+            TokenCache.get().invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Deletes a batch of kubeconfig files of a node, in a single remoting call.
+ * Every file is attempted even if some of them cannot be deleted.
+ *
+ * @author Max Laverse
+ */
+class DeleteKubeConfigsCallable extends MasterToSlaveCallable<Void, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> paths;
+
+    DeleteKubeConfigsCallable(List<String> paths) {
+        this.paths = paths;
+    }
+
+    @Override
+    public Void call() throws IOException {
+        IOException failure = null;
+        for (String path : paths) {
+            try {
+                Files.deleteIfExists(Paths.get(path));
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = new IOException("Unable to delete kubeconfig files");
+                }
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills the kubectl cache of a node with the discovery documents of the clusters of a block, in the background,
+ * so that the kubectl calls of the block find them instead of running discovery themselves.
+ * <p>
+ * kubectl cannot wait for an external writer: calls starting before the prewarm is over run discovery themselves, as
+ * they would without it, and the documents already written are never partial, see {@link PrewarmDiscoveryCallable}.
+ *
+ * @author Max Laverse
+ */
+public abstract class DiscoveryPrewarmer {
+    private static final Logger LOGGER = Logger.getLogger(DiscoveryPrewarmer.class.getName());
+
+    /**
+     * Start fetching the discovery documents of the clusters of kubeconfig files.
+     *
+     * @param workspace      workspace of the block
+     * @param paths          kubeconfig files of the block
+     * @param cacheDirectory kubectl cache folder of the block, prewarming is skipped if there is none
+     * @param listener       listener of the block
+     * @return the running prewarm, or null if it was skipped
+     */
+    @CheckForNull
+    public static Future<?> start(@Nonnull FilePath workspace, @Nonnull List<String> paths, @CheckForNull String cacheDirectory,
+                                  @Nonnull TaskListener listener) {
+        if (cacheDirectory == null || cacheDirectory.isEmpty()) {
+            listener.getLogger().println("no kubectl cache folder, skipping the prewarm of the discovery");
+            return null;
+        }
+        VirtualChannel channel = workspace.getChannel();
+        if (channel == null) {
+            return null;
+        }
+        return Computer.threadPoolForRemoting.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                PrewarmDiscoveryCallable.Result result = channel.call(new PrewarmDiscoveryCallable(paths, cacheDirectory));
+                LOGGER.log(Level.FINE, "Prewarmed the discovery of {0} clusters into {1} in {2} ms, {3} documents written, {4} failed",
+                        new Object[]{result.clusters, cacheDirectory, (System.nanoTime() - start) / 1000000, result.documents, result.failures});
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Unable to prewarm the discovery into " + cacheDirectory, e);
+            }
+        });
+    }
+}
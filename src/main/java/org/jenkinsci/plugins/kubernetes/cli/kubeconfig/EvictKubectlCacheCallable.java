@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Evicts the kubectl cache of a node, see {@link KubectlCache}. Runs on the node itself.
+ * <p>
+ * The discovery of each cluster is evicted as a whole, as kubectl keeps it in its own sub-folder, and HTTP responses
+ * one by one. Entries not modified for longer than the maximum age are evicted first, then the least recently
+ * modified ones until the cache fits its maximum size. Entries modified within {@link #GRACE_PERIOD} are kept
+ * whatever the size, since a build may be writing them.
+ *
+ * @author Max Laverse
+ */
+class EvictKubectlCacheCallable extends MasterToSlaveFileCallable<EvictKubectlCacheCallable.Result> {
+    private static final long serialVersionUID = 1L;
+
+    static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    private final long maxBytes;
+    private final long maxAge;
+
+    /**
+     * @param maxBytes maximum size of the cache in bytes
+     * @param maxAge   maximum age in milliseconds of the entries
+     */
+    EvictKubectlCacheCallable(long maxBytes, long maxAge) {
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public Result invoke(File folder, VirtualChannel channel) throws IOException {
+        return evict(folder.toPath(), maxBytes, maxAge, System.currentTimeMillis());
+    }
+
+    static Result evict(Path folder, long maxBytes, long maxAge, long now) throws IOException {
+        Result result = new Result();
+        if (!Files.isDirectory(folder)) {
+            return result;
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> children = Files.list(folder)) {
+            for (Path child : (Iterable<Path>) children::iterator) {
+                if (Files.isDirectory(child)) {
+                    // discovery/<cluster>, or http/<response>
+                    try (Stream<Path> grandChildren = Files.list(child)) {
+                        for (Path grandChild : (Iterable<Path>) grandChildren::iterator) {
+                            add(entries, grandChild);
+                        }
+                    }
+                } else {
+                    add(entries, child);
+                }
+            }
+        }
+
+        long retained = 0;
+        for (Entry entry : entries) {
+            retained += entry.size;
+        }
+        entries.sort(Comparator.comparingLong(e -> e.lastModified));
+        for (Entry entry : entries) {
+            long age = now - entry.lastModified;
+            boolean expired = age > maxAge;
+            boolean overSize = retained > maxBytes && age > GRACE_PERIOD;
+            if (!expired && !overSize) {
+                continue;
+            }
+            if (entry.delete()) {
+                retained -= entry.size;
+                result.evictedBytes += entry.size;
+                result.evictedEntries++;
+            }
+        }
+        result.retainedBytes = retained;
+        return result;
+    }
+
+    private static void add(List<Entry> entries, Path path) throws IOException {
+        try {
+            entries.add(Entry.of(path));
+        } catch (NoSuchFileException | UncheckedIOException e) {
+            // replaced by kubectl meanwhile
+        }
+    }
+
+    /**
+     * A file or a folder evicted as a whole, with its total size and the last modification of its files.
+     */
+    private static final class Entry {
+        private final Path path;
+        private long size;
+        private long lastModified;
+
+        private Entry(Path path) {
+            this.path = path;
+        }
+
+        static Entry of(Path path) throws IOException {
+            Entry entry = new Entry(path);
+            try (Stream<Path> files = Files.walk(path)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entry.size += attributes.size();
+                        entry.lastModified = Math.max(entry.lastModified, attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+            if (entry.size == 0 && entry.lastModified == 0) {
+                // empty folder
+                entry.lastModified = Files.getLastModifiedTime(path).toMillis();
+            }
+            return entry;
+        }
+
+        boolean delete() {
+            try {
+                Util.deleteRecursive(path.toFile());
+                return true;
+            } catch (IOException e) {
+                // another build may be using it, try again at the next eviction
+                return false;
+            }
+        }
+    }
+
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        long evictedEntries;
+        long evictedBytes;
+        long retainedBytes;
+    }
+}
@@ -0,0 +1,245 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.Context;
+import io.fabric8.kubernetes.api.model.NamedAuthInfo;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedContext;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A kubeconfig whose clusters, users and contexts are indexed by name, to be edited in place.
+ * <p>
+ * Like kubectl, only the first entry of a given name is looked up, but every entry is kept. Edits apply to the
+ * entries themselves, so the fluent builders of the fabric8 model are only involved once, when the kubeconfig is
+ * built from the credentials.
+ * <p>
+ * A kubeconfig can also be indexed as a copy-on-write view of a kubeconfig shared with other builds, see
+ * {@link #view(Config)}.
+ *
+ * @author Max Laverse
+ */
+final class IndexedKubeConfig {
+    private final Config config;
+    private final Entries<NamedCluster> clusters;
+    private final Entries<NamedAuthInfo> users;
+    private final Entries<NamedContext> contexts;
+    /**
+     * Contexts which may be edited in place, null if they all are.
+     */
+    @CheckForNull
+    private final Set<NamedContext> ownContexts;
+
+    private IndexedKubeConfig(Config config, boolean shared) {
+        this.config = shared ? shallowCopy(config) : config;
+        this.ownContexts = shared ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+        this.clusters = new Entries<>(config.getClusters(), NamedCluster::getName);
+        this.users = new Entries<>(config.getUsers(), NamedAuthInfo::getName);
+        this.contexts = new Entries<>(config.getContexts(), NamedContext::getName);
+    }
+
+    /**
+     * Index a kubeconfig. The kubeconfig is edited in place and must not be used anymore.
+     *
+     * @param config kubeconfig to index
+     * @return the indexed kubeconfig
+     */
+    static IndexedKubeConfig of(@Nonnull Config config) {
+        return new IndexedKubeConfig(config, false);
+    }
+
+    /**
+     * Index a kubeconfig without modifying it, so that it can be shared. Only the lists of entries are copied, an
+     * entry is only copied when it is edited. The kubeconfig returned by {@link #toConfig()} still shares the
+     * entries which were not edited, and must not be modified.
+     *
+     * @param config kubeconfig to index, which must not be modified anymore
+     * @return the indexed kubeconfig
+     */
+    static IndexedKubeConfig view(@Nonnull Config config) {
+        return new IndexedKubeConfig(config, true);
+    }
+
+    @CheckForNull
+    NamedCluster getCluster(String name) {
+        return clusters.get(name);
+    }
+
+    @CheckForNull
+    NamedAuthInfo getUser(String name) {
+        return users.get(name);
+    }
+
+    @CheckForNull
+    NamedContext getContext(String name) {
+        return contexts.get(name);
+    }
+
+    /**
+     * Add a cluster, unless one with the same name already exists.
+     *
+     * @param cluster cluster to add
+     * @return the cluster of that name
+     */
+    NamedCluster addClusterIfAbsent(@Nonnull NamedCluster cluster) {
+        NamedCluster existing = clusters.get(cluster.getName());
+        if (existing != null) {
+            return existing;
+        }
+        clusters.add(cluster);
+        return cluster;
+    }
+
+    /**
+     * Return the context of a name, adding an empty one if it does not exist yet.
+     *
+     * @param name name of the context
+     * @return the context of that name
+     */
+    Context getOrAddContext(String name) {
+        NamedContext namedContext = contexts.get(name);
+        if (namedContext == null) {
+            namedContext = new NamedContext();
+            namedContext.setName(name);
+            contexts.add(namedContext);
+            if (ownContexts != null) {
+                ownContexts.add(namedContext);
+            }
+        } else if (ownContexts != null && !ownContexts.contains(namedContext)) {
+            NamedContext copy = copy(namedContext);
+            contexts.replace(namedContext, copy);
+            ownContexts.add(copy);
+            namedContext = copy;
+        }
+        if (namedContext.getContext() == null) {
+            namedContext.setContext(new Context());
+        }
+        return namedContext.getContext();
+    }
+
+    /**
+     * Remove everything but a context, and the cluster and user it references.
+     * The current context is unset unless it is the context kept.
+     *
+     * @param name name of the context to keep
+     * @return false if there is no such context, in which case nothing is removed
+     */
+    boolean retainContext(String name) {
+        NamedContext namedContext = contexts.get(name);
+        if (namedContext == null) {
+            return false;
+        }
+        Context context = namedContext.getContext();
+        clusters.retain(context == null ? null : clusters.get(context.getCluster()));
+        users.retain(context == null ? null : users.get(context.getUser()));
+        contexts.retain(namedContext);
+        if (!name.equals(config.getCurrentContext())) {
+            config.setCurrentContext(null);
+        }
+        return true;
+    }
+
+    String getCurrentContext() {
+        return config.getCurrentContext();
+    }
+
+    void setCurrentContext(String context) {
+        config.setCurrentContext(context);
+    }
+
+    /**
+     * @return the kubeconfig with all the edits
+     */
+    Config toConfig() {
+        config.setClusters(clusters.list);
+        config.setUsers(users.list);
+        config.setContexts(contexts.list);
+        return config;
+    }
+
+    private static Config shallowCopy(Config config) {
+        Config copy = new Config();
+        copy.setApiVersion(config.getApiVersion());
+        copy.setKind(config.getKind());
+        copy.setCurrentContext(config.getCurrentContext());
+        copy.setPreferences(config.getPreferences());
+        copy.setExtensions(config.getExtensions());
+        config.getAdditionalProperties().forEach(copy::setAdditionalProperty);
+        return copy;
+    }
+
+    private static NamedContext copy(NamedContext namedContext) {
+        NamedContext copy = new NamedContext();
+        copy.setName(namedContext.getName());
+        namedContext.getAdditionalProperties().forEach(copy::setAdditionalProperty);
+        Context context = namedContext.getContext();
+        if (context != null) {
+            Context contextCopy = new Context();
+            contextCopy.setCluster(context.getCluster());
+            contextCopy.setUser(context.getUser());
+            contextCopy.setNamespace(context.getNamespace());
+            contextCopy.setExtensions(context.getExtensions());
+            context.getAdditionalProperties().forEach(contextCopy::setAdditionalProperty);
+            copy.setContext(contextCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * Entries of a kubeconfig, in order, and the first entry of each name.
+     */
+    private static final class Entries<T> {
+        private final List<T> list;
+        private final Map<String, T> byName;
+        private final Function<T, String> name;
+
+        Entries(List<T> entries, Function<T, String> name) {
+            this.list = entries == null ? new ArrayList<>() : new ArrayList<>(entries);
+            this.byName = new HashMap<>();
+            this.name = name;
+            for (T entry : list) {
+                byName.putIfAbsent(name.apply(entry), entry);
+            }
+        }
+
+        T get(String entryName) {
+            return byName.get(entryName);
+        }
+
+        void add(T entry) {
+            list.add(entry);
+            byName.putIfAbsent(name.apply(entry), entry);
+        }
+
+        /**
+         * Replace an entry, which must be the first of its name.
+         */
+        void replace(T entry, T replacement) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == entry) {
+                    list.set(i, replacement);
+                    break;
+                }
+            }
+            byName.put(name.apply(replacement), replacement);
+        }
+
+        void retain(@CheckForNull T entry) {
+            list.clear();
+            byName.clear();
+            if (entry != null) {
+                add(entry);
+            }
+        }
+    }
+}
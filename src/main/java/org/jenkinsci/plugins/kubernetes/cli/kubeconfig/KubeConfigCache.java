@@ -0,0 +1,178 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, least-recently-used cache of rendered kubeconfigs.
+ * <p>
+ * Entries are keyed by a digest of the credentials content and of all the settings used to build the kubeconfig,
+ * so a modified credential never hits a stale entry. The cache is nevertheless cleared whenever a credentials store
+ * is saved, so that removed or rotated secrets do not linger in memory.
+ * Credentials producing short-lived tokens are never cached.
+ *
+ * @author Max Laverse
+ */
+public final class KubeConfigCache {
+    /**
+     * Maximum number of rendered kubeconfigs kept in memory. Set to 0 to disable the cache.
+     */
+    public static final int DEFAULT_SIZE = SystemProperties.getInteger(KubeConfigCache.class.getName() + ".size", 64);
+
+    private static final KubeConfigCache INSTANCE = new KubeConfigCache(DEFAULT_SIZE);
+
+    private final int size;
+    private final Map<String, byte[]> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    KubeConfigCache(int size) {
+        this.size = size;
+        this.entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > KubeConfigCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by all the steps and build wrappers
+     */
+    public static KubeConfigCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Look up a rendered kubeconfig.
+     *
+     * @param key cache key, see {@link #key}
+     * @return the rendered kubeconfig, or null if it is not cached
+     */
+    @CheckForNull
+    byte[] getIfPresent(@Nonnull String key) {
+        byte[] content;
+        synchronized (entries) {
+            content = entries.get(key);
+        }
+        if (content == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return content;
+    }
+
+    void put(@Nonnull String key, @Nonnull byte[] content) {
+        if (size <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, content);
+        }
+    }
+
+    /**
+     * Drop all the cached kubeconfigs.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Compute the cache key of a kubeconfig.
+     *
+     * @param credentials    credentials the kubeconfig is built from
+     * @param serverUrl      server URL, with environment variables already expanded
+     * @param caCertificate  certificate of the cluster authority
+     * @param clusterName    name of the cluster
+     * @param contextName    name of the context
+     * @param namespace      namespace
+     * @param skipUseContext whether the current-context is left unset
+     * @return the key, or null if the kubeconfig must not be cached
+     * @throws IOException on credentials content access
+     */
+    @CheckForNull
+    static String key(@Nonnull StandardCredentials credentials, String serverUrl, String caCertificate,
+                      String clusterName, String contextName, String namespace, boolean skipUseContext) throws IOException {
+        return key(credentials, serverUrl, caCertificate, clusterName, contextName, namespace, skipUseContext, false);
+    }
+
+    /**
+     * Compute the cache key of a kubeconfig.
+     *
+     * @param credentials    credentials the kubeconfig is built from
+     * @param serverUrl      server URL, with environment variables already expanded
+     * @param caCertificate  certificate of the cluster authority
+     * @param clusterName    name of the cluster
+     * @param contextName    name of the context
+     * @param namespace      namespace
+     * @param skipUseContext whether the current-context is left unset
+     * @param prune          whether imported kubeconfigs are pruned down to a single context
+     * @return the key, or null if the kubeconfig must not be cached
+     * @throws IOException on credentials content access
+     */
+    @CheckForNull
+    static String key(@Nonnull StandardCredentials credentials, String serverUrl, String caCertificate,
+                      String clusterName, String contextName, String namespace, boolean skipUseContext,
+                      boolean prune) throws IOException {
+        // tokens are produced on every use and may expire
+        if (credentials instanceof TokenProducer) {
+            return null;
+        }
+        return key(credentials, CredentialsDigest.ofSecret(credentials), serverUrl, caCertificate, clusterName,
+                contextName, namespace, skipUseContext, prune);
+    }
+
+    /**
+     * Compute the cache key of a kubeconfig, from the already computed digest of the credentials content.
+     *
+     * @param secret digest of the content of the credentials, see {@link CredentialsDigest#ofSecret}
+     * @see #key(StandardCredentials, String, String, String, String, String, boolean, boolean)
+     */
+    @CheckForNull
+    static String key(@Nonnull StandardCredentials credentials, @CheckForNull CredentialsDigest.Secret secret,
+                      String serverUrl, String caCertificate, String clusterName, String contextName,
+                      String namespace, boolean skipUseContext, boolean prune) {
+        if (credentials instanceof TokenProducer || secret == null) {
+            return null;
+        }
+        MessageDigest digest = CredentialsDigest.newDigest();
+        CredentialsDigest.add(digest, secret.digest);
+        CredentialsDigest.add(digest, credentials.getClass().getName());
+        CredentialsDigest.add(digest, credentials.getId());
+        CredentialsDigest.add(digest, serverUrl);
+        CredentialsDigest.add(digest, caCertificate);
+        CredentialsDigest.add(digest, clusterName);
+        CredentialsDigest.add(digest, contextName);
+        CredentialsDigest.add(digest, namespace);
+        CredentialsDigest.add(digest, Boolean.toString(skipUseContext));
+        CredentialsDigest.add(digest, Boolean.toString(prune));
+        return CredentialsDigest.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,282 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.ChannelClosedException;
+import hudson.remoting.RequestAbortedException;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes the kubeconfig files of a step once it is done.
+ * <p>
+ * All the files of a step are deleted in a single remoting call, which the step only waits for a short while
+ * before completing. Deletions failing because the node is unreachable are recorded in JENKINS_HOME and retried
+ * when the node comes back online.
+ *
+ * @author Max Laverse
+ */
+public final class KubeConfigCleaner {
+    private static final Logger LOGGER = Logger.getLogger(KubeConfigCleaner.class.getName());
+
+    /**
+     * Maximum time in milliseconds a step waits for the deletion of its kubeconfig files before completing.
+     */
+    public static final long DEFAULT_WAIT = SystemProperties.getLong(KubeConfigCleaner.class.getName() + ".wait", 2_000L);
+
+    /**
+     * Maximum number of files waiting for their node to come back online, per node. The oldest ones are forgotten.
+     */
+    public static final int MAX_PENDING = SystemProperties.getInteger(KubeConfigCleaner.class.getName() + ".maxPending", 10_000);
+
+    private static final KubeConfigCleaner INSTANCE = new KubeConfigCleaner(DEFAULT_WAIT);
+
+    private final long wait;
+
+    /**
+     * Files to delete, by node name. Loaded from disk on first use.
+     */
+    private Map<String, LinkedHashSet<String>> pending;
+
+    KubeConfigCleaner(long wait) {
+        this.wait = wait;
+    }
+
+    /**
+     * @return the cleaner shared by all the steps and build wrappers
+     */
+    public static KubeConfigCleaner get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Delete the kubeconfig files of a step, waiting at most {@link #DEFAULT_WAIT} for it to complete.
+     *
+     * @param nodeName  name of the node holding the files, null if unknown
+     * @param workspace workspace of the step, used to reach the node
+     * @param paths     files to delete
+     * @param listener  listener of the step
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void cleanup(@CheckForNull String nodeName, @Nonnull FilePath workspace, @Nonnull List<String> paths,
+                        @Nonnull TaskListener listener) throws InterruptedException {
+        if (nodeName == null) {
+            Computer computer = workspace.toComputer();
+            nodeName = computer == null ? null : computer.getName();
+        }
+
+        try {
+            Outcome outcome = delete(nodeName, workspace.getChannel(), paths).get(wait, TimeUnit.MILLISECONDS);
+            if (outcome == Outcome.DEFERRED) {
+                listener.getLogger().println("kubectl configuration cleanup deferred until the node is back online");
+            } else {
+                listener.getLogger().println("kubectl configuration cleaned up");
+            }
+        } catch (TimeoutException e) {
+            listener.getLogger().println("kubectl configuration cleanup continues in the background");
+        } catch (ExecutionException e) {
+            listener.getLogger().println("kubectl configuration cleanup failed: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Delete kubeconfig files without a step to report to, in the background. Files of a node which is offline are
+     * deleted once it is back online.
+     *
+     * @param nodeName name of the node holding the files, empty for the controller
+     * @param paths    files to delete
+     */
+    public void cleanupInBackground(@Nonnull String nodeName, @Nonnull List<String> paths) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        Computer computer = jenkins == null ? null : jenkins.getComputer(nodeName);
+        VirtualChannel channel = computer == null ? null : computer.getChannel();
+        if (channel == null) {
+            if (computer == null) {
+                LOGGER.log(Level.WARNING, "Unable to delete kubeconfig files {0}, node {1} does not exist anymore", new Object[]{paths, nodeName});
+                KubeConfigMetrics.get().recordLeakedFiles(paths.size());
+            } else {
+                addPending(nodeName, paths);
+            }
+            return;
+        }
+        delete(nodeName, channel, paths);
+    }
+
+    /**
+     * @return files waiting for the given node to come back online
+     */
+    synchronized Set<String> getPending(String nodeName) {
+        return new LinkedHashSet<>(loadPending().getOrDefault(nodeName, new LinkedHashSet<>()));
+    }
+
+    /**
+     * @return number of files waiting for their node to come back online, on all the nodes
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Set<String> files : loadPending().values()) {
+            count += files.size();
+        }
+        return count;
+    }
+
+    /**
+     * Retry the deletions recorded for a node.
+     *
+     * @param computer node which came back online
+     */
+    void retry(Computer computer) {
+        List<String> paths = new ArrayList<>(getPending(computer.getName()));
+        VirtualChannel channel = computer.getChannel();
+        if (paths.isEmpty() || channel == null) {
+            return;
+        }
+        delete(computer.getName(), channel, paths).thenAccept(outcome -> {
+            if (outcome == Outcome.CLEANED) {
+                LOGGER.log(Level.FINE, "Deleted {0} kubeconfig files left on {1}", new Object[]{paths.size(), computer.getName()});
+                removePending(computer.getName(), paths);
+            }
+        });
+    }
+
+    private CompletableFuture<Outcome> delete(String nodeName, VirtualChannel channel, List<String> paths) {
+        CompletableFuture<Outcome> future = new CompletableFuture<>();
+        long start = System.nanoTime();
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                channel.call(new DeleteKubeConfigsCallable(paths));
+                KubeConfigMetrics.get().record(KubeConfigMetrics.Phase.CLEANUP, start);
+                future.complete(Outcome.CLEANED);
+            } catch (Throwable t) {
+                if (nodeName != null && isUnreachable(nodeName, t)) {
+                    addPending(nodeName, paths);
+                    future.complete(Outcome.DEFERRED);
+                } else {
+                    LOGGER.log(Level.WARNING, "Unable to delete kubeconfig files " + paths, t);
+                    // the callable reports each file it could not delete as a suppressed exception
+                    int leaked = t.getSuppressed().length > 0 ? t.getSuppressed().length : paths.size();
+                    KubeConfigMetrics.get().recordLeakedFiles(leaked);
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    private static boolean isUnreachable(String nodeName, Throwable t) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        Computer computer = jenkins == null ? null : jenkins.getComputer(nodeName);
+        if (computer == null) {
+            // the node is gone, and so are its files
+            return false;
+        }
+        if (computer.isOffline()) {
+            return true;
+        }
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ChannelClosedException || cause instanceof RequestAbortedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void addPending(String nodeName, List<String> paths) {
+        LinkedHashSet<String> files = loadPending().computeIfAbsent(nodeName, k -> new LinkedHashSet<>());
+        files.addAll(paths);
+        for (Iterator<String> it = files.iterator(); files.size() > MAX_PENDING && it.hasNext(); ) {
+            LOGGER.log(Level.WARNING, "Too many kubeconfig files waiting for {0} to come back online, forgetting {1}", new Object[]{nodeName, it.next()});
+            it.remove();
+            KubeConfigMetrics.get().recordLeakedFiles(1);
+        }
+        savePending();
+    }
+
+    private synchronized void removePending(String nodeName, List<String> paths) {
+        Set<String> files = loadPending().get(nodeName);
+        if (files == null) {
+            return;
+        }
+        files.removeAll(paths);
+        if (files.isEmpty()) {
+            pending.remove(nodeName);
+        }
+        savePending();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, LinkedHashSet<String>> loadPending() {
+        if (pending == null) {
+            pending = new HashMap<>();
+            XmlFile file = getPendingFile();
+            if (file != null && file.exists()) {
+                try {
+                    pending = (Map<String, LinkedHashSet<String>>) file.read();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Unable to read kubeconfig files waiting to be deleted from " + file, e);
+                }
+            }
+        }
+        return pending;
+    }
+
+    private void savePending() {
+        XmlFile file = getPendingFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            file.write(pending);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to record kubeconfig files waiting to be deleted to " + file, e);
+        }
+    }
+
+    @CheckForNull
+    private static XmlFile getPendingFile() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new XmlFile(Jenkins.XSTREAM2, new File(jenkins.getRootDir(), KubeConfigCleaner.class.getName() + ".xml"));
+    }
+
+    private enum Outcome {
+        CLEANED,
+        DEFERRED
+    }
+
+    /**
+     * Retries deletions once their node is back online.
+     */
+    @Extension
+    public static class RetryOnOnline extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            get().retry(c);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Build environment shared by all the {@link KubeConfigWriter}s of a step.
+ * <p>
+ * The environment variables of the build are only resolved once, on first use, however many writers expand
+ * values against them. The credentials of the writers can be prefetched all at once.
+ *
+ * @author Max Laverse
+ */
+public final class KubeConfigEnvironment {
+    private final FilePath workspace;
+    private final Launcher launcher;
+    private final Run<?, ?> build;
+    private EnvVars envVars;
+    private volatile Map<String, Future<StandardCredentials>> prefetchedCredentials = Collections.emptyMap();
+
+    public KubeConfigEnvironment(FilePath workspace, Launcher launcher, Run<?, ?> build) {
+        this(workspace, launcher, build, null);
+    }
+
+    /**
+     * @param envVars environment variables of the build, if already resolved by the caller
+     */
+    public KubeConfigEnvironment(FilePath workspace, Launcher launcher, Run<?, ?> build, @CheckForNull EnvVars envVars) {
+        this.workspace = workspace;
+        this.launcher = launcher;
+        this.build = build;
+        this.envVars = envVars;
+    }
+
+    public static KubeConfigEnvironment of(StepContext context) throws IOException, InterruptedException {
+        return new KubeConfigEnvironment(context.get(FilePath.class), context.get(Launcher.class), context.get(Run.class));
+    }
+
+    public FilePath getWorkspace() {
+        return workspace;
+    }
+
+    public Launcher getLauncher() {
+        return launcher;
+    }
+
+    public Run<?, ?> getBuild() {
+        return build;
+    }
+
+    /**
+     * Start looking up credentials in the background, see {@link CredentialsPrefetcher}.
+     * Must be called with the authentication of the build.
+     *
+     * @param credentialsIds ids of the credentials the writers will need
+     */
+    public void prefetchCredentials(Collection<String> credentialsIds) {
+        prefetchedCredentials = CredentialsPrefetcher.get().prefetch(build, credentialsIds);
+    }
+
+    /**
+     * Look up credentials for the build, waiting for their prefetching if it was started.
+     *
+     * @param credentialsId id of the credentials
+     * @return the credentials, or null if they could not be found
+     * @throws IOException          if the lookup failed or timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @CheckForNull
+    StandardCredentials lookupCredentials(String credentialsId) throws IOException, InterruptedException {
+        Future<StandardCredentials> lookup = prefetchedCredentials.get(credentialsId);
+        if (lookup == null) {
+            return CredentialsProvider.findCredentialById(credentialsId, StandardCredentials.class, build, Collections.emptyList());
+        }
+        return CredentialsPrefetcher.get().await(credentialsId, lookup);
+    }
+
+    /**
+     * Returns the environment variables of the build, resolving them on the first call.
+     *
+     * @return environment variables
+     * @throws IOException          on environment resolution
+     * @throws InterruptedException on environment resolution
+     */
+    public synchronized EnvVars getEnvVars() throws IOException, InterruptedException {
+        if (envVars == null) {
+            envVars = build.getEnvironment(launcher.getListener());
+        }
+        return envVars;
+    }
+
+    /**
+     * Returns a value with environment variables interpolated
+     *
+     * @param value value to expand
+     * @return expanded value, or null if no value was given
+     * @throws IOException          on environment resolution
+     * @throws InterruptedException on environment resolution
+     */
+    @CheckForNull
+    public String expand(@CheckForNull String value) throws IOException, InterruptedException {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        return getEnvVars().expand(value);
+    }
+}
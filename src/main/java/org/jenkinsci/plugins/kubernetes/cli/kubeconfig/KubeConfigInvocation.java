@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings of one invocation of a step or build wrapper, in milliseconds. Durations not measured are reported as -1.
+ *
+ * @author Max Laverse
+ */
+@ExportedBean(defaultVisibility = 3)
+public class KubeConfigInvocation {
+    private int id;
+    private final String step;
+    private final String node;
+    private final long timestamp;
+    private final int setup;
+    private final int remoteWrite;
+    private final List<CredentialTimings> credentials;
+    private int cleanup = -1;
+
+    public KubeConfigInvocation(String step, String node, long timestamp, int setup, int remoteWrite, List<CredentialTimings> credentials) {
+        this.step = step;
+        this.node = node;
+        this.timestamp = timestamp;
+        this.setup = setup;
+        this.remoteWrite = remoteWrite;
+        this.credentials = credentials;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    void setCleanup(int cleanup) {
+        this.cleanup = cleanup;
+    }
+
+    /**
+     * @return sequence number of the invocation in its build
+     */
+    @Exported
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return name of the step, or of the build wrapper
+     */
+    @Exported
+    public String getStep() {
+        return step;
+    }
+
+    /**
+     * @return node the kubeconfig files were written to, empty for the controller
+     */
+    @Exported
+    public String getNode() {
+        return node;
+    }
+
+    @Exported
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return duration of the whole setup, from the credentials lookups to the files being written
+     */
+    @Exported
+    public int getSetup() {
+        return setup;
+    }
+
+    @Exported
+    public int getRemoteWrite() {
+        return remoteWrite;
+    }
+
+    /**
+     * @return how long the step waited for its kubeconfig files to be deleted
+     */
+    @Exported
+    public int getCleanup() {
+        return cleanup;
+    }
+
+    @Exported(inline = true)
+    public List<CredentialTimings> getCredentials() {
+        return credentials == null ? Collections.emptyList() : Collections.unmodifiableList(credentials);
+    }
+}
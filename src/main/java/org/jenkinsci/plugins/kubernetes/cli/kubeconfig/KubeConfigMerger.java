@@ -0,0 +1,72 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.ConfigBuilder;
+import io.fabric8.kubernetes.api.model.NamedAuthInfo;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedContext;
+
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Merges several kubeconfigs into a single one.
+ * <p>
+ * The merge follows the rules kubectl applies to the files listed in KUBECONFIG: the first definition of a
+ * cluster, user or context wins, and so does the first current-context that is set.
+ *
+ * @author Max Laverse
+ */
+public abstract class KubeConfigMerger {
+
+    /**
+     * Merge kubeconfigs, in order of precedence.
+     *
+     * @param configs kubeconfigs to merge, the first one has the highest precedence
+     * @param logger  where to report conflicting definitions
+     * @return the merged kubeconfig
+     */
+    public static Config merge(@Nonnull List<Config> configs, @Nonnull PrintStream logger) {
+        if (configs.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+
+        String currentContext = null;
+        for (Config config : configs) {
+            if (config.getCurrentContext() != null && !config.getCurrentContext().isEmpty()) {
+                currentContext = config.getCurrentContext();
+                break;
+            }
+        }
+
+        return new ConfigBuilder(configs.get(0))
+                .withClusters(mergeNamed("cluster", configs, Config::getClusters, NamedCluster::getName, logger))
+                .withUsers(mergeNamed("user", configs, Config::getUsers, NamedAuthInfo::getName, logger))
+                .withContexts(mergeNamed("context", configs, Config::getContexts, NamedContext::getName, logger))
+                .withCurrentContext(currentContext)
+                .build();
+    }
+
+    private static <T> List<T> mergeNamed(String type, List<Config> configs, Function<Config, List<T>> entries,
+                                          Function<T, String> name, PrintStream logger) {
+        Map<String, T> merged = new LinkedHashMap<>();
+        for (Config config : configs) {
+            List<T> list = entries.apply(config);
+            if (list == null) {
+                continue;
+            }
+            for (T entry : list) {
+                T existing = merged.putIfAbsent(name.apply(entry), entry);
+                if (existing != null && !existing.equals(entry)) {
+                    logger.println("kubeconfig merge: " + type + " '" + name.apply(entry) + "' is defined more than once, keeping the first definition");
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+}
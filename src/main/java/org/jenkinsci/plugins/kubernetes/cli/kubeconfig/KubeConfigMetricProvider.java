@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+import jenkins.metrics.api.Metrics;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exposes the {@link KubeConfigMetrics} through the Metrics plugin, when it is installed.
+ * <p>
+ * Each timer is published as a Metrics timer, fed with the durations recorded from its registration on. Cluster and
+ * node timers are registered as they appear.
+ *
+ * @author Max Laverse
+ */
+@Extension(optional = true)
+public class KubeConfigMetricProvider extends MetricProvider {
+    private static final Logger LOGGER = Logger.getLogger(KubeConfigMetricProvider.class.getName());
+
+    static final String PREFIX = "kubernetes-cli";
+
+    @Nonnull
+    @Override
+    public MetricSet getMetricSet() {
+        KubeConfigMetrics metrics = KubeConfigMetrics.get();
+        Map<String, Metric> set = new HashMap<>();
+        for (KubeConfigMetrics.Phase phase : KubeConfigMetrics.Phase.values()) {
+            addTimer(set, MetricRegistry.name(PREFIX, phase.getId()), metrics.getTimer(phase));
+        }
+        for (KubeConfigMetrics.CredentialsType type : KubeConfigMetrics.CredentialsType.values()) {
+            set.put(MetricRegistry.name(PREFIX, "failures", type.getId()), (Gauge<Long>) () -> metrics.getFailureCount(type));
+        }
+        set.put(MetricRegistry.name(PREFIX, "files", "leaked"), (Gauge<Long>) metrics::getLeakedFileCount);
+        set.put(MetricRegistry.name(PREFIX, "files", "pendingCleanup"), (Gauge<Integer>) () -> KubeConfigCleaner.get().getPendingCount());
+        set.put(MetricRegistry.name(PREFIX, "proxy", "connections"), (Gauge<Long>) metrics::getProxyConnectionCount);
+        set.put(MetricRegistry.name(PREFIX, "proxy", "http2Connections"), (Gauge<Long>) metrics::getProxyHttp2ConnectionCount);
+        set.put(MetricRegistry.name(PREFIX, "proxy", "errors"), (Gauge<Long>) metrics::getProxyErrorCount);
+
+        metrics.listenSeries(KubeConfigMetricProvider::register)
+                .forEach((name, timer) -> addTimer(set, MetricRegistry.name(PREFIX, name), timer));
+        return () -> set;
+    }
+
+    private static void register(String name, KubeConfigMetrics.Timer timer) {
+        Map<String, Metric> set = new HashMap<>();
+        addTimer(set, MetricRegistry.name(PREFIX, name), timer);
+        try {
+            Metrics.metricRegistry().registerAll(() -> set);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Unable to register the metrics of " + name, e);
+        }
+    }
+
+    private static void addTimer(Map<String, Metric> set, String name, KubeConfigMetrics.Timer timer) {
+        Timer metric = new Timer();
+        timer.listen(nanos -> metric.update(nanos, TimeUnit.NANOSECONDS));
+        set.put(name, metric);
+    }
+}
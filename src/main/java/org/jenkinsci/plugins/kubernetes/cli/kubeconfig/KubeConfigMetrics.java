@@ -0,0 +1,415 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Timers and counters of the materialization of kubeconfig files, for the whole controller.
+ * <p>
+ * Each phase is timed, and the setup of the kubeconfigs of a step is also timed per cluster, as is the write of the
+ * files per node. Percentiles are computed over the most recent {@link #RESERVOIR_SIZE} samples of a timer.
+ * The number of clusters and nodes tracked is bounded by {@link #MAX_SERIES}, the others are tracked as
+ * {@link #OTHER}. Their metric names only carry the host and port of server URLs, see {@link #normalize}.
+ * <p>
+ * These are exposed through the Metrics plugin when it is installed, see {@link KubeConfigMetricProvider}, and as
+ * JSON to administrators, see {@link KubeConfigMetricsAction}.
+ *
+ * @author Max Laverse
+ */
+public final class KubeConfigMetrics {
+    /**
+     * Maximum number of clusters, and of nodes, timed separately.
+     */
+    public static final int MAX_SERIES = SystemProperties.getInteger(KubeConfigMetrics.class.getName() + ".maxSeries", 256);
+
+    static final int RESERVOIR_SIZE = 1024;
+
+    /**
+     * Series the clusters and nodes beyond {@link #MAX_SERIES} are tracked as.
+     */
+    public static final String OTHER = "other";
+
+    private static final KubeConfigMetrics INSTANCE = new KubeConfigMetrics(MAX_SERIES);
+
+    public enum Phase {
+        CREDENTIALS_LOOKUP("credentialsLookup"),
+        AUTH_CONVERSION("authConversion"),
+        CONFIG_BUILD("configBuild"),
+        SERIALIZATION("serialization"),
+        REMOTE_WRITE("remoteWrite"),
+        SETUP("setup"),
+        CLEANUP("cleanup"),
+        PROXY_REQUEST("proxyRequest");
+
+        private final String id;
+
+        Phase(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Credentials types failures are counted by.
+     */
+    public enum CredentialsType {
+        LOOKUP("lookup"),
+        USERNAME_PASSWORD("usernamePassword"),
+        TOKEN("token"),
+        SECRET_TEXT("secretText"),
+        CERTIFICATE("certificate"),
+        FILE("file"),
+        OTHER("other");
+
+        private final String id;
+
+        CredentialsType(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        static CredentialsType of(@CheckForNull StandardCredentials credentials) {
+            if (credentials == null) {
+                return LOOKUP;
+            } else if (credentials instanceof TokenProducer) {
+                // token producers usually are username/password credentials as well
+                return TOKEN;
+            } else if (credentials instanceof UsernamePasswordCredentials) {
+                return USERNAME_PASSWORD;
+            } else if (credentials instanceof StringCredentials) {
+                return SECRET_TEXT;
+            } else if (credentials instanceof StandardCertificateCredentials) {
+                return CERTIFICATE;
+            } else if (credentials instanceof FileCredentials) {
+                return FILE;
+            }
+            return OTHER;
+        }
+    }
+
+    private final int maxSeries;
+    private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+    private final Map<CredentialsType, LongAdder> failures = new EnumMap<>(CredentialsType.class);
+    private final ConcurrentMap<String, Timer> clusters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> nodes = new ConcurrentHashMap<>();
+    private final LongAdder leakedFiles = new LongAdder();
+    private final LongAdder proxyConnections = new LongAdder();
+    private final LongAdder proxyHttp2Connections = new LongAdder();
+    private final LongAdder proxyErrors = new LongAdder();
+
+    private BiConsumer<String, Timer> seriesListener;
+
+    KubeConfigMetrics(int maxSeries) {
+        this.maxSeries = maxSeries;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Timer());
+        }
+        for (CredentialsType type : CredentialsType.values()) {
+            failures.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * @return the metrics shared by all the steps and build wrappers
+     */
+    public static KubeConfigMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the duration of a phase.
+     *
+     * @param phase phase which completed
+     * @param start {@link System#nanoTime()} when the phase started
+     */
+    public void record(@Nonnull Phase phase, long start) {
+        recordDuration(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Record the duration of a phase.
+     *
+     * @param phase phase which completed
+     * @param nanos duration of the phase in nanoseconds
+     */
+    public void recordDuration(@Nonnull Phase phase, long nanos) {
+        phases.get(phase).update(nanos);
+    }
+
+    /**
+     * Record the duration of the setup of the kubeconfigs of a step, for each of the clusters involved.
+     *
+     * @param clusters clusters the step accesses
+     * @param start    {@link System#nanoTime()} when the setup started
+     */
+    public void recordSetup(@Nonnull Collection<String> clusters, long start) {
+        long duration = System.nanoTime() - start;
+        phases.get(Phase.SETUP).update(duration);
+        for (String cluster : clusters) {
+            series(this.clusters, "cluster.", cluster, Phase.SETUP).update(duration);
+        }
+    }
+
+    /**
+     * Record the duration of the write of kubeconfig files to a node.
+     *
+     * @param node  name of the node, empty for the controller
+     * @param start {@link System#nanoTime()} when the write started
+     */
+    public void recordRemoteWrite(@CheckForNull String node, long start) {
+        long duration = System.nanoTime() - start;
+        phases.get(Phase.REMOTE_WRITE).update(duration);
+        series(nodes, "node.", node == null || node.isEmpty() ? "master" : node, Phase.REMOTE_WRITE).update(duration);
+    }
+
+    /**
+     * Record the activity of a local proxy, once it is stopped.
+     *
+     * @param latencies        durations in nanoseconds of the most recent requests until their response started
+     * @param connections      number of connections opened to the API server
+     * @param http2Connections number of those connections using HTTP/2
+     * @param errors           number of requests which could not be forwarded
+     */
+    public void recordProxy(@Nonnull long[] latencies, long connections, long http2Connections, long errors) {
+        Timer timer = phases.get(Phase.PROXY_REQUEST);
+        for (long latency : latencies) {
+            timer.update(latency);
+        }
+        proxyConnections.add(connections);
+        proxyHttp2Connections.add(http2Connections);
+        proxyErrors.add(errors);
+    }
+
+    /**
+     * Record that a kubeconfig could not be built.
+     *
+     * @param credentials credentials the kubeconfig was built from, null if they could not be looked up
+     */
+    public void recordFailure(@CheckForNull StandardCredentials credentials) {
+        failures.get(CredentialsType.of(credentials)).increment();
+    }
+
+    /**
+     * Record kubeconfig files which could not be deleted.
+     *
+     * @param count number of files
+     */
+    public void recordLeakedFiles(int count) {
+        leakedFiles.add(count);
+    }
+
+    @Nonnull
+    public Timer getTimer(@Nonnull Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return setup timers by cluster
+     */
+    public Map<String, Timer> getClusterTimers() {
+        return new TreeMap<>(clusters);
+    }
+
+    /**
+     * @return remote write timers by node
+     */
+    public Map<String, Timer> getNodeTimers() {
+        return new TreeMap<>(nodes);
+    }
+
+    public long getFailureCount(@Nonnull CredentialsType type) {
+        return failures.get(type).sum();
+    }
+
+    /**
+     * @return number of kubeconfig files which could not be deleted, excluding the ones waiting for their node
+     * to come back online
+     */
+    public long getLeakedFileCount() {
+        return leakedFiles.sum();
+    }
+
+    public long getProxyConnectionCount() {
+        return proxyConnections.sum();
+    }
+
+    public long getProxyHttp2ConnectionCount() {
+        return proxyHttp2Connections.sum();
+    }
+
+    public long getProxyErrorCount() {
+        return proxyErrors.sum();
+    }
+
+    /**
+     * Get notified of the cluster and node timers created from now on.
+     *
+     * @param listener called with the name and the timer of each new series
+     * @return the series created so far, by name
+     */
+    synchronized Map<String, Timer> listenSeries(BiConsumer<String, Timer> listener) {
+        this.seriesListener = listener;
+        Map<String, Timer> existing = new LinkedHashMap<>();
+        clusters.forEach((cluster, timer) -> existing.put(seriesName("cluster.", cluster, Phase.SETUP), timer));
+        nodes.forEach((node, timer) -> existing.put(seriesName("node.", node, Phase.REMOTE_WRITE), timer));
+        return existing;
+    }
+
+    private Timer series(ConcurrentMap<String, Timer> series, String prefix, String key, Phase phase) {
+        Timer timer = series.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        synchronized (this) {
+            timer = series.get(key);
+            if (timer != null) {
+                return timer;
+            }
+            if (series.size() >= maxSeries) {
+                key = OTHER;
+                timer = series.get(key);
+                if (timer != null) {
+                    return timer;
+                }
+            }
+            timer = new Timer();
+            series.put(key, timer);
+            if (seriesListener != null) {
+                seriesListener.accept(seriesName(prefix, key, phase), timer);
+            }
+            return timer;
+        }
+    }
+
+    private static String seriesName(String prefix, String key, Phase phase) {
+        return prefix + normalize(key) + '.' + phase.getId();
+    }
+
+    /**
+     * Turn a cluster or node key into a single metric name segment: server URLs are reduced to their host and port,
+     * and any other character than letters, digits, dashes and underscores is replaced by an underscore.
+     */
+    static String normalize(String key) {
+        try {
+            URI uri = new URI(key);
+            if (uri.getHost() != null) {
+                key = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + '_' + uri.getPort();
+            }
+        } catch (URISyntaxException e) {
+            // not a URL
+        }
+        return key.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * Counts durations and keeps the most recent ones.
+     */
+    public static final class Timer {
+        private final long[] samples = new long[RESERVOIR_SIZE];
+        private long count;
+        private long total;
+        private long max;
+        private volatile LongConsumer listener;
+
+        void update(long nanos) {
+            synchronized (this) {
+                samples[(int) (count % samples.length)] = nanos;
+                count++;
+                total += nanos;
+                max = Math.max(max, nanos);
+            }
+            LongConsumer current = listener;
+            if (current != null) {
+                current.accept(nanos);
+            }
+        }
+
+        /**
+         * Get notified of the durations recorded from now on, replacing the previous listener.
+         *
+         * @param listener called with each duration in nanoseconds
+         */
+        void listen(LongConsumer listener) {
+            this.listener = listener;
+        }
+
+        public synchronized Snapshot getSnapshot() {
+            long[] recent = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+            Arrays.sort(recent);
+            return new Snapshot(count, total, max, recent);
+        }
+    }
+
+    /**
+     * State of a {@link Timer}, with durations in milliseconds.
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long total;
+        private final long max;
+        private final long[] sortedSamples;
+
+        Snapshot(long count, long total, long max, long[] sortedSamples) {
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.sortedSamples = sortedSamples;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : toMillis(total / (double) count);
+        }
+
+        public double getMax() {
+            return toMillis(max);
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1
+         * @return the duration at that quantile of the most recent samples, using the nearest-rank method
+         */
+        public double getPercentile(double quantile) {
+            if (sortedSamples.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sortedSamples.length);
+            return toMillis(sortedSamples[Math.min(Math.max(rank, 1), sortedSamples.length) - 1]);
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Serves the {@link KubeConfigMetrics} as JSON to administrators, under {@code /kubernetes-cli-metrics/}.
+ *
+ * @author Max Laverse
+ */
+@Extension
+public class KubeConfigMetricsAction implements RootAction {
+    public static final String URL_NAME = "kubernetes-cli-metrics";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public void doIndex(StaplerResponse rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(toJson(KubeConfigMetrics.get()).toString(2));
+    }
+
+    static JSONObject toJson(KubeConfigMetrics metrics) {
+        JSONObject phases = new JSONObject();
+        for (KubeConfigMetrics.Phase phase : KubeConfigMetrics.Phase.values()) {
+            phases.put(phase.getId(), toJson(metrics.getTimer(phase)));
+        }
+
+        JSONObject failures = new JSONObject();
+        for (KubeConfigMetrics.CredentialsType type : KubeConfigMetrics.CredentialsType.values()) {
+            failures.put(type.getId(), metrics.getFailureCount(type));
+        }
+
+        JSONObject files = new JSONObject();
+        files.put("leaked", metrics.getLeakedFileCount());
+        files.put("pendingCleanup", KubeConfigCleaner.get().getPendingCount());
+
+        JSONObject caches = new JSONObject();
+        caches.put("kubeConfigHits", KubeConfigCache.get().getHitCount());
+        caches.put("kubeConfigMisses", KubeConfigCache.get().getMissCount());
+        caches.put("parsedKubeConfigHits", ParsedKubeConfigCache.get().getHitCount());
+        caches.put("parsedKubeConfigMisses", ParsedKubeConfigCache.get().getMissCount());
+        caches.put("parsedKubeConfigBytes", ParsedKubeConfigCache.get().getRetainedBytes());
+        caches.put("certificateKeyHits", CertificateKeyCache.get().getHitCount());
+        caches.put("certificateKeyMisses", CertificateKeyCache.get().getMissCount());
+        caches.put("tokenHits", TokenCache.get().getHitCount());
+        caches.put("tokenMisses", TokenCache.get().getMissCount());
+        caches.put("credentialsLookups", CredentialsPrefetcher.get().getLookupCount());
+        caches.put("credentialsLookupsShared", CredentialsPrefetcher.get().getSharedCount());
+
+        JSONObject proxy = new JSONObject();
+        proxy.put("connections", metrics.getProxyConnectionCount());
+        proxy.put("http2Connections", metrics.getProxyHttp2ConnectionCount());
+        proxy.put("errors", metrics.getProxyErrorCount());
+
+        JSONObject json = new JSONObject();
+        json.put("phases", phases);
+        json.put("clusters", toJson(metrics.getClusterTimers()));
+        json.put("nodes", toJson(metrics.getNodeTimers()));
+        json.put("failures", failures);
+        json.put("files", files);
+        json.put("caches", caches);
+        json.put("proxy", proxy);
+        return json;
+    }
+
+    private static JSONObject toJson(Map<String, KubeConfigMetrics.Timer> timers) {
+        JSONObject json = new JSONObject();
+        timers.forEach((name, timer) -> json.put(name, toJson(timer)));
+        return json;
+    }
+
+    private static JSONObject toJson(KubeConfigMetrics.Timer timer) {
+        KubeConfigMetrics.Snapshot snapshot = timer.getSnapshot();
+        JSONObject json = new JSONObject();
+        json.put("count", snapshot.getCount());
+        json.put("mean", snapshot.getMean());
+        json.put("p50", snapshot.getPercentile(0.5));
+        json.put("p95", snapshot.getPercentile(0.95));
+        json.put("p99", snapshot.getPercentile(0.99));
+        json.put("max", snapshot.getMax());
+        return json;
+    }
+}
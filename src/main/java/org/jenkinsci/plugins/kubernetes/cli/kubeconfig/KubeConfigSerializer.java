@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import hudson.FilePath;
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Serializes kubeconfigs to YAML with a single, shared {@link ObjectWriter}.
+ *
+ * @author Max Laverse
+ */
+public abstract class KubeConfigSerializer {
+    /**
+     * Serialized kubeconfigs up to this size are sent inline to the nodes, larger ones are streamed.
+     */
+    static final int INLINE_LIMIT = 256 * 1024;
+
+    private static final ObjectWriter CONFIG_WRITER = SerializationUtils.getMapper().writerFor(Config.class);
+
+    /**
+     * Serialize a kubeconfig.
+     *
+     * @param config kubeconfig
+     * @return YAML, UTF-8 encoded
+     * @throws IOException on serialization failures
+     */
+    public static byte[] toBytes(Config config) throws IOException {
+        return CONFIG_WRITER.writeValueAsBytes(config);
+    }
+
+    /**
+     * Serialize a kubeconfig, unless it does not fit in the given size.
+     *
+     * @param config kubeconfig
+     * @param limit  maximum size of the serialized kubeconfig
+     * @return YAML, UTF-8 encoded, or null if it is larger than the limit
+     * @throws IOException on serialization failures
+     */
+    @CheckForNull
+    public static byte[] toBytes(Config config, int limit) throws IOException {
+        BoundedByteArrayOutputStream out = new BoundedByteArrayOutputStream(limit);
+        try {
+            CONFIG_WRITER.writeValue(out, config);
+        } catch (IOException | RuntimeException e) {
+            if (out.overflowed) {
+                return null;
+            }
+            throw e;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Serialize a kubeconfig directly into a stream, without buffering the whole document.
+     *
+     * @param config kubeconfig
+     * @param out    target stream, closed once the kubeconfig is written
+     * @throws IOException on serialization or stream failures
+     */
+    public static void write(Config config, OutputStream out) throws IOException {
+        CONFIG_WRITER.writeValue(out, config);
+    }
+
+    /**
+     * Serialize a kubeconfig directly into a file of the node it lives on.
+     *
+     * @param config kubeconfig
+     * @param file   target file
+     * @throws IOException          on serialization or file failures
+     * @throws InterruptedException on file operations
+     */
+    public static void write(Config config, FilePath file) throws IOException, InterruptedException {
+        try (OutputStream out = file.write()) {
+            write(config, out);
+        }
+    }
+
+    /**
+     * In-memory buffer which refuses to grow past a limit.
+     */
+    private static final class BoundedByteArrayOutputStream extends OutputStream {
+        private final int limit;
+        private byte[] buffer;
+        private int count;
+        private boolean overflowed;
+
+        BoundedByteArrayOutputStream(int limit) {
+            this.limit = limit;
+            this.buffer = new byte[Math.min(limit, 8192)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (count + len > limit) {
+                overflowed = true;
+                throw new IOException("Serialized kubeconfig is larger than " + limit + " bytes");
+            }
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(limit, Math.max(buffer.length * 2, count + len)));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A kubeconfig materialized at most once per node for the whole build, and shared by all the blocks using it.
+ * <p>
+ * Each node the kubeconfig is written to keeps track of the blocks currently using it. Once the session is closed,
+ * when the build completes, the files are deleted as soon as no block uses them anymore.
+ *
+ * @author Max Laverse
+ */
+public class KubeConfigSession {
+    private final String id;
+    private final String serverUrl;
+    private final String credentialsId;
+    private final String caCertificate;
+    private final String clusterName;
+    private final String contextName;
+    private final String namespace;
+    private final boolean pruneKubeConfig;
+
+    /**
+     * Kubeconfig files by node name, empty for the controller.
+     */
+    private final Map<String, NodeFile> files = new HashMap<>();
+    private boolean closed;
+
+    public KubeConfigSession(@Nonnull String id, String serverUrl, @Nonnull String credentialsId, String caCertificate,
+                             String clusterName, String contextName, String namespace, boolean pruneKubeConfig) {
+        this.id = id;
+        this.serverUrl = serverUrl;
+        this.credentialsId = credentialsId;
+        this.caCertificate = caCertificate;
+        this.clusterName = clusterName;
+        this.contextName = contextName;
+        this.namespace = namespace;
+        this.pruneKubeConfig = pruneKubeConfig;
+    }
+
+    /**
+     * @return handle of the session, unique within its build
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Return the kubeconfig file of the node of a block, writing it if this is the first block of the session on
+     * that node. The file must be released by {@link #release} once the block is done.
+     * <p>
+     * The file is written outside the lock of the session, so that blocks on different nodes do not wait for each
+     * other. Blocks on the same node wait for the pending write of the first one. The file is written again if it
+     * disappeared since, e.g. along with the workspace of the block which wrote it.
+     *
+     * @param environment environment of the block
+     * @param listener    listener of the block
+     * @param step        name of the step, for the timings of the build
+     * @return path to the kubeconfig file
+     * @throws IOException          on credentials lookup or file operations, or if the session is closed
+     * @throws InterruptedException on file operations
+     */
+    public String acquire(@Nonnull KubeConfigEnvironment environment, @Nonnull TaskListener listener,
+                          String step) throws IOException, InterruptedException {
+        String nodeName;
+        NodeFile file;
+        String path;
+        boolean writer = false;
+        synchronized (this) {
+            if (closed) {
+                throw new AbortException("Kubeconfig session " + id + " is closed");
+            }
+            if (environment.getWorkspace() == null) {
+                throw new AbortException("Kubeconfig session " + id + " can only be used within a node");
+            }
+            nodeName = nodeName(environment);
+            file = files.get(nodeName);
+            // pending writes are not persisted with the build
+            if (file == null || file.path == null && file.written == null) {
+                file = new NodeFile();
+                files.put(nodeName, file);
+                writer = true;
+            }
+            file.references++;
+            path = file.path;
+        }
+        if (writer) {
+            return write(nodeName, file, environment, listener, step);
+        }
+        try {
+            if (path == null) {
+                path = file.written.get();
+            }
+            if (!new FilePath(environment.getWorkspace().getChannel(), path).exists()) {
+                path = rewrite(nodeName, file, path, environment, listener, step);
+            }
+            return path;
+        } catch (ExecutionException e) {
+            // the entry was dropped along with the references of the failed write
+            throw new IOException("Unable to write the kubeconfig of session " + id, e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release(nodeName, file);
+            throw e;
+        }
+    }
+
+    private String write(String nodeName, NodeFile file, KubeConfigEnvironment environment, TaskListener listener,
+                         String step) throws IOException, InterruptedException {
+        String path;
+        try {
+            path = writeFile(environment, listener, step);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                // the next block on that node writes it again
+                files.remove(nodeName, file);
+            }
+            file.written.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            file.path = path;
+        }
+        file.written.complete(path);
+        return path;
+    }
+
+    /**
+     * Write the file of a node again, once it is known to be missing.
+     */
+    private String rewrite(String nodeName, NodeFile file, String missingPath, KubeConfigEnvironment environment,
+                           TaskListener listener, String step) throws IOException, InterruptedException {
+        listener.getLogger().println("kubeconfig of session " + id + " is gone, writing it again");
+        String path = writeFile(environment, listener, step);
+        String current;
+        synchronized (this) {
+            if (missingPath.equals(file.path)) {
+                file.path = path;
+                return path;
+            }
+            current = file.path;
+        }
+        // another block of the node wrote it again first
+        KubeConfigCleaner.get().cleanupInBackground(nodeName, Collections.singletonList(path));
+        return current;
+    }
+
+    private String writeFile(KubeConfigEnvironment environment, TaskListener listener, String step)
+            throws IOException, InterruptedException {
+        KubeConfigWriter writer = KubeConfigWriterFactory.get(serverUrl, credentialsId, caCertificate, clusterName,
+                contextName, namespace, false, environment);
+        writer.setPruneKubeConfig(pruneKubeConfig);
+        MultiKubeConfigWriter multiWriter = new MultiKubeConfigWriter(Collections.singletonList(writer),
+                environment.getWorkspace(), listener);
+        String path = multiWriter.writeKubeConfigs().get(0);
+        KubeConfigTimingsAction.record(environment.getBuild(), multiWriter.getInvocation(step));
+        return path;
+    }
+
+    /**
+     * Release the kubeconfig file of the node of a block. The file is deleted if the session is closed and no other
+     * block uses it.
+     *
+     * @param nodeName name of the node of the block, empty for the controller
+     */
+    public void release(@Nonnull String nodeName) {
+        NodeFile file;
+        synchronized (this) {
+            file = files.get(nodeName);
+        }
+        if (file != null) {
+            release(nodeName, file);
+        }
+    }
+
+    private void release(String nodeName, NodeFile file) {
+        String path;
+        synchronized (this) {
+            if (files.get(nodeName) != file || file.references == 0) {
+                return;
+            }
+            file.references--;
+            if (!closed || file.references > 0) {
+                return;
+            }
+            files.remove(nodeName);
+            path = file.path;
+        }
+        if (path != null) {
+            KubeConfigCleaner.get().cleanupInBackground(nodeName, Collections.singletonList(path));
+        }
+    }
+
+    /**
+     * Close the session and delete the files no block is using anymore.
+     */
+    public void close() {
+        Map<String, String> unused = new HashMap<>();
+        synchronized (this) {
+            closed = true;
+            files.entrySet().removeIf(e -> {
+                // pending writes are referenced by the block writing them
+                if (e.getValue().references > 0 || e.getValue().path == null) {
+                    return false;
+                }
+                unused.put(e.getKey(), e.getValue().path);
+                return true;
+            });
+        }
+        unused.forEach((nodeName, path) -> KubeConfigCleaner.get().cleanupInBackground(nodeName, Collections.singletonList(path)));
+    }
+
+    /**
+     * @return names of the nodes the kubeconfig is currently written to
+     */
+    public synchronized List<String> getNodes() {
+        List<String> nodes = new ArrayList<>();
+        files.forEach((nodeName, file) -> {
+            if (file.path != null) {
+                nodes.add(nodeName);
+            }
+        });
+        return nodes;
+    }
+
+    /**
+     * @param nodeName name of the node, empty for the controller
+     * @return number of blocks using the kubeconfig on that node
+     */
+    public synchronized int getReferences(@Nonnull String nodeName) {
+        NodeFile file = files.get(nodeName);
+        return file == null ? 0 : file.references;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return name of the node of the workspace of a block, empty for the controller
+     */
+    @Nonnull
+    public static String nodeName(@Nonnull KubeConfigEnvironment environment) {
+        String nodeName = KubeConfigWriter.getNodeName(environment.getWorkspace());
+        return nodeName == null ? "" : nodeName;
+    }
+
+    @CheckForNull
+    synchronized String getPath(@Nonnull String nodeName) {
+        NodeFile file = files.get(nodeName);
+        return file == null ? null : file.path;
+    }
+
+    private static final class NodeFile {
+        /**
+         * Path to the file, null until written.
+         */
+        private String path;
+        private int references;
+        private final transient CompletableFuture<String> written = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.Extension;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kubeconfig sessions of a build, see {@link KubeConfigSession}. They are closed once the build completes.
+ *
+ * @author Max Laverse
+ */
+public class KubeConfigSessionsAction extends InvisibleAction {
+    private static final Object LOCK = new Object();
+
+    private final List<KubeConfigSession> sessions = new ArrayList<>();
+
+    /**
+     * Open a session in a build.
+     *
+     * @return the session, not materialized on any node yet
+     */
+    public static KubeConfigSession open(@Nonnull Run<?, ?> run, String serverUrl, @Nonnull String credentialsId,
+                                         String caCertificate, String clusterName, String contextName, String namespace,
+                                         boolean pruneKubeConfig) {
+        synchronized (LOCK) {
+            KubeConfigSessionsAction action = run.getAction(KubeConfigSessionsAction.class);
+            if (action == null) {
+                action = new KubeConfigSessionsAction();
+                run.addAction(action);
+            }
+            KubeConfigSession session = new KubeConfigSession("kubeconfig-session-" + (action.sessions.size() + 1),
+                    serverUrl, credentialsId, caCertificate, clusterName, contextName, namespace, pruneKubeConfig);
+            action.sessions.add(session);
+            return session;
+        }
+    }
+
+    /**
+     * Look up a session of a build.
+     *
+     * @param run build the session was opened in
+     * @param id  handle of the session
+     * @return the session, or null if the build has no such session
+     */
+    @CheckForNull
+    public static KubeConfigSession get(@Nonnull Run<?, ?> run, String id) {
+        synchronized (LOCK) {
+            KubeConfigSessionsAction action = run.getAction(KubeConfigSessionsAction.class);
+            if (action != null) {
+                for (KubeConfigSession session : action.sessions) {
+                    if (session.getId().equals(id)) {
+                        return session;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public List<KubeConfigSession> getSessions() {
+        synchronized (LOCK) {
+            return new ArrayList<>(sessions);
+        }
+    }
+
+    /**
+     * Closes the sessions of builds once they complete.
+     */
+    @Extension
+    public static class CloseOnCompletion extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, @Nonnull TaskListener listener) {
+            KubeConfigSessionsAction action = run.getAction(KubeConfigSessionsAction.class);
+            if (action == null) {
+                return;
+            }
+            for (KubeConfigSession session : action.getSessions()) {
+                session.close();
+            }
+        }
+    }
+}
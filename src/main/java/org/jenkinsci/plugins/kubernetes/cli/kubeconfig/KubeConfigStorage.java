@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selects the storage of kubeconfig files for a node.
+ * <p>
+ * Nodes store them in their temporary folder, unless a {@link KubeConfigStorageNodeProperty} or the
+ * {@link KubeConfigStorageConfiguration} selects memory-backed storage for them. The folders are probed on the node
+ * itself, which falls back to its temporary folder when none of them is usable.
+ *
+ * @author Max Laverse
+ */
+public abstract class KubeConfigStorage {
+
+    /**
+     * Return the memory-backed folders a node should try to store kubeconfig files in.
+     *
+     * @param computer node the files are written to
+     * @return candidate folders, empty if the files are stored in the temporary folder
+     */
+    public static List<String> getMemoryBackedFolders(@CheckForNull Computer computer) {
+        Node node = computer == null ? null : computer.getNode();
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        KubeConfigStorageConfiguration configuration = KubeConfigStorageConfiguration.get();
+
+        KubeConfigStorageNodeProperty property = node.getNodeProperty(KubeConfigStorageNodeProperty.class);
+        if (property != null) {
+            if (!property.memoryBacked) {
+                return Collections.emptyList();
+            }
+            if (property.memoryBackedFolders != null && !property.memoryBackedFolders.trim().isEmpty()) {
+                return split(property.memoryBackedFolders);
+            }
+            return configuration == null ? split(KubeConfigStorageConfiguration.DEFAULT_MEMORY_BACKED_FOLDERS) : split(configuration.memoryBackedFolders);
+        }
+
+        Label label = configuration == null ? null : configuration.getMemoryBackedLabel();
+        if (label != null && label.contains(node)) {
+            return split(configuration.memoryBackedFolders);
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> split(String folders) {
+        List<String> list = new ArrayList<>();
+        if (folders != null) {
+            for (String folder : folders.split("\\r?\\n")) {
+                if (!folder.trim().isEmpty()) {
+                    list.add(folder.trim());
+                }
+            }
+        }
+        return list;
+    }
+}
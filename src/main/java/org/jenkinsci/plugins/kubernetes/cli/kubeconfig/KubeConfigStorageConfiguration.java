@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import antlr.ANTLRException;
+import hudson.Extension;
+import hudson.model.Label;
+import hudson.util.FormValidation;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Where the nodes store kubeconfig files, unless a node overrides it with a {@link KubeConfigStorageNodeProperty}.
+ *
+ * @author Max Laverse
+ */
+@Extension
+public class KubeConfigStorageConfiguration extends GlobalConfiguration {
+    public static final String DEFAULT_MEMORY_BACKED_FOLDERS = "/dev/shm\n${XDG_RUNTIME_DIR}";
+
+    /**
+     * Label expression of the nodes storing kubeconfig files in memory, none if empty.
+     */
+    @DataBoundSetter
+    public String memoryBackedLabel;
+
+    /**
+     * Memory-backed folders to try, one per line, in order.
+     */
+    @DataBoundSetter
+    public String memoryBackedFolders = DEFAULT_MEMORY_BACKED_FOLDERS;
+
+    public KubeConfigStorageConfiguration() {
+        load();
+    }
+
+    public static KubeConfigStorageConfiguration get() {
+        return GlobalConfiguration.all().get(KubeConfigStorageConfiguration.class);
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+
+    public FormValidation doCheckMemoryBackedLabel(@QueryParameter String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return FormValidation.ok();
+        }
+        try {
+            Label.parseExpression(value.trim());
+        } catch (ANTLRException e) {
+            return FormValidation.error(e, "Invalid label expression");
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Returns the label of the nodes storing kubeconfig files in memory
+     *
+     * @return the label, or null if no node is selected
+     */
+    Label getMemoryBackedLabel() {
+        if (memoryBackedLabel == null || memoryBackedLabel.trim().isEmpty()) {
+            return null;
+        }
+        return Jenkins.get().getLabel(memoryBackedLabel.trim());
+    }
+}
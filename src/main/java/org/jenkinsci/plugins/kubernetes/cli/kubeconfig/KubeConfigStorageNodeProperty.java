@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Where a node stores kubeconfig files, regardless of the {@link KubeConfigStorageConfiguration}.
+ *
+ * @author Max Laverse
+ */
+public class KubeConfigStorageNodeProperty extends NodeProperty<Node> {
+    /**
+     * Whether kubeconfig files are stored in memory on this node.
+     */
+    @DataBoundSetter
+    public boolean memoryBacked = true;
+
+    /**
+     * Memory-backed folders to try, one per line, in order. Falls back to the global folders if empty.
+     */
+    @DataBoundSetter
+    public String memoryBackedFolders;
+
+    @DataBoundConstructor
+    public KubeConfigStorageNodeProperty() {
+    }
+
+    @Extension
+    public static class DescriptorImpl extends NodePropertyDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Kubernetes CLI kubeconfig storage";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import jenkins.util.SystemProperties;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the kubeconfig setups and cleanups of a build, shown on the build page and exported by the REST API.
+ * <p>
+ * Timings are only kept in memory when recorded, the build saves them along with the rest of its state. At most
+ * {@link #MAX_INVOCATIONS} invocations are kept per build, the following ones are only counted.
+ *
+ * @author Max Laverse
+ */
+@ExportedBean
+public class KubeConfigTimingsAction implements RunAction2 {
+    /**
+     * Maximum number of step or build wrapper invocations whose timings are kept per build.
+     */
+    public static final int MAX_INVOCATIONS = SystemProperties.getInteger(KubeConfigTimingsAction.class.getName() + ".maxInvocations", 50);
+
+    private static final Object LOCK = new Object();
+
+    private final List<KubeConfigInvocation> invocations = new ArrayList<>();
+    private int dropped;
+
+    /**
+     * Record the timings of the setup of the kubeconfigs of a step.
+     *
+     * @param run        build running the step
+     * @param invocation timings of the setup
+     * @return id of the invocation, to record its cleanup
+     */
+    public static int record(@Nonnull Run<?, ?> run, @Nonnull KubeConfigInvocation invocation) {
+        synchronized (LOCK) {
+            KubeConfigTimingsAction action = run.getAction(KubeConfigTimingsAction.class);
+            if (action == null) {
+                action = new KubeConfigTimingsAction();
+                run.addAction(action);
+            }
+            int id = action.invocations.size() + action.dropped;
+            if (action.invocations.size() < MAX_INVOCATIONS) {
+                invocation.setId(id);
+                action.invocations.add(invocation);
+            } else {
+                action.dropped++;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Record how long the cleanup of the kubeconfigs of a step took.
+     *
+     * @param run   build running the step
+     * @param id    id of the invocation, see {@link #record}
+     * @param start {@link System#nanoTime()} when the cleanup started
+     */
+    public static void recordCleanup(@Nonnull Run<?, ?> run, int id, long start) {
+        int millis = (int) Math.min(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Integer.MAX_VALUE);
+        synchronized (LOCK) {
+            KubeConfigTimingsAction action = run.getAction(KubeConfigTimingsAction.class);
+            if (action != null && id < action.invocations.size()) {
+                action.invocations.get(id).setCleanup(millis);
+            }
+        }
+    }
+
+    @Exported(inline = true)
+    public List<KubeConfigInvocation> getInvocations() {
+        synchronized (LOCK) {
+            return Collections.unmodifiableList(new ArrayList<>(invocations));
+        }
+    }
+
+    /**
+     * @return number of invocations whose timings were not kept
+     */
+    @Exported
+    public int getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Kubeconfig timings";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -1,32 +1,33 @@
 package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
 
-import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import hudson.AbortException;
-import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.Computer;
 import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
 import io.fabric8.kubernetes.api.model.Cluster;
+import io.fabric8.kubernetes.api.model.Config;
 import io.fabric8.kubernetes.api.model.ConfigBuilder;
-import io.fabric8.kubernetes.api.model.ConfigFluent;
 import io.fabric8.kubernetes.api.model.NamedCluster;
-import io.fabric8.kubernetes.client.internal.SerializationUtils;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
-import jenkins.security.MasterToSlaveCallable;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuth;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthConfig;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.jenkinsci.plugins.kubernetes.auth.impl.KubernetesAuthCertificate;
 import org.jenkinsci.plugins.kubernetes.auth.impl.KubernetesAuthKubeconfig;
-import org.jenkinsci.plugins.kubernetes.credentials.Utils;
+import org.jenkinsci.plugins.kubernetes.auth.impl.KubernetesAuthToken;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
 
 import javax.annotation.Nonnull;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * @author Max Laverse
@@ -34,9 +35,17 @@ import java.util.Collections;
 public class KubeConfigWriter {
     public static final String ENV_VARIABLE_NAME = "KUBECONFIG";
 
+    static final String TEMP_FILE_PREFIX = "kubernetes-cli-plugin-kube";
+    static final String TEMP_FILE_SUFFIX = "config";
+
     private static final String DEFAULT_CONTEXTNAME = "k8s";
     private static final String CLUSTERNAME = "k8s";
 
+    /**
+     * Folders of the nodes kubeconfig files are written to, which are known to exist.
+     */
+    private static final Map<VirtualChannel, TemporaryFolder> TEMPORARY_FOLDERS = Collections.synchronizedMap(new WeakHashMap<>());
+
     private final String serverUrl;
     private final String credentialsId;
     private final String caCertificate;
@@ -47,57 +56,31 @@ public class KubeConfigWriter {
     private final FilePath workspace;
     private final Launcher launcher;
     private final Run<?, ?> build;
+    private final KubeConfigEnvironment environment;
+    private final CredentialTimings timings;
+    private boolean pruneKubeConfig;
 
     public KubeConfigWriter(@Nonnull String serverUrl, @Nonnull String credentialsId,
                             String caCertificate, String clusterName, String contextName, String namespace, boolean skipUseContext, FilePath workspace, Launcher launcher, Run<?, ?> build) {
+        this(serverUrl, credentialsId, caCertificate, clusterName, contextName, namespace, skipUseContext, new KubeConfigEnvironment(workspace, launcher, build));
+    }
+
+    public KubeConfigWriter(@Nonnull String serverUrl, @Nonnull String credentialsId,
+                            String caCertificate, String clusterName, String contextName, String namespace, boolean skipUseContext, @Nonnull KubeConfigEnvironment environment) {
         this.serverUrl = serverUrl;
         this.credentialsId = credentialsId;
         this.caCertificate = caCertificate;
-        this.workspace = workspace;
-        this.launcher = launcher;
-        this.build = build;
+        this.environment = environment;
+        this.timings = new CredentialTimings(credentialsId);
+        this.workspace = environment.getWorkspace();
+        this.launcher = environment.getLauncher();
+        this.build = environment.getBuild();
         this.clusterName = clusterName;
         this.contextName = contextName;
         this.namespace = namespace;
         this.skipUseContext = skipUseContext;
     }
 
-    private static ConfigBuilder setNamedCluster(ConfigBuilder configBuilder, NamedCluster cluster) {
-        return existingOrNewCluster(configBuilder, cluster.getName())
-                .withName(cluster.getName())
-                .editOrNewClusterLike(cluster.getCluster())
-                .endCluster()
-                .endCluster();
-    }
-
-    private static ConfigBuilder setContextCluster(ConfigBuilder configBuilder, String context, String cluster) {
-        return existingOrNewContext(configBuilder, context).editOrNewContext().withCluster(cluster).endContext().endContext();
-    }
-
-    private static ConfigBuilder setContextNamespace(ConfigBuilder configBuilder, String context, String namespace) {
-        return existingOrNewContext(configBuilder, context).editOrNewContext().withNamespace(namespace).endContext().endContext();
-    }
-
-    private static ConfigBuilder setCurrentContext(ConfigBuilder configBuilder, String context) {
-        return configBuilder.withNewCurrentContext(context);
-    }
-
-    private static ConfigFluent.ContextsNested<ConfigBuilder> existingOrNewContext(ConfigBuilder configBuilder, String context) {
-        if (configBuilder.hasMatchingContext(p -> p.getName().equals(context))) {
-            return configBuilder.editMatchingContext(p -> p.getName().equals(context));
-        } else {
-            return configBuilder.addNewContext();
-        }
-    }
-
-    private static ConfigFluent.ClustersNested<ConfigBuilder> existingOrNewCluster(ConfigBuilder configBuilder, String cluster) {
-        if (configBuilder.hasMatchingCluster(p -> p.getName().equals(cluster))) {
-            return configBuilder.editMatchingCluster(p -> p.getName().equals(cluster));
-        } else {
-            return configBuilder.addNewCluster();
-        }
-    }
-
     /**
      * Write a configuration file for kubectl to disk.
      *
@@ -106,86 +89,245 @@ public class KubeConfigWriter {
      * @throws InterruptedException on file operations
      */
     public String writeKubeConfig() throws IOException, InterruptedException {
-        if (!workspace.exists()) {
-            launcher.getListener().getLogger().println("creating missing workspace to write kubeconfig");
-            workspace.mkdirs();
+        return writeKubeConfig(buildKubeConfig());
+    }
+
+    /**
+     * Build the configuration for kubectl, without writing it to disk.
+     *
+     * @return kubeconfig
+     * @throws IOException          on credentials lookup or conversion failures
+     * @throws InterruptedException on environment resolution
+     */
+    public Config buildKubeConfig() throws IOException, InterruptedException {
+        StandardCredentials credentials = lookupCredentials();
+        return buildKubeConfig(credentials, CredentialsDigest.ofSecret(credentials));
+    }
+
+    /**
+     * Render the configuration for kubectl, reusing the rendering of identical credentials and settings
+     * from the {@link KubeConfigCache} when possible.
+     *
+     * @return rendered kubeconfig
+     * @throws IOException          on credentials lookup or conversion failures
+     * @throws InterruptedException on environment resolution
+     */
+    RenderedKubeConfig renderKubeConfig() throws IOException, InterruptedException {
+        final StandardCredentials credentials = lookupCredentials();
+
+        // the content of the credentials is read once, for the keys of all the caches
+        CredentialsDigest.Secret secret = CredentialsDigest.ofSecret(credentials);
+        KubeConfigCache cache = KubeConfigCache.get();
+        String cacheKey = KubeConfigCache.key(credentials, secret, getServerUrl(), caCertificate, getClusterName(), getContextName(), getNamespace(), skipUseContext, pruneKubeConfig);
+        if (cacheKey != null) {
+            byte[] content = cache.getIfPresent(cacheKey);
+            if (content != null) {
+                timings.setCached(true);
+                return RenderedKubeConfig.of(content);
+            }
         }
 
+        Config config = buildKubeConfig(credentials, secret);
+        long start = System.nanoTime();
+        RenderedKubeConfig rendered = RenderedKubeConfig.render(config);
+        record(KubeConfigMetrics.Phase.SERIALIZATION, start);
+        // configurations too large to be sent inline are not worth keeping in memory either
+        if (cacheKey != null && !rendered.isStreamed()) {
+            cache.put(cacheKey, rendered.content);
+        }
+        return rendered;
+    }
+
+    private StandardCredentials lookupCredentials() throws IOException, InterruptedException {
+        KubeConfigMetrics metrics = KubeConfigMetrics.get();
+        long start = System.nanoTime();
+
         // Lookup for the credentials on Jenkins
-        final StandardCredentials credentials = CredentialsProvider.findCredentialById(credentialsId, StandardCredentials.class, build, Collections.emptyList());
+        final StandardCredentials credentials;
+        try {
+            credentials = environment.lookupCredentials(credentialsId);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(null);
+            throw e;
+        } finally {
+            record(KubeConfigMetrics.Phase.CREDENTIALS_LOOKUP, start);
+        }
         if (credentials == null) {
+            metrics.recordFailure(null);
             throw new AbortException("Unable to find credentials with id '" + credentialsId + "'");
         }
+        return credentials;
+    }
+
+    private Config buildKubeConfig(StandardCredentials credentials, CredentialsDigest.Secret secret) throws IOException, InterruptedException {
+        KubeConfigMetrics metrics = KubeConfigMetrics.get();
+
+        // Kubeconfig files are only parsed once, and then completed on a copy-on-write view
+        ParsedKubeConfigCache parsedCache = ParsedKubeConfigCache.get();
+        ParsedKubeConfigCache.Key parsedKey = ParsedKubeConfigCache.key(credentials, secret);
+        Config parsed = parsedKey == null ? null : parsedCache.getIfPresent(parsedKey);
+        if (parsed != null) {
+            long start = System.nanoTime();
+            try {
+                IndexedKubeConfig kubeConfig = IndexedKubeConfig.view(parsed);
+                completeImportedKubeConfig(kubeConfig);
+                return kubeConfig.toConfig();
+            } catch (IOException | RuntimeException e) {
+                metrics.recordFailure(credentials);
+                throw e;
+            } finally {
+                record(KubeConfigMetrics.Phase.CONFIG_BUILD, start);
+            }
+        }
 
         // Convert into Kubernetes credentials
-        KubernetesAuth auth = AuthenticationTokens.convert(KubernetesAuth.class, credentials);
+        KubernetesAuth auth;
+        long start = System.nanoTime();
+        try {
+            if (credentials instanceof TokenProducer) {
+                // Serve tokens from the cache instead of fetching one for every block
+                auth = new KubernetesAuthToken(TokenCache.get().cachingProducer(credentials));
+            } else if (credentials instanceof StandardCertificateCredentials) {
+                // Decrypting the keystore is slow, serve the key material from the cache
+                CertificateHelper.ClientCertificate certificate = CertificateKeyCache.get().get((StandardCertificateCredentials) credentials);
+                auth = new KubernetesAuthCertificate(certificate.getCertificate(), certificate.getKey());
+            } else {
+                auth = AuthenticationTokens.convert(KubernetesAuth.class, credentials);
+            }
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(credentials);
+            throw e;
+        } finally {
+            record(KubeConfigMetrics.Phase.AUTH_CONVERSION, start);
+        }
         if (auth == null) {
+            metrics.recordFailure(credentials);
             throw new AbortException("Unsupported credentials type " + credentials.getClass().getName());
         }
 
         // Build configuration
         ConfigBuilder configBuilder;
+        start = System.nanoTime();
         try {
-            // Build an initial Kubeconfig builder from the credentials
-            KubernetesAuthConfig authConfig = new KubernetesAuthConfig(getServerUrl(), caCertificate, !wasProvided(caCertificate));
+            // Build an initial Kubeconfig builder from the credentials. The certificate authority data is encoded
+            // when completing the kubeconfig, only token producers need the certificate to fetch their token.
+            String authCaCertificate = credentials instanceof TokenProducer ? caCertificate : null;
+            KubernetesAuthConfig authConfig = new KubernetesAuthConfig(getServerUrl(), authCaCertificate, !wasProvided(caCertificate));
             configBuilder = auth.buildConfigBuilder(authConfig, getContextNameOrDefault(), getClusterNameOrDefault(), credentials.getId());
 
-            // Set additional values of the Kubeconfig
+            // Set additional values of the Kubeconfig, on a model indexed by name since imported kubeconfigs can be large
+            Config config = configBuilder.build();
             if (auth instanceof KubernetesAuthKubeconfig) {
-                configBuilder = completeKubeconfigConfigBuilder(configBuilder);
-            } else {
-                configBuilder = completeConfigBuilder(configBuilder);
+                IndexedKubeConfig kubeConfig = parsedKey != null && parsedCache.put(parsedKey, config)
+                        ? IndexedKubeConfig.view(config)
+                        : IndexedKubeConfig.of(config);
+                completeImportedKubeConfig(kubeConfig);
+                return kubeConfig.toConfig();
             }
+            IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config);
+            completeKubeConfig(kubeConfig);
+            return kubeConfig.toConfig();
         } catch (KubernetesAuthException e) {
+            metrics.recordFailure(credentials);
             throw new AbortException(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(credentials);
+            throw e;
+        } finally {
+            record(KubeConfigMetrics.Phase.CONFIG_BUILD, start);
         }
+    }
 
-        // Write configuration to disk
-        FilePath configFile = getTempKubeconfigFilePath();
-        try (Writer w = new OutputStreamWriter(new FileOutputStream(configFile.getRemote()), StandardCharsets.UTF_8)) {
-            w.write(SerializationUtils.getMapper().writeValueAsString(configBuilder.build()));
-        }
+    /**
+     * Whether kubeconfigs imported from file credentials are pruned down to the selected context, and the cluster
+     * and user it references. The selected context is the one named by the context name if set, or the current
+     * context of the file.
+     *
+     * @param pruneKubeConfig true to prune imported kubeconfigs
+     */
+    public void setPruneKubeConfig(boolean pruneKubeConfig) {
+        this.pruneKubeConfig = pruneKubeConfig;
+    }
+
+    /**
+     * @return how long the phases of the last build of the kubeconfig took
+     */
+    public CredentialTimings getTimings() {
+        return timings;
+    }
 
-        return configFile.getRemote();
+    private void record(KubeConfigMetrics.Phase phase, long start) {
+        long duration = System.nanoTime() - start;
+        KubeConfigMetrics.get().recordDuration(phase, duration);
+        timings.record(phase, duration);
     }
 
-    private ConfigBuilder completeConfigBuilder(ConfigBuilder configBuilder) {
-        if (wasProvided(namespace)) {
-            configBuilder = setContextNamespace(configBuilder, getContextNameOrDefault(), namespace);
+    /**
+     * Write a configuration for kubectl to a temporary file.
+     *
+     * @param config kubeconfig to write
+     * @return path to kubeconfig file
+     * @throws IOException          on file operations
+     * @throws InterruptedException on file operations
+     */
+    public String writeKubeConfig(Config config) throws IOException, InterruptedException {
+        // same folder probing as the steps, see WriteKubeConfigsCallable
+        MultiKubeConfigWriter writer = new MultiKubeConfigWriter(Collections.singletonList(this), workspace,
+                launcher == null ? TaskListener.NULL : launcher.getListener());
+        return writer.writeFiles(Collections.singletonList(RenderedKubeConfig.render(config))).get(0);
+    }
+
+    private void completeKubeConfig(IndexedKubeConfig kubeConfig) throws IOException, InterruptedException {
+        NamedCluster namedCluster = kubeConfig.getCluster(getClusterNameOrDefault());
+        if (wasProvided(caCertificate) && namedCluster != null && namedCluster.getCluster() != null) {
+            namedCluster.getCluster().setCertificateAuthorityData(PemCodec.encodeCertificateAuthorityData(caCertificate));
+        }
+
+        if (wasProvided(getNamespace())) {
+            kubeConfig.getOrAddContext(getContextNameOrDefault()).setNamespace(getNamespace());
         }
 
         if (!skipUseContext) {
-            configBuilder = setCurrentContext(configBuilder, getContextNameOrDefault());
+            kubeConfig.setCurrentContext(getContextNameOrDefault());
         }
-        return configBuilder;
     }
 
-    private ConfigBuilder completeKubeconfigConfigBuilder(ConfigBuilder configBuilder) throws IOException, InterruptedException {
+    private void completeImportedKubeConfig(IndexedKubeConfig kubeConfig) throws IOException, InterruptedException {
         if (wasProvided(getServerUrl())) {
-            configBuilder = setNamedCluster(configBuilder, buildNamedCluster());
+            // a cluster of the same name already defined in the kubeconfig is kept as is
+            kubeConfig.addClusterIfAbsent(buildNamedCluster());
         }
 
-        String currentContext = configBuilder.getCurrentContext();
-        if (wasProvided(serverUrl) || wasProvided(clusterName)) {
-            configBuilder = setContextCluster(configBuilder, currentContext, getClusterNameOrDefault());
+        String currentContext = kubeConfig.getCurrentContext();
+        if (wasProvided(serverUrl) || wasProvided(getClusterName())) {
+            kubeConfig.getOrAddContext(currentContext).setCluster(getClusterNameOrDefault());
         }
 
-        if (wasProvided(namespace)) {
-            configBuilder = setContextNamespace(configBuilder, currentContext, namespace);
+        if (wasProvided(getNamespace())) {
+            kubeConfig.getOrAddContext(currentContext).setNamespace(getNamespace());
         }
 
-        if (wasProvided(contextName) && !skipUseContext) {
-            configBuilder = setCurrentContext(configBuilder, contextName);
+        if (wasProvided(getContextName()) && !skipUseContext) {
+            kubeConfig.setCurrentContext(getContextName());
         }
 
-        return configBuilder;
+        if (pruneKubeConfig) {
+            // after the overrides, so that the cluster kept is the one the context ends up referencing
+            String selectedContext = wasProvided(getContextName()) ? getContextName() : currentContext;
+            if (!wasProvided(selectedContext)) {
+                throw new AbortException("Unable to prune the kubeconfig of credentials '" + credentialsId + "': it has no current context and no context name is set");
+            }
+            if (!kubeConfig.retainContext(selectedContext)) {
+                throw new AbortException("Unable to prune the kubeconfig of credentials '" + credentialsId + "': context '" + selectedContext + "' not found");
+            }
+        }
     }
 
     private NamedCluster buildNamedCluster() throws IOException, InterruptedException {
         Cluster cluster = new Cluster();
         cluster.setServer(getServerUrl());
         if (wasProvided(caCertificate)) {
-            cluster.setCertificateAuthorityData(Utils.encodeBase64(Utils.wrapCertificate(caCertificate)));
+            cluster.setCertificateAuthorityData(PemCodec.encodeCertificateAuthorityData(caCertificate));
         }
         cluster.setInsecureSkipTlsVerify(!wasProvided(caCertificate));
 
@@ -209,11 +351,11 @@ public class KubeConfigWriter {
      *
      * @return contextName if provided, else the default value.
      */
-    private String getContextNameOrDefault() {
-        if (!wasProvided(contextName)) {
+    private String getContextNameOrDefault() throws IOException, InterruptedException {
+        if (!wasProvided(getContextName())) {
             return DEFAULT_CONTEXTNAME;
         }
-        return contextName;
+        return getContextName();
     }
 
     /**
@@ -221,11 +363,37 @@ public class KubeConfigWriter {
      *
      * @return clusterName if provided, else the default value.
      */
-    private String getClusterNameOrDefault() {
-        if (!wasProvided(clusterName)) {
+    private String getClusterNameOrDefault() throws IOException, InterruptedException {
+        if (!wasProvided(getClusterName())) {
             return CLUSTERNAME;
         }
-        return clusterName;
+        return getClusterName();
+    }
+
+    /**
+     * Identify the cluster accessed, for metrics: its server URL when set, or the credentials the kubeconfig is
+     * imported from.
+     *
+     * @return the cluster key
+     */
+    String getClusterKey() {
+        String key = serverUrl;
+        try {
+            key = getServerUrl();
+        } catch (IOException e) {
+            // keep the raw value
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return wasProvided(key) ? key : "credentials:" + credentialsId;
+    }
+
+    /**
+     * @return name of the node of a workspace, empty for the controller, or null if it is gone
+     */
+    static String getNodeName(FilePath workspace) {
+        Computer computer = workspace.toComputer();
+        return computer == null ? null : computer.getName();
     }
 
     /**
@@ -234,31 +402,61 @@ public class KubeConfigWriter {
      * @return serverUrl
      */
     private String getServerUrl() throws IOException, InterruptedException {
-        final EnvVars env = build.getEnvironment(launcher.getListener());
-        return env.expand(serverUrl);
+        return environment.expand(serverUrl);
     }
 
-    private FilePath getTempKubeconfigFilePath() throws IOException, InterruptedException {
-        String tempFolder = workspace.getChannel().call(new ObtainTemporaryFolderCallable());
-        FilePath tempPath = new FilePath(workspace.getChannel(), tempFolder);
-        if (!tempPath.exists()) {
-            launcher.getListener().getLogger().println("creating missing temporary folder to write kube config files");
-            tempPath.mkdirs();
-        }
+    /**
+     * Returns clusterName with environment variables interpolated
+     *
+     * @return clusterName
+     */
+    private String getClusterName() throws IOException, InterruptedException {
+        return environment.expand(clusterName);
+    }
 
-        return tempPath.createTempFile("kubernetes-cli-plugin-kube", "config");
+    /**
+     * Returns contextName with environment variables interpolated
+     *
+     * @return contextName
+     */
+    private String getContextName() throws IOException, InterruptedException {
+        return environment.expand(contextName);
     }
 
     /**
-     * Used for obtaining the temporary folder for a node.
+     * Returns namespace with environment variables interpolated
+     *
+     * @return namespace
      */
-    private static class ObtainTemporaryFolderCallable extends MasterToSlaveCallable<String, IOException> {
-        private static final String TMPDIR__PROPERTY = "java.io.tmpdir";
+    private String getNamespace() throws IOException, InterruptedException {
+        return environment.expand(namespace);
+    }
 
-        @Override
-        public String call() {
-            return System.getProperty(TMPDIR__PROPERTY);
+    /**
+     * Return the folder of a node kubeconfig files are written to, if it was already probed for the same storage.
+     */
+    static String getCachedTemporaryFolder(VirtualChannel channel, List<String> memoryBackedFolders) {
+        TemporaryFolder tempFolder = TEMPORARY_FOLDERS.get(channel);
+        if (tempFolder == null || !tempFolder.memoryBackedFolders.equals(memoryBackedFolders)) {
+            return null;
         }
+        return tempFolder.path;
+    }
+
+    /**
+     * Remember the folder of a node kubeconfig files are written to, once it is known to exist.
+     */
+    static void cacheTemporaryFolder(VirtualChannel channel, List<String> memoryBackedFolders, String tempFolder) {
+        TEMPORARY_FOLDERS.put(channel, new TemporaryFolder(memoryBackedFolders, tempFolder));
     }
 
+    private static final class TemporaryFolder {
+        private final List<String> memoryBackedFolders;
+        private final String path;
+
+        TemporaryFolder(List<String> memoryBackedFolders, String path) {
+            this.memoryBackedFolders = memoryBackedFolders;
+            this.path = path;
+        }
+    }
 }
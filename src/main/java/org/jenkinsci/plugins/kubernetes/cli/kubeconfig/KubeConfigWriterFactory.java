@@ -19,9 +19,11 @@ public abstract class KubeConfigWriterFactory {
 
     public static KubeConfigWriter get(@Nonnull String serverUrl, @Nonnull String credentialsId,
                                        String caCertificate, String clusterName, String contextName, String namespace, boolean skipUseContext, StepContext context) throws IOException, InterruptedException {
-        Run<?, ?> run = context.get(Run.class);
-        FilePath workspace = context.get(FilePath.class);
-        Launcher launcher = context.get(Launcher.class);
-        return new KubeConfigWriter(serverUrl, credentialsId, caCertificate, clusterName, contextName, namespace, skipUseContext, workspace, launcher, run);
+        return get(serverUrl, credentialsId, caCertificate, clusterName, contextName, namespace, skipUseContext, KubeConfigEnvironment.of(context));
+    }
+
+    public static KubeConfigWriter get(@Nonnull String serverUrl, @Nonnull String credentialsId,
+                                       String caCertificate, String clusterName, String contextName, String namespace, boolean skipUseContext, KubeConfigEnvironment environment) {
+        return new KubeConfigWriter(serverUrl, credentialsId, caCertificate, clusterName, contextName, namespace, skipUseContext, environment);
     }
 }
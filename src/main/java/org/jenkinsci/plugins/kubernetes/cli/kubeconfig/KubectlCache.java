@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Manages the discovery and HTTP cache of kubectl on each node, exported to the blocks as {@link #ENV_VARIABLE_NAME}.
+ * <p>
+ * The cache lives in the root folder of the node, so it survives across builds, and is shared by all the builds
+ * running there. kubectl keeps the discovery of each cluster in its own sub-folder and replaces cache files
+ * atomically, so concurrent builds can use it safely. The cache is evicted by age and by size, on the node, at most
+ * once per {@link #EVICTION_INTERVAL} and per node connection, in the background.
+ * <p>
+ * Blocks running kubectl through local proxies get a folder of their own, keyed by the API servers behind the proxies:
+ * kubectl keys discovery by server URL, and the ephemeral port of a proxy can be reused by a proxy to another cluster.
+ *
+ * @author Max Laverse
+ */
+public final class KubectlCache {
+    public static final String ENV_VARIABLE_NAME = "KUBECACHEDIR";
+
+    /**
+     * Whether blocks get a managed kubectl cache, unless they already have a {@link #ENV_VARIABLE_NAME}.
+     */
+    public static final boolean DEFAULT_ENABLED = SystemProperties.getBoolean(KubectlCache.class.getName() + ".enabled", true);
+
+    /**
+     * Maximum size in bytes of the cache of a node.
+     */
+    public static final long DEFAULT_MAX_BYTES = SystemProperties.getLong(KubectlCache.class.getName() + ".maxBytes", 256L * 1024 * 1024);
+
+    /**
+     * Time in seconds after which unused cache entries are evicted.
+     */
+    public static final long DEFAULT_MAX_AGE = SystemProperties.getLong(KubectlCache.class.getName() + ".maxAge", TimeUnit.DAYS.toSeconds(7));
+
+    static final long EVICTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private static final String FOLDER = "caches/kubernetes-cli/kubectl";
+    private static final String PROXIED_FOLDER = "proxied";
+    private static final Logger LOGGER = Logger.getLogger(KubectlCache.class.getName());
+    private static final KubectlCache INSTANCE = new KubectlCache(DEFAULT_ENABLED, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE);
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxAge;
+    private final Map<VirtualChannel, Long> lastEvictions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    KubectlCache(boolean enabled, long maxBytes, long maxAge) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.maxAge = TimeUnit.SECONDS.toMillis(maxAge);
+    }
+
+    /**
+     * @return the cache settings shared by all the steps and build wrappers
+     */
+    public static KubectlCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return the cache folder of the node of a workspace, and evict it in the background if it is due.
+     * The folder itself is created by kubectl.
+     *
+     * @param workspace workspace of the block
+     * @return path to the cache folder, or null if the cache is disabled or the node is unknown
+     */
+    @CheckForNull
+    public String prepare(@CheckForNull FilePath workspace) {
+        return prepare(workspace, Collections.emptyList());
+    }
+
+    /**
+     * Return the cache folder of a block, and evict the cache of its node in the background if it is due.
+     * The folder itself is created by kubectl.
+     *
+     * @param workspace      workspace of the block
+     * @param proxiedServers API servers the kubectl calls of the block reach through local proxies, see {@link KubectlProxy}
+     * @return path to the cache folder, or null if the cache is disabled or the node is unknown
+     */
+    @CheckForNull
+    public String prepare(@CheckForNull FilePath workspace, @Nonnull Collection<String> proxiedServers) {
+        if (!enabled || workspace == null) {
+            return null;
+        }
+        Computer computer = workspace.toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        FilePath root = node == null ? null : node.getRootPath();
+        if (root == null) {
+            return null;
+        }
+        FilePath folder = root.child(FOLDER);
+        scheduleEviction(folder);
+        if (!proxiedServers.isEmpty()) {
+            // evicted as a whole, like the discovery of a cluster
+            return folder.child(PROXIED_FOLDER).child(proxiedKey(proxiedServers)).getRemote();
+        }
+        return folder.getRemote();
+    }
+
+    static String proxiedKey(Collection<String> servers) {
+        MessageDigest digest = CredentialsDigest.newDigest();
+        for (String server : new TreeSet<>(servers)) {
+            CredentialsDigest.add(digest, server);
+        }
+        // short enough for the paths kubectl builds below it
+        return CredentialsDigest.toHex(digest.digest()).substring(0, 32);
+    }
+
+    private void scheduleEviction(FilePath folder) {
+        VirtualChannel channel = folder.getChannel();
+        long now = System.currentTimeMillis();
+        synchronized (lastEvictions) {
+            Long last = lastEvictions.get(channel);
+            if (last != null && now - last < EVICTION_INTERVAL) {
+                return;
+            }
+            lastEvictions.put(channel, now);
+        }
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                EvictKubectlCacheCallable.Result result = folder.act(new EvictKubectlCacheCallable(maxBytes, maxAge));
+                LOGGER.log(Level.FINE, "Evicted {0} entries ({1} bytes) of the kubectl cache {2}, {3} bytes left",
+                        new Object[]{result.evictedEntries, result.evictedBytes, folder, result.retainedBytes});
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Unable to evict the kubectl cache " + folder, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the kubectl calls of a block through local proxies on its node, see {@link LocalProxy}, so that they share
+ * pooled and authenticated connections to the API servers instead of each opening their own.
+ * <p>
+ * The proxies are started once the kubeconfig files are written, and stopped when the block completes. Their
+ * latencies and connections are then recorded in the {@link KubeConfigMetrics}.
+ *
+ * @author Max Laverse
+ */
+public abstract class KubectlProxy {
+    private static final Logger LOGGER = Logger.getLogger(KubectlProxy.class.getName());
+
+    /**
+     * Start a proxy per cluster of kubeconfig files, and point the files to them.
+     *
+     * @param workspace workspace of the block
+     * @param paths     kubeconfig files of the block
+     * @param listener  listener of the block
+     * @return ids of the proxies, to be stopped with {@link #stop}, with the URL of the API server of each
+     * @throws IOException          if the proxies could not be started
+     * @throws InterruptedException on remoting interruptions
+     */
+    @Nonnull
+    public static Map<String, String> start(@Nonnull FilePath workspace, @Nonnull List<String> paths, @Nonnull TaskListener listener)
+            throws IOException, InterruptedException {
+        VirtualChannel channel = workspace.getChannel();
+        if (channel == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> ids = channel.call(new StartLocalProxiesCallable(paths));
+        listener.getLogger().println("kubectl calls go through " + ids.size() + " local proxies");
+        return ids;
+    }
+
+    /**
+     * Stop the proxies of a block.
+     *
+     * @param workspace workspace of the block
+     * @param ids       ids of the proxies
+     * @param listener  listener of the block
+     */
+    public static void stop(@CheckForNull FilePath workspace, @CheckForNull List<String> ids, @Nonnull TaskListener listener) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        VirtualChannel channel = workspace == null ? null : workspace.getChannel();
+        if (channel == null) {
+            LOGGER.log(Level.WARNING, "Unable to stop the local proxies {0}, their node is offline", ids);
+            return;
+        }
+        try {
+            long requests = 0;
+            long connections = 0;
+            for (LocalProxy.Stats stats : channel.call(new StopLocalProxiesCallable(ids))) {
+                KubeConfigMetrics.get().recordProxy(stats.latencies, stats.connections, stats.http2Connections, stats.errors);
+                requests += stats.requests;
+                connections += stats.connections;
+            }
+            listener.getLogger().println("local proxies served " + requests + " requests over " + connections + " connections");
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            LOGGER.log(Level.WARNING, "Unable to stop the local proxies " + ids, e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal client to the API server of the current context of a kubeconfig, for the steps talking to clusters
+ * in-process instead of through kubectl. Runs on the node the kubeconfig was rendered for.
+ * <p>
+ * Resources are resolved from their kind through the discovery documents of their group version, fetched once per
+ * client. Requests authenticate with the credentials of the kubeconfig, over the connections of a single pooled
+ * HTTP client.
+ *
+ * @author Max Laverse
+ */
+final class KubernetesApiClient implements Closeable {
+    static final MediaType APPLY_PATCH = MediaType.parse("application/apply-patch+yaml");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String server;
+    private final String namespace;
+    private final OkHttpClient client;
+    private final Map<String, Map<String, Resource>> resources = new ConcurrentHashMap<>();
+
+    private KubernetesApiClient(String server, String namespace, OkHttpClient client) {
+        this.server = server.replaceAll("/+$", "");
+        this.namespace = namespace;
+        this.client = client;
+    }
+
+    /**
+     * @param kubeConfig content of a kubeconfig
+     * @return a client to the cluster of its current context
+     * @throws IOException if the kubeconfig cannot be parsed or has no server
+     */
+    static KubernetesApiClient of(@Nonnull byte[] kubeConfig) throws IOException {
+        Config config = Config.fromKubeconfig(null, new String(kubeConfig, StandardCharsets.UTF_8), null);
+        if (config.getMasterUrl() == null) {
+            throw new IOException("The current context of the kubeconfig has no server");
+        }
+        String namespace = config.getNamespace() == null || config.getNamespace().isEmpty() ? "default" : config.getNamespace();
+        return new KubernetesApiClient(config.getMasterUrl(), namespace, HttpClientUtils.createHttpClient(config));
+    }
+
+    /**
+     * @return namespace of the current context, {@code default} if it has none
+     */
+    String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Resolve the resource of a kind.
+     *
+     * @param apiVersion group version of the kind, e.g. {@code apps/v1}
+     * @param kind       kind, e.g. {@code Deployment}
+     * @return the resource, or null if the API server does not serve it
+     * @throws IOException if the discovery document of the group version cannot be fetched
+     */
+    @CheckForNull
+    Resource resource(@Nonnull String apiVersion, @Nonnull String kind) throws IOException {
+        Map<String, Resource> kinds = resources.get(apiVersion);
+        if (kinds == null || !kinds.containsKey(kind)) {
+            // kinds of custom resources show up once their definition is established
+            kinds = discover(apiVersion);
+            resources.put(apiVersion, kinds);
+        }
+        return kinds.get(kind);
+    }
+
+    private Map<String, Resource> discover(String apiVersion) throws IOException {
+        Map<String, Resource> kinds = new HashMap<>();
+        Request request = new Request.Builder().url(server + Resource.prefix(apiVersion)).header("Accept", "application/json").build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 404) {
+                return kinds;
+            }
+            JsonNode list = readJson(response);
+            for (JsonNode resource : list.path("resources")) {
+                String name = resource.path("name").asText();
+                // sub-resources, e.g. deployments/status
+                if (!name.contains("/")) {
+                    kinds.put(resource.path("kind").asText(), new Resource(apiVersion, name, resource.path("namespaced").asBoolean()));
+                }
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * Apply an object server-side.
+     *
+     * @param path         path of the object, see {@link Resource#path}
+     * @param object       the object
+     * @param fieldManager name of the manager of the applied fields
+     * @param force        true to take over the fields owned by other managers
+     * @return the HTTP status, 201 if the object was created
+     * @throws IOException if the API server rejects the object
+     */
+    int apply(@Nonnull String path, @Nonnull JsonNode object, @Nonnull String fieldManager, boolean force) throws IOException {
+        String url = server + path + "?fieldManager=" + encode(fieldManager) + (force ? "&force=true" : "");
+        // JSON is YAML, the API server accepts both
+        Request request = new Request.Builder().url(url).header("Accept", "application/json")
+                .patch(RequestBody.create(APPLY_PATCH, MAPPER.writeValueAsBytes(object))).build();
+        try (Response response = client.newCall(request).execute()) {
+            readJson(response);
+            return response.code();
+        }
+    }
+
+    /**
+     * @param pathAndQuery path of the request, with its query string
+     * @return the response document
+     * @throws IOException if the request fails
+     */
+    @Nonnull
+    JsonNode get(@Nonnull String pathAndQuery) throws IOException {
+        Request request = new Request.Builder().url(server + pathAndQuery).header("Accept", "application/json").build();
+        try (Response response = client.newCall(request).execute()) {
+            return readJson(response);
+        }
+    }
+
+    /**
+     * Start a request whose response is read as a stream.
+     *
+     * @param pathAndQuery path of the request, with its query string
+     * @param accept       accepted media types
+     * @return the successful response, to be closed by the caller
+     * @throws IOException if the request fails
+     */
+    @Nonnull
+    Response open(@Nonnull String pathAndQuery, @Nonnull String accept) throws IOException {
+        Request request = new Request.Builder().url(server + pathAndQuery).header("Accept", accept).build();
+        Response response = client.newCall(request).execute();
+        if (!response.isSuccessful()) {
+            try (Response r = response) {
+                readJson(r);
+            }
+        }
+        return response;
+    }
+
+    private static JsonNode readJson(Response response) throws IOException {
+        ResponseBody body = response.body();
+        byte[] content = body == null ? new byte[0] : body.bytes();
+        if (!response.isSuccessful()) {
+            throw new IOException(message(response.code(), content));
+        }
+        return content.length == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(content);
+    }
+
+    /**
+     * @return the message of the {@code Status} returned by the API server, or the raw response
+     */
+    private static String message(int code, byte[] content) {
+        try {
+            JsonNode status = MAPPER.readTree(content);
+            if (status != null && status.hasNonNull("message")) {
+                return status.get("message").asText() + " (HTTP " + code + ")";
+            }
+        } catch (IOException e) {
+            // not a Status
+        }
+        return "HTTP " + code + (content.length == 0 ? "" : ": " + new String(content, StandardCharsets.UTF_8));
+    }
+
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * A resource served by the API server.
+     */
+    static final class Resource {
+        private final String apiVersion;
+        private final String name;
+        private final boolean namespaced;
+
+        Resource(String apiVersion, String name, boolean namespaced) {
+            this.apiVersion = apiVersion;
+            this.name = name;
+            this.namespaced = namespaced;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isNamespaced() {
+            return namespaced;
+        }
+
+        /**
+         * @param namespace namespace of the objects, ignored for cluster-wide resources, null for all namespaces
+         * @param object    name of an object, or null for the collection
+         * @return path of the object or collection
+         */
+        String path(@CheckForNull String namespace, @CheckForNull String object) {
+            StringBuilder path = new StringBuilder(prefix(apiVersion));
+            if (namespaced && namespace != null) {
+                path.append("/namespaces/").append(encode(namespace));
+            }
+            path.append('/').append(name);
+            if (object != null) {
+                path.append('/').append(encode(object));
+            }
+            return path.toString();
+        }
+
+        static String prefix(String apiVersion) {
+            return (apiVersion.contains("/") ? "/apis/" : "/api/") + apiVersion;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the objects of a resource page by page, see {@link ResourceLister}. Runs on the node of the workspace.
+ * <p>
+ * Each page is parsed as a stream, one object at a time, and every object is either written to a file as soon as it
+ * is read, or reduced to the selected fields. Memory use is therefore bounded by the largest object, and not by the
+ * number of objects in the cluster.
+ *
+ * @author Max Laverse
+ */
+class ListResourcesCallable extends MasterToSlaveFileCallable<ListResourcesCallable.Result> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Server-side projection of objects to their metadata.
+     */
+    static final String METADATA_ONLY = "application/json;as=PartialObjectMetadataList;v=v1;g=meta.k8s.io,application/json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final byte[] kubeConfig;
+    private final String apiVersion;
+    private final String kind;
+    private final boolean allNamespaces;
+    private final String labelSelector;
+    private final String fieldSelector;
+    private final int limit;
+    private final boolean metadataOnly;
+    private final String file;
+    private final List<String> fields;
+    private final TaskListener listener;
+
+    /**
+     * @param kubeConfig    kubeconfig to authenticate with, its current context is used
+     * @param apiVersion    group version of the resource, e.g. {@code apps/v1}
+     * @param kind          kind of the objects, e.g. {@code Deployment}
+     * @param allNamespaces true to list the objects of all namespaces instead of the one of the current context
+     * @param labelSelector label selector, or null
+     * @param fieldSelector field selector, or null
+     * @param limit         maximum number of objects per page
+     * @param metadataOnly  true to only fetch the metadata of the objects
+     * @param file          file to write the objects to as a {@code List}, relative to the workspace, or null
+     * @param fields        fields to select from each object, or null
+     * @param listener      listener of the step
+     */
+    ListResourcesCallable(byte[] kubeConfig, String apiVersion, String kind, boolean allNamespaces,
+                          @CheckForNull String labelSelector, @CheckForNull String fieldSelector, int limit,
+                          boolean metadataOnly, @CheckForNull String file, @CheckForNull List<String> fields,
+                          TaskListener listener) {
+        this.kubeConfig = kubeConfig;
+        this.apiVersion = apiVersion;
+        this.kind = kind;
+        this.allNamespaces = allNamespaces;
+        this.labelSelector = labelSelector;
+        this.fieldSelector = fieldSelector;
+        this.limit = limit;
+        this.metadataOnly = metadataOnly;
+        this.file = file;
+        this.fields = fields;
+        this.listener = listener;
+    }
+
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException {
+        Result result = new Result();
+        List<JsonPointer> pointers = new ArrayList<>();
+        if (fields != null) {
+            result.selected = new ArrayList<>();
+            for (String field : fields) {
+                pointers.add(pointer(field));
+            }
+        }
+
+        try (KubernetesApiClient client = KubernetesApiClient.of(kubeConfig)) {
+            KubernetesApiClient.Resource resource = client.resource(apiVersion, kind);
+            if (resource == null) {
+                throw new AbortException("The API server does not serve " + kind + " in " + apiVersion);
+            }
+            String path = resource.path(allNamespaces ? null : client.getNamespace(), null);
+
+            File output = file == null ? null : new File(workspace, file);
+            JsonGenerator generator = null;
+            OutputStream out = null;
+            boolean complete = false;
+            try {
+                if (output != null) {
+                    Files.createDirectories(output.getAbsoluteFile().getParentFile().toPath());
+                    out = Files.newOutputStream(output.toPath());
+                    generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+                    generator.writeStartObject();
+                    generator.writeStringField("apiVersion", "v1");
+                    generator.writeStringField("kind", "List");
+                    generator.writeArrayFieldStart("items");
+                }
+
+                String continueToken = "";
+                do {
+                    continueToken = readPage(client, path + query(continueToken), generator, pointers, result);
+                    result.pages++;
+                } while (!continueToken.isEmpty());
+
+                if (generator != null) {
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                complete = true;
+            } finally {
+                if (generator != null) {
+                    generator.close();
+                }
+                if (out != null) {
+                    out.close();
+                }
+                if (output != null && !complete) {
+                    // a partial list is not valid JSON
+                    Files.deleteIfExists(output.toPath());
+                }
+            }
+        }
+        listener.getLogger().println("Listed " + result.items + " " + kind + " objects in " + result.pages + " pages");
+        return result;
+    }
+
+    /**
+     * Read a page, handing its objects over one by one.
+     *
+     * @return the continue token of the next page, empty on the last page
+     */
+    private String readPage(KubernetesApiClient client, String pathAndQuery, @CheckForNull JsonGenerator generator,
+                            List<JsonPointer> pointers, Result result) throws IOException {
+        String continueToken = "";
+        try (Response response = client.open(pathAndQuery, metadataOnly ? METADATA_ONLY : "application/json")) {
+            ResponseBody body = response.body();
+            if (body == null) {
+                return continueToken;
+            }
+            try (JsonParser parser = MAPPER.getFactory().createParser(body.byteStream())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Unexpected response to " + pathAndQuery);
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("metadata".equals(name) && value == JsonToken.START_OBJECT) {
+                        continueToken = parser.<JsonNode>readValueAsTree().path("continue").asText("");
+                    } else if ("items".equals(name) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            ObjectNode item = parser.readValueAsTree();
+                            accept(item, generator, pointers, result);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return continueToken;
+    }
+
+    private void accept(ObjectNode item, @CheckForNull JsonGenerator generator, List<JsonPointer> pointers, Result result)
+            throws IOException {
+        result.items++;
+        if (generator != null) {
+            // like kubectl, put back the type the API server omits in lists
+            if (!item.has("kind") && !metadataOnly) {
+                item.put("kind", kind);
+                item.put("apiVersion", apiVersion);
+            }
+            MAPPER.writeTree(generator, item);
+        }
+        if (result.selected != null) {
+            LinkedHashMap<String, Object> selected = new LinkedHashMap<>();
+            for (int i = 0; i < pointers.size(); i++) {
+                JsonNode value = item.at(pointers.get(i));
+                selected.put(fields.get(i), value.isMissingNode() || value.isNull() ? null : MAPPER.treeToValue(value, Object.class));
+            }
+            result.selected.add(selected);
+        }
+    }
+
+    private String query(String continueToken) {
+        StringBuilder query = new StringBuilder("?limit=").append(limit);
+        if (labelSelector != null && !labelSelector.isEmpty()) {
+            query.append("&labelSelector=").append(KubernetesApiClient.encode(labelSelector));
+        }
+        if (fieldSelector != null && !fieldSelector.isEmpty()) {
+            query.append("&fieldSelector=").append(KubernetesApiClient.encode(fieldSelector));
+        }
+        if (!continueToken.isEmpty()) {
+            query.append("&continue=").append(KubernetesApiClient.encode(continueToken));
+        }
+        return query.toString();
+    }
+
+    /**
+     * @param field dotted path like {@code status.phase}, or a JSON pointer like {@code /metadata/labels/app}
+     */
+    static JsonPointer pointer(String field) throws AbortException {
+        try {
+            return JsonPointer.compile(field.startsWith("/") ? field : "/" + field.replace('.', '/'));
+        } catch (IllegalArgumentException e) {
+            throw new AbortException("Invalid field '" + field + "': " + e.getMessage());
+        }
+    }
+
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        int items;
+        int pages;
+        ArrayList<Map<String, Object>> selected;
+    }
+}
@@ -0,0 +1,320 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import javax.annotation.CheckForNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback HTTP proxy to the API server of a cluster, running on a node, see {@link KubectlProxy}.
+ * <p>
+ * kubectl authenticates to the proxy with a random token, which the proxy swaps for the credentials of the matching
+ * user before forwarding the request upstream. Upstream connections are pooled, kept alive and negotiate HTTP/2
+ * when the API server supports it, so the kubectl processes of a block share them instead of opening their own.
+ * Responses are streamed without any read timeout, so watches work through the proxy however long they stay idle,
+ * as with the watches of the fabric8 client. Upgraded connections, used by {@code exec},
+ * {@code attach} and {@code port-forward}, are not supported. Proxies listen on an ephemeral port, so the URL kubectl
+ * caches discovery under changes from block to block, see {@link KubectlCache#prepare(hudson.FilePath, java.util.Collection)}.
+ *
+ * @author Max Laverse
+ */
+final class LocalProxy {
+    /**
+     * Number of the most recent request latencies kept per proxy.
+     */
+    static final int MAX_LATENCIES = KubeConfigMetrics.RESERVOIR_SIZE;
+
+    private static final Map<String, LocalProxy> PROXIES = new ConcurrentHashMap<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final String BEARER = "Bearer ";
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList(
+            "authorization", "connection", "content-length", "host", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade"));
+    private static final Set<String> METHODS_REQUIRING_BODY = new HashSet<>(Arrays.asList("POST", "PUT", "PATCH"));
+
+    private final String id = UUID.randomUUID().toString();
+    private final String upstream;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong http2Connections = new AtomicLong();
+    private final long[] latencies = new long[MAX_LATENCIES];
+    private long latencyCount;
+
+    private LocalProxy(String upstream) throws IOException {
+        this.upstream = upstream.replaceAll("/+$", "");
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "kubernetes-cli local proxy " + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Start a proxy to an API server.
+     *
+     * @param upstream URL of the API server
+     * @return the running proxy
+     * @throws IOException if the proxy cannot listen
+     */
+    static LocalProxy start(String upstream) throws IOException {
+        LocalProxy proxy = new LocalProxy(upstream);
+        PROXIES.put(proxy.id, proxy);
+        return proxy;
+    }
+
+    /**
+     * Stop a proxy and close its upstream connections.
+     *
+     * @param id id of the proxy
+     * @return the statistics of the proxy, or null if it is not running
+     */
+    @CheckForNull
+    static Stats stop(String id) {
+        LocalProxy proxy = PROXIES.remove(id);
+        if (proxy == null) {
+            return null;
+        }
+        proxy.server.stop(0);
+        proxy.executor.shutdownNow();
+        for (OkHttpClient client : proxy.clients.values()) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+        return proxy.getStats();
+    }
+
+    /**
+     * @return number of proxies running in this JVM
+     */
+    static int count() {
+        return PROXIES.size();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * @return URL of the API server the proxy forwards to
+     */
+    String getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * @return URL kubectl should use instead of the API server
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return a random token to authenticate kubectl to proxies
+     */
+    static String newToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Register the credentials of a user.
+     *
+     * @param token  token kubectl uses to be authenticated as that user by the proxy, see {@link #newToken()}
+     * @param client client authenticating as the user to the API server, its read timeout is dropped
+     */
+    void addUser(String token, OkHttpClient client) {
+        // watches, logs -f and rollout status keep idle responses open for longer than any request timeout
+        clients.put(token, client.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .eventListener(new ConnectionCounter())
+                .build());
+    }
+
+    synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.requests = requests.get();
+        stats.errors = errors.get();
+        stats.connections = connections.get();
+        stats.http2Connections = http2Connections.get();
+        stats.latencies = Arrays.copyOf(latencies, (int) Math.min(latencyCount, latencies.length));
+        return stats;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount % latencies.length)] = nanos;
+        latencyCount++;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        try {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            OkHttpClient client = authorization != null && authorization.startsWith(BEARER)
+                    ? clients.get(authorization.substring(BEARER.length())) : null;
+            if (client == null) {
+                errors.incrementAndGet();
+                respond(exchange, 401, "Unauthorized");
+                return;
+            }
+            if (exchange.getRequestHeaders().containsKey("Upgrade")) {
+                errors.incrementAndGet();
+                respond(exchange, 501, "Upgraded connections are not supported by the local proxy");
+                return;
+            }
+
+            Response response;
+            try {
+                response = client.newCall(toUpstream(exchange)).execute();
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                respond(exchange, 502, "Unable to reach " + upstream + ": " + e.getMessage());
+                return;
+            }
+            try (Response r = response) {
+                recordLatency(System.nanoTime() - start);
+                forward(r, exchange);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Request toUpstream(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        Request.Builder builder = new Request.Builder().url(upstream + exchange.getRequestURI().toString());
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            if (HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.addHeader(header.getKey(), value);
+            }
+        }
+
+        RequestBody body = null;
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            byte[] content = readAll(exchange.getRequestBody());
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (content.length > 0 || METHODS_REQUIRING_BODY.contains(method)) {
+                body = RequestBody.create(contentType == null ? null : MediaType.parse(contentType), content);
+            }
+        }
+        return builder.method(method, body).build();
+    }
+
+    private static void forward(Response response, HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        for (String name : response.headers().names()) {
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, response.headers(name));
+            }
+        }
+        ResponseBody body = response.body();
+        long length = body == null ? 0 : body.contentLength();
+        boolean noBody = "HEAD".equals(exchange.getRequestMethod()) || response.code() == 204 || response.code() == 304 || length == 0;
+        // 0 asks for a chunked response, -1 for no body at all
+        exchange.sendResponseHeaders(response.code(), noBody ? -1 : Math.max(length, 0));
+        if (noBody) {
+            return;
+        }
+        try (InputStream in = body.byteStream(); OutputStream out = exchange.getResponseBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                // watches send events one by one
+                out.flush();
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] content = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().put("Content-Type", Collections.singletonList("text/plain; charset=utf-8"));
+        exchange.sendResponseHeaders(code, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Counts the upstream connections opened, which are otherwise reused across requests.
+     */
+    private final class ConnectionCounter extends EventListener {
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, @CheckForNull Protocol protocol) {
+            connections.incrementAndGet();
+            if (protocol == Protocol.HTTP_2) {
+                http2Connections.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Statistics of a proxy, sent back to the controller once it is stopped.
+     */
+    static final class Stats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        long requests;
+        long errors;
+        long connections;
+        long http2Connections;
+        long[] latencies = new long[0];
+    }
+}
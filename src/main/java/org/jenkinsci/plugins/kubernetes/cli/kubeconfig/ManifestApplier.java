@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Applies manifests with the credentials of a kubeconfig, in-process instead of through kubectl, see
+ * {@link ApplyManifestsCallable}.
+ * <p>
+ * Objects are applied server-side, so the API server merges them with what other managers own, and reports
+ * conflicts instead of silently overwriting them.
+ *
+ * @author Max Laverse
+ */
+public abstract class ManifestApplier {
+    /**
+     * Default name of the manager of the applied fields.
+     */
+    public static final String DEFAULT_FIELD_MANAGER = "jenkins";
+
+    /**
+     * Default maximum number of objects applied concurrently.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * Default number of seconds to wait for custom resource definitions to be established.
+     */
+    public static final int DEFAULT_ESTABLISHED_TIMEOUT = 60;
+
+    /**
+     * Apply the manifests of a workspace.
+     *
+     * @param workspace          workspace holding the manifests
+     * @param kubeConfig         kubeconfig to authenticate with, its current context is used
+     * @param manifests          manifest file or folder, or Ant pattern of manifest files, relative to the workspace
+     * @param fieldManager       name of the manager of the applied fields
+     * @param force              true to take over the fields owned by other managers
+     * @param parallelism        maximum number of objects applied concurrently
+     * @param establishedTimeout seconds to wait for custom resource definitions to be established
+     * @param listener           listener reporting the progress of each object
+     * @return number of objects applied
+     * @throws AbortException       if no object was found or some could not be applied
+     * @throws IOException          on file operations or if the cluster cannot be reached
+     * @throws InterruptedException on remoting interruptions
+     */
+    public static int apply(@Nonnull FilePath workspace, @Nonnull byte[] kubeConfig, @Nonnull String manifests,
+                            @Nonnull String fieldManager, boolean force, int parallelism, int establishedTimeout,
+                            @Nonnull TaskListener listener) throws IOException, InterruptedException {
+        ApplyManifestsCallable.Result result = workspace.act(new ApplyManifestsCallable(kubeConfig, manifests,
+                fieldManager, force, parallelism, establishedTimeout, listener));
+        if (result.failed > 0) {
+            throw new AbortException("Unable to apply " + result.failed + " of " + (result.applied + result.failed) + " objects");
+        }
+        listener.getLogger().println(result.applied + " objects applied");
+        return result.applied;
+    }
+}
@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds a memory-backed folder on a node, to keep kubeconfig files off its disks.
+ * Runs on the node itself.
+ *
+ * @author Max Laverse
+ */
+final class MemoryBackedFolders {
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{(\\w+)}|\\$(\\w+)");
+    private static final String SUBFOLDER_PREFIX = "kubernetes-cli-plugin-";
+
+    private MemoryBackedFolders() {
+    }
+
+    /**
+     * Return the first usable candidate folder, or null if none of them is memory-backed and writable.
+     * Files are placed in a sub-folder only accessible by the user running the node.
+     *
+     * @param candidates folders to try, which can reference environment variables of the node
+     * @return path of the folder to write kubeconfig files to
+     */
+    @CheckForNull
+    static String find(List<String> candidates) {
+        for (String candidate : candidates) {
+            String path = expand(candidate, System.getenv());
+            if (path == null || path.isEmpty()) {
+                continue;
+            }
+            File folder = new File(path);
+            if (!folder.isDirectory() || !folder.canWrite() || !isMemoryBacked(folder.toPath())) {
+                continue;
+            }
+            try {
+                return createPrivateFolder(folder).getAbsolutePath();
+            } catch (IOException | UnsupportedOperationException e) {
+                // try the next candidate
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value with environment variables replaced, or null if one of them is not set
+     */
+    @CheckForNull
+    static String expand(String value, Map<String, String> env) {
+        Matcher matcher = VARIABLE.matcher(value.trim());
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String replacement = env.get(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+            if (replacement == null) {
+                return null;
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static boolean isMemoryBacked(Path path) {
+        try {
+            String type = Files.getFileStore(path).type();
+            return "tmpfs".equals(type) || "ramfs".equals(type);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static File createPrivateFolder(File parent) throws IOException {
+        File folder = new File(parent, SUBFOLDER_PREFIX + System.getProperty("user.name"));
+        if (!folder.isDirectory()) {
+            Files.createDirectories(folder.toPath());
+        }
+        Files.setPosixFilePermissions(folder.toPath(), PosixFilePermissions.fromString("rwx------"));
+        return folder;
+    }
+}
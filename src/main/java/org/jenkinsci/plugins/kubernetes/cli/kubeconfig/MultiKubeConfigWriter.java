@@ -0,0 +1,271 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import io.fabric8.kubernetes.api.model.Config;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Materializes the kubeconfig files of several credentials at once.
+ * <p>
+ * Each {@link KubeConfigWriter} is run on the remoting thread pool, with at most {@link #DEFAULT_PARALLELISM}
+ * writers in flight. Results are returned in the order of the writers and, if several writers fail, the failure
+ * of the first one in that order is reported. Files are only written once every writer succeeded, all at once.
+ * Unless they are merged, rendered kubeconfigs are shared through the {@link KubeConfigCache}.
+ * The setup and the writes are timed in the {@link KubeConfigMetrics}.
+ *
+ * @author Max Laverse
+ */
+public class MultiKubeConfigWriter {
+    /**
+     * Maximum number of kubeconfig files materialized concurrently by a single step.
+     */
+    public static final int DEFAULT_PARALLELISM = SystemProperties.getInteger(MultiKubeConfigWriter.class.getName() + ".parallelism", 4);
+
+    private final List<KubeConfigWriter> writers;
+    private final FilePath workspace;
+    private final TaskListener listener;
+    private final int parallelism;
+    private final long timestamp = System.currentTimeMillis();
+    private long setupDuration = -1;
+    private long remoteWriteDuration = -1;
+
+    public MultiKubeConfigWriter(@Nonnull List<KubeConfigWriter> writers, FilePath workspace, TaskListener listener) {
+        this(writers, workspace, listener, DEFAULT_PARALLELISM);
+    }
+
+    public MultiKubeConfigWriter(@Nonnull List<KubeConfigWriter> writers, FilePath workspace, TaskListener listener, int parallelism) {
+        this.writers = writers;
+        this.workspace = workspace;
+        this.listener = listener;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Write one configuration file per writer.
+     * The configurations are all built before being written to the node in a single remoting call. Configurations
+     * too large to be sent inline are then streamed to their file.
+     *
+     * @return paths to the kubeconfig files, in the order of the writers
+     * @throws IOException          on file operations, or if any of the writers failed
+     * @throws InterruptedException on file operations
+     */
+    public List<String> writeKubeConfigs() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Outcome<RenderedKubeConfig> outcome = runAll(writer -> writer.renderKubeConfig());
+        if (outcome.hasFailure()) {
+            outcome.rethrowFirstFailure();
+        }
+        List<String> paths = writeFiles(outcome.getResults());
+        recordSetup(start);
+        return paths;
+    }
+
+    /**
+     * Write a single configuration file merging the kubeconfigs of all the writers.
+     * See {@link KubeConfigMerger} for how name collisions are handled.
+     *
+     * @return path to the kubeconfig file
+     * @throws IOException          on file operations, or if any of the writers failed
+     * @throws InterruptedException on file operations
+     */
+    public String writeMergedKubeConfig() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Outcome<Config> outcome = runAll(writer -> writer.buildKubeConfig());
+        if (outcome.hasFailure()) {
+            outcome.rethrowFirstFailure();
+        }
+        Config config = KubeConfigMerger.merge(outcome.getResults(), listener.getLogger());
+        long serializationStart = System.nanoTime();
+        RenderedKubeConfig rendered = RenderedKubeConfig.render(config);
+        KubeConfigMetrics.get().record(KubeConfigMetrics.Phase.SERIALIZATION, serializationStart);
+        String path = writeFiles(Collections.singletonList(rendered)).get(0);
+        recordSetup(start);
+        return path;
+    }
+
+    /**
+     * Record how long it took to set up the kubeconfigs of all the clusters, once they are on the node.
+     */
+    private void recordSetup(long start) {
+        Set<String> clusters = new LinkedHashSet<>();
+        for (KubeConfigWriter writer : writers) {
+            clusters.add(writer.getClusterKey());
+        }
+        setupDuration = System.nanoTime() - start;
+        KubeConfigMetrics.get().recordSetup(clusters, start);
+    }
+
+    /**
+     * Return the timings of the last setup, to be recorded with {@link KubeConfigTimingsAction#record}.
+     *
+     * @param step name of the step or build wrapper running the setup
+     * @return timings of the setup
+     */
+    public KubeConfigInvocation getInvocation(String step) {
+        List<CredentialTimings> credentials = new ArrayList<>(writers.size());
+        for (KubeConfigWriter writer : writers) {
+            credentials.add(writer.getTimings());
+        }
+        return new KubeConfigInvocation(step, KubeConfigWriter.getNodeName(workspace), timestamp,
+                toMillis(setupDuration), toMillis(remoteWriteDuration), credentials);
+    }
+
+    private static int toMillis(long nanos) {
+        return nanos < 0 ? -1 : (int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), Integer.MAX_VALUE);
+    }
+
+    List<String> writeFiles(List<RenderedKubeConfig> configs) throws IOException, InterruptedException {
+        List<byte[]> contents = new ArrayList<>(configs.size());
+        for (RenderedKubeConfig config : configs) {
+            contents.add(config.content);
+        }
+
+        long start = System.nanoTime();
+        VirtualChannel channel = workspace.getChannel();
+        List<String> memoryBackedFolders = KubeConfigStorage.getMemoryBackedFolders(workspace.toComputer());
+        String temporaryFolder = KubeConfigWriter.getCachedTemporaryFolder(channel, memoryBackedFolders);
+        WriteKubeConfigsCallable.Result result = channel.call(
+                new WriteKubeConfigsCallable(workspace.getRemote(), contents, memoryBackedFolders, temporaryFolder));
+        if (result.createdWorkspace) {
+            listener.getLogger().println("creating missing workspace to write kubeconfig");
+        }
+        if (result.createdTemporaryFolder) {
+            listener.getLogger().println("creating missing temporary folder to write kube config files");
+        }
+        if (result.memoryBackedUnavailable) {
+            listener.getLogger().println("no memory-backed folder available for kube config files, falling back to the temporary folder");
+        }
+        KubeConfigWriter.cacheTemporaryFolder(channel, memoryBackedFolders, result.temporaryFolder);
+
+        try {
+            for (int i = 0; i < contents.size(); i++) {
+                if (configs.get(i).isStreamed()) {
+                    KubeConfigSerializer.write(configs.get(i).config, new FilePath(channel, result.paths.get(i)));
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            for (String path : result.paths) {
+                new FilePath(channel, path).delete();
+            }
+            throw e;
+        }
+        remoteWriteDuration = System.nanoTime() - start;
+        KubeConfigMetrics.get().recordRemoteWrite(KubeConfigWriter.getNodeName(workspace), start);
+        return result.paths;
+    }
+
+    /**
+     * Run a task against every writer, in parallel if allowed.
+     * Once a writer has failed, the writers following it are skipped since they cannot change the reported error.
+     */
+    private <T> Outcome<T> runAll(WriterTask<T> task) throws InterruptedException {
+        int size = writers.size();
+        Outcome<T> outcome = new Outcome<>(size);
+
+        if (size <= 1 || parallelism <= 1) {
+            for (int i = 0; i < size && !outcome.hasFailure(); i++) {
+                outcome.run(i, task, writers.get(i));
+            }
+            return outcome;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(parallelism, size); w++) {
+            workers.add(Computer.threadPoolForRemoting.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < size) {
+                    if (i < outcome.firstFailure.get()) {
+                        outcome.run(i, task, writers.get(i));
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> worker : workers) {
+                worker.cancel(true);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            // failures are caught by the workers, this is not supposed to happen
+            throw new IllegalStateException(e.getCause());
+        }
+        return outcome;
+    }
+
+    @FunctionalInterface
+    private interface WriterTask<T> {
+        T run(KubeConfigWriter writer) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Results and failures of a {@link WriterTask} run against all the writers, indexed like the writers.
+     */
+    private static final class Outcome<T> {
+        private final AtomicReferenceArray<T> results;
+        private final AtomicReferenceArray<Throwable> failures;
+        private final AtomicInteger firstFailure;
+
+        Outcome(int size) {
+            this.results = new AtomicReferenceArray<>(size);
+            this.failures = new AtomicReferenceArray<>(size);
+            this.firstFailure = new AtomicInteger(size);
+        }
+
+        void run(int index, WriterTask<T> task, KubeConfigWriter writer) {
+            try {
+                results.set(index, task.run(writer));
+            } catch (Throwable t) {
+                failures.set(index, t);
+                firstFailure.accumulateAndGet(index, Math::min);
+            }
+        }
+
+        boolean hasFailure() {
+            return firstFailure.get() < results.length();
+        }
+
+        List<T> getResults() {
+            List<T> list = new ArrayList<>(results.length());
+            for (int i = 0; i < results.length(); i++) {
+                list.add(results.get(i));
+            }
+            return list;
+        }
+
+        void rethrowFirstFailure() throws IOException, InterruptedException {
+            Throwable t = failures.get(firstFailure.get());
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof InterruptedException) {
+                throw (InterruptedException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import io.fabric8.kubernetes.api.model.Config;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, least-recently-used cache of the kubeconfigs of file credentials, once parsed.
+ * <p>
+ * Entries are keyed by the id of the credentials and a digest of the file, so a modified file never hits a stale
+ * entry. Credentials with the same id in different folders get entries of their own. The cache is bounded by the
+ * total size of the files rather than by their number, since a few large kubeconfigs can outweigh many small ones,
+ * and is cleared whenever a credentials store is saved. Cached kubeconfigs are shared by the builds and must never be
+ * modified, see {@link IndexedKubeConfig#view(Config)}.
+ *
+ * @author Max Laverse
+ */
+public final class ParsedKubeConfigCache {
+    /**
+     * Maximum total size in bytes of the kubeconfig files kept parsed in memory. Set to 0 to disable the cache.
+     */
+    public static final long DEFAULT_MAX_BYTES = SystemProperties.getLong(ParsedKubeConfigCache.class.getName() + ".maxBytes", 16L * 1024 * 1024);
+
+    private static final ParsedKubeConfigCache INSTANCE = new ParsedKubeConfigCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final Map<Key, Config> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ParsedKubeConfigCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cache shared by all the steps and build wrappers
+     */
+    public static ParsedKubeConfigCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Compute the cache key of the kubeconfig of some credentials.
+     *
+     * @param credentials credentials the kubeconfig is read from
+     * @return the key, or null if the credentials are not file credentials
+     * @throws IOException on credentials content access
+     */
+    @CheckForNull
+    static Key key(@Nonnull StandardCredentials credentials) throws IOException {
+        if (!(credentials instanceof FileCredentials)) {
+            return null;
+        }
+        return key(credentials, CredentialsDigest.ofSecret(credentials));
+    }
+
+    /**
+     * Compute the cache key of the kubeconfig of some credentials, from the already computed digest of their content.
+     *
+     * @param secret digest of the content of the credentials, see {@link CredentialsDigest#ofSecret}
+     * @see #key(StandardCredentials)
+     */
+    @CheckForNull
+    static Key key(@Nonnull StandardCredentials credentials, @CheckForNull CredentialsDigest.Secret secret) {
+        if (!(credentials instanceof FileCredentials) || secret == null) {
+            return null;
+        }
+        return new Key(credentials.getId(), secret.digest, secret.size);
+    }
+
+    /**
+     * Look up a parsed kubeconfig.
+     *
+     * @param key cache key, see {@link #key}
+     * @return the parsed kubeconfig, which must not be modified, or null if it is not cached
+     */
+    @CheckForNull
+    Config getIfPresent(@Nonnull Key key) {
+        Config config;
+        synchronized (entries) {
+            config = entries.get(key);
+        }
+        if (config == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return config;
+    }
+
+    /**
+     * Cache a parsed kubeconfig, which must not be modified from now on.
+     *
+     * @param key    cache key, see {@link #key}
+     * @param config parsed kubeconfig
+     * @return false if the kubeconfig is too large to be cached
+     */
+    boolean put(@Nonnull Key key, @Nonnull Config config) {
+        if (maxBytes <= 0 || key.size > maxBytes) {
+            return false;
+        }
+        synchronized (entries) {
+            if (entries.put(key, config) == null) {
+                retainedBytes += key.size;
+            }
+            Iterator<Map.Entry<Key, Config>> it = entries.entrySet().iterator();
+            while (retainedBytes > maxBytes && it.hasNext()) {
+                retainedBytes -= it.next().getKey().size;
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drop all the parsed kubeconfigs.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            retainedBytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return total size in bytes of the kubeconfig files currently cached
+     */
+    public long getRetainedBytes() {
+        synchronized (entries) {
+            return retainedBytes;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Identifies the content of file credentials.
+     */
+    static final class Key {
+        private final String id;
+        private final byte[] digest;
+        private final long size;
+
+        Key(String id, byte[] digest, long size) {
+            this.id = id;
+            this.digest = digest;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return id.equals(other.id) && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + Arrays.hashCode(digest);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * PEM and Base64 encoding of certificates, written straight into the output buffer.
+ * <p>
+ * Certificates can be given as a Base64 body without markers, which is wrapped in {@value #LINE_LENGTH} columns,
+ * as PEM blocks, possibly a bundle of many certificates surrounded by comments, or as the Base64 encoding of PEM
+ * blocks as found in kubeconfig files. PEM input and encoded input are detected without being copied.
+ *
+ * @author Max Laverse
+ */
+public abstract class PemCodec {
+    /**
+     * Length of the lines of the bodies wrapped by {@link #encodeCertificateAuthorityData(String)}.
+     */
+    public static final int LINE_LENGTH = 64;
+
+    public static final String CERTIFICATE = "CERTIFICATE";
+
+    private static final String BEGIN = "-----BEGIN ";
+    private static final String END = "-----END ";
+    private static final String DASHES = "-----";
+
+    /**
+     * Base64 encoding of the first 9 characters of {@link #BEGIN}, which does not depend on what follows.
+     */
+    private static final String ENCODED_BEGIN = "LS0tLS1CRUdJ";
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = i;
+        }
+    }
+
+    /**
+     * Encode a certificate authority for the {@code certificate-authority-data} field of a kubeconfig.
+     *
+     * @param caCertificate a Base64 body, PEM blocks, or the Base64 encoding of PEM blocks
+     * @return the Base64 encoding of the PEM blocks
+     */
+    public static String encodeCertificateAuthorityData(@Nonnull String caCertificate) {
+        if (isEncoded(caCertificate)) {
+            return caCertificate;
+        }
+        if (!isAscii(caCertificate)) {
+            // comments of bundles can hold anything
+            return Base64.getEncoder().encodeToString(wrap(CERTIFICATE, caCertificate, LINE_LENGTH).getBytes(StandardCharsets.UTF_8));
+        }
+
+        Base64Writer writer;
+        if (isWrapped(caCertificate)) {
+            writer = new Base64Writer(caCertificate.length());
+            putAll(writer, caCertificate);
+        } else {
+            writer = new Base64Writer(wrappedLength(CERTIFICATE, caCertificate, LINE_LENGTH));
+            putWrapped(writer, CERTIFICATE, caCertificate, LINE_LENGTH);
+        }
+        return writer.finish();
+    }
+
+    /**
+     * Wrap a Base64 body in PEM markers.
+     *
+     * @param type       type of the block, e.g. {@link #CERTIFICATE}
+     * @param body       Base64 body, returned as is if it already holds PEM blocks
+     * @param lineLength length of the lines of the body, or 0 to keep the body as is
+     * @return the PEM block
+     */
+    public static String wrap(@Nonnull String type, @Nonnull String body, int lineLength) {
+        if (isWrapped(body)) {
+            return body;
+        }
+        StringBuilder sb = new StringBuilder(wrappedLength(type, body, lineLength));
+        putWrapped(sb::append, type, body, lineLength);
+        return sb.toString();
+    }
+
+    /**
+     * Decode all the PEM blocks of a type, ignoring whatever is around them.
+     *
+     * @param pem  PEM blocks
+     * @param type type of the blocks to decode, e.g. {@link #CERTIFICATE}
+     * @return the content of the blocks, in order
+     * @throws IllegalArgumentException if a block is not terminated or not valid Base64
+     */
+    public static List<byte[]> decode(@Nonnull String pem, @Nonnull String type) {
+        String begin = BEGIN + type + DASHES;
+        String end = END + type + DASHES;
+        List<byte[]> blocks = new ArrayList<>();
+        int from = pem.indexOf(begin);
+        while (from >= 0) {
+            int bodyStart = from + begin.length();
+            int bodyEnd = pem.indexOf(end, bodyStart);
+            if (bodyEnd < 0) {
+                throw new IllegalArgumentException("Unterminated " + type + " block");
+            }
+            blocks.add(decodeBase64(pem, bodyStart, bodyEnd));
+            from = pem.indexOf(begin, bodyEnd + end.length());
+        }
+        return blocks;
+    }
+
+    /**
+     * @return true if the text holds PEM blocks
+     */
+    static boolean isWrapped(String text) {
+        return text.contains(BEGIN);
+    }
+
+    /**
+     * @return true if the text is the Base64 encoding of PEM blocks
+     */
+    static boolean isEncoded(String text) {
+        return text.startsWith(ENCODED_BEGIN);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int wrappedLength(String type, String body, int lineLength) {
+        int bodyLength;
+        int newLines = 0;
+        if (lineLength > 0) {
+            bodyLength = 0;
+            for (int i = 0; i < body.length(); i++) {
+                if (!Character.isWhitespace(body.charAt(i))) {
+                    bodyLength++;
+                }
+            }
+            newLines = bodyLength == 0 ? 0 : (bodyLength - 1) / lineLength;
+        } else {
+            bodyLength = body.length();
+        }
+        return BEGIN.length() + END.length() + 2 * (type.length() + DASHES.length()) + 2 + bodyLength + newLines;
+    }
+
+    private static void putWrapped(CharSink sink, String type, String body, int lineLength) {
+        putAll(sink, BEGIN);
+        putAll(sink, type);
+        putAll(sink, DASHES);
+        sink.put('\n');
+        if (lineLength > 0) {
+            int column = 0;
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                if (column == lineLength) {
+                    sink.put('\n');
+                    column = 0;
+                }
+                sink.put(c);
+                column++;
+            }
+        } else {
+            putAll(sink, body);
+        }
+        sink.put('\n');
+        putAll(sink, END);
+        putAll(sink, type);
+        putAll(sink, DASHES);
+    }
+
+    private static void putAll(CharSink sink, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            sink.put(text.charAt(i));
+        }
+    }
+
+    private static byte[] decodeBase64(String text, int start, int end) {
+        int length = 0;
+        int padding = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '=') {
+                padding++;
+            } else if (!Character.isWhitespace(c)) {
+                if (padding > 0 || c >= VALUES.length || VALUES[c] < 0) {
+                    throw new IllegalArgumentException("Invalid Base64 character '" + c + "'");
+                }
+                length++;
+            }
+        }
+        if ((length + padding) % 4 != 0 || padding > 2) {
+            throw new IllegalArgumentException("Invalid Base64 length");
+        }
+
+        byte[] out = new byte[length * 3 / 4];
+        int position = 0;
+        int buffer = 0;
+        int buffered = 0;
+        for (int i = start; i < end && position < out.length; i++) {
+            char c = text.charAt(i);
+            if (c == '=' || Character.isWhitespace(c)) {
+                continue;
+            }
+            buffer = (buffer << 6) | VALUES[c];
+            if (++buffered == 4) {
+                out[position++] = (byte) (buffer >> 16);
+                out[position++] = (byte) (buffer >> 8);
+                out[position++] = (byte) buffer;
+                buffer = 0;
+                buffered = 0;
+            }
+        }
+        if (buffered == 3) {
+            out[position++] = (byte) (buffer >> 10);
+            out[position] = (byte) (buffer >> 2);
+        } else if (buffered == 2) {
+            out[position] = (byte) (buffer >> 4);
+        }
+        return out;
+    }
+
+    @FunctionalInterface
+    private interface CharSink {
+        void put(char c);
+    }
+
+    /**
+     * Base64 encodes ASCII characters into a buffer of the final size.
+     */
+    private static final class Base64Writer implements CharSink {
+        private final byte[] out;
+        private int position;
+        private int buffer;
+        private int buffered;
+
+        Base64Writer(int inputLength) {
+            this.out = new byte[(inputLength + 2) / 3 * 4];
+        }
+
+        @Override
+        public void put(char c) {
+            buffer = (buffer << 8) | (c & 0xff);
+            if (++buffered == 3) {
+                out[position++] = ALPHABET[(buffer >> 18) & 0x3f];
+                out[position++] = ALPHABET[(buffer >> 12) & 0x3f];
+                out[position++] = ALPHABET[(buffer >> 6) & 0x3f];
+                out[position++] = ALPHABET[buffer & 0x3f];
+                buffer = 0;
+                buffered = 0;
+            }
+        }
+
+        String finish() {
+            if (buffered == 1) {
+                out[position++] = ALPHABET[(buffer >> 2) & 0x3f];
+                out[position++] = ALPHABET[(buffer << 4) & 0x3f];
+                out[position++] = '=';
+                out[position++] = '=';
+            } else if (buffered == 2) {
+                out[position++] = ALPHABET[(buffer >> 10) & 0x3f];
+                out[position++] = ALPHABET[(buffer >> 4) & 0x3f];
+                out[position++] = ALPHABET[(buffer << 2) & 0x3f];
+                out[position++] = '=';
+            }
+            return new String(out, 0, position, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.NamedContext;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import jenkins.security.MasterToSlaveCallable;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches the discovery documents of the clusters of kubeconfig files into the kubectl cache of a node, see
+ * {@link DiscoveryPrewarmer}. Runs on the node itself.
+ * <p>
+ * Documents are written in the layout of the kubectl disk cache: {@code servergroups.json} merges {@code /api} and
+ * {@code /apis}, and each group version gets its own {@code serverresources.json}. Every file is written to a
+ * temporary file first and moved in place, so kubectl never reads a partial document. The group versions of a
+ * cluster are fetched in parallel, and the group list is written last.
+ *
+ * @author Max Laverse
+ */
+class PrewarmDiscoveryCallable extends MasterToSlaveCallable<PrewarmDiscoveryCallable.Result, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of discovery documents fetched concurrently per cluster.
+     */
+    static final int PARALLELISM = 8;
+
+    /**
+     * Characters kubectl replaces in the name of the cache folder of a cluster.
+     */
+    private static final Pattern ILLEGAL_FILE_CHARACTERS = Pattern.compile("[^(\\w/.)]");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> paths;
+    private final String cacheDirectory;
+
+    /**
+     * @param paths          kubeconfig files on the node
+     * @param cacheDirectory kubectl cache folder on the node
+     */
+    PrewarmDiscoveryCallable(List<String> paths, String cacheDirectory) {
+        this.paths = paths;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    @Override
+    public Result call() throws IOException {
+        Result result = new Result();
+        Map<String, io.fabric8.kubernetes.client.Config> clusters = new LinkedHashMap<>();
+        for (String path : paths) {
+            String content = new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+            Config kubeConfig = SerializationUtils.getMapper().readValue(content, Config.class);
+            if (kubeConfig.getContexts() == null) {
+                continue;
+            }
+            for (NamedContext context : kubeConfig.getContexts()) {
+                io.fabric8.kubernetes.client.Config clientConfig = io.fabric8.kubernetes.client.Config.fromKubeconfig(context.getName(), content, path);
+                if (clientConfig.getMasterUrl() != null) {
+                    // the first context of a cluster wins, like for kubectl
+                    clusters.putIfAbsent(clientConfig.getMasterUrl(), clientConfig);
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+        try {
+            for (io.fabric8.kubernetes.client.Config clientConfig : clusters.values()) {
+                prewarm(clientConfig, executor, result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private void prewarm(io.fabric8.kubernetes.client.Config clientConfig, ExecutorService executor, Result result) {
+        String server = clientConfig.getMasterUrl().replaceAll("/+$", "");
+        Path folder = new File(new File(cacheDirectory, "discovery"), cacheFolderName(server)).toPath();
+        OkHttpClient client = HttpClientUtils.createHttpClient(clientConfig);
+        try {
+            JsonNode legacy = fetch(client, server + "/api");
+            JsonNode groups = fetch(client, server + "/apis");
+
+            Map<String, Future<byte[]>> resources = new LinkedHashMap<>();
+            for (String groupVersion : groupVersions(legacy, groups)) {
+                String url = server + (groupVersion.contains("/") ? "/apis/" : "/api/") + groupVersion;
+                resources.put(groupVersion, executor.submit(() -> fetchBytes(client, url)));
+            }
+            for (Map.Entry<String, Future<byte[]>> resource : resources.entrySet()) {
+                try {
+                    write(folder.resolve(resource.getKey()).resolve("serverresources.json"), resource.getValue().get());
+                    result.documents++;
+                } catch (ExecutionException e) {
+                    // kubectl fetches it itself
+                    result.failures++;
+                }
+            }
+            write(folder.resolve("servergroups.json"), MAPPER.writeValueAsBytes(mergeGroups(legacy, groups)));
+            result.documents++;
+            result.clusters++;
+        } catch (IOException e) {
+            result.failures++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * @return the name kubectl gives to the cache folder of a server
+     */
+    static String cacheFolderName(String server) {
+        String host = server.replaceFirst("https://", "").replaceFirst("http://", "");
+        return ILLEGAL_FILE_CHARACTERS.matcher(host).replaceAll("_");
+    }
+
+    /**
+     * Merge the legacy API versions and the API groups into a single group list, like kubectl does.
+     */
+    static ObjectNode mergeGroups(JsonNode legacy, JsonNode groups) {
+        ObjectNode list = MAPPER.createObjectNode();
+        list.put("kind", "APIGroupList");
+        list.put("apiVersion", "v1");
+        ArrayNode items = list.putArray("groups");
+
+        JsonNode legacyVersions = legacy.path("versions");
+        if (legacyVersions.size() > 0) {
+            ObjectNode core = items.addObject();
+            core.put("name", "");
+            ArrayNode versions = core.putArray("versions");
+            for (JsonNode version : legacyVersions) {
+                versions.addObject().put("groupVersion", version.asText()).put("version", version.asText());
+            }
+            core.set("preferredVersion", versions.get(0));
+        }
+        for (JsonNode group : groups.path("groups")) {
+            items.add(group);
+        }
+        return list;
+    }
+
+    private static List<String> groupVersions(JsonNode legacy, JsonNode groups) {
+        List<String> groupVersions = new ArrayList<>();
+        for (JsonNode version : legacy.path("versions")) {
+            groupVersions.add(version.asText());
+        }
+        for (JsonNode group : groups.path("groups")) {
+            for (JsonNode version : group.path("versions")) {
+                groupVersions.add(version.path("groupVersion").asText());
+            }
+        }
+        return groupVersions;
+    }
+
+    private static JsonNode fetch(OkHttpClient client, String url) throws IOException {
+        return MAPPER.readTree(fetchBytes(client, url));
+    }
+
+    private static byte[] fetchBytes(OkHttpClient client, String url) throws IOException {
+        Request request = new Request.Builder().url(url).header("Accept", "application/json").build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unable to fetch " + url + ": HTTP " + response.code());
+            }
+            return response.body().bytes();
+        }
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        int clusters;
+        int documents;
+        int failures;
+    }
+}
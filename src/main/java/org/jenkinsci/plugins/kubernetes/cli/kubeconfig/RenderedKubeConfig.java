@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+
+/**
+ * A kubeconfig ready to be written to a node: either its serialized content, or the configuration itself when it
+ * is too large to be sent inline and has to be streamed.
+ *
+ * @author Max Laverse
+ */
+final class RenderedKubeConfig {
+    @CheckForNull
+    final byte[] content;
+    @CheckForNull
+    final Config config;
+
+    private RenderedKubeConfig(byte[] content, Config config) {
+        this.content = content;
+        this.config = config;
+    }
+
+    static RenderedKubeConfig of(byte[] content) {
+        return new RenderedKubeConfig(content, null);
+    }
+
+    static RenderedKubeConfig render(Config config) throws IOException {
+        byte[] content = KubeConfigSerializer.toBytes(config, KubeConfigSerializer.INLINE_LIMIT);
+        return new RenderedKubeConfig(content, content == null ? config : null);
+    }
+
+    boolean isStreamed() {
+        return content == null;
+    }
+}
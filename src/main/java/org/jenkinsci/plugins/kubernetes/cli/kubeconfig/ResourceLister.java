@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the objects of a resource with the credentials of a kubeconfig, in-process instead of through kubectl, see
+ * {@link ListResourcesCallable}.
+ * <p>
+ * Objects are fetched page by page, and either streamed to a file of the workspace or reduced to a few fields on the
+ * node, so that neither the node nor the controller ever holds the whole list.
+ *
+ * @author Max Laverse
+ */
+public abstract class ResourceLister {
+    /**
+     * Default maximum number of objects per page.
+     */
+    public static final int DEFAULT_LIMIT = 500;
+
+    /**
+     * List the objects of a resource into a file.
+     *
+     * @param workspace     workspace of the file
+     * @param kubeConfig    kubeconfig to authenticate with, its current context is used
+     * @param apiVersion    group version of the resource, e.g. {@code apps/v1}
+     * @param kind          kind of the objects, e.g. {@code Deployment}
+     * @param allNamespaces true to list the objects of all namespaces instead of the one of the current context
+     * @param labelSelector label selector, or null
+     * @param fieldSelector field selector, or null
+     * @param limit         maximum number of objects per page
+     * @param metadataOnly  true to only fetch the metadata of the objects
+     * @param file          file to write the objects to as a {@code List}, relative to the workspace
+     * @param listener      listener of the step
+     * @return number of objects written
+     * @throws IOException          on file operations or if the cluster cannot be reached
+     * @throws InterruptedException on remoting interruptions
+     */
+    public static int listToFile(@Nonnull FilePath workspace, @Nonnull byte[] kubeConfig, @Nonnull String apiVersion,
+                                 @Nonnull String kind, boolean allNamespaces, @CheckForNull String labelSelector,
+                                 @CheckForNull String fieldSelector, int limit, boolean metadataOnly,
+                                 @Nonnull String file, @Nonnull TaskListener listener) throws IOException, InterruptedException {
+        return workspace.act(new ListResourcesCallable(kubeConfig, apiVersion, kind, allNamespaces, labelSelector,
+                fieldSelector, limit, metadataOnly, file, null, listener)).items;
+    }
+
+    /**
+     * List fields of the objects of a resource.
+     *
+     * @param fields fields to select from each object, as dotted paths like {@code status.phase} or JSON pointers
+     * @return the selected fields of each object, missing fields being null
+     * @see #listToFile
+     */
+    @Nonnull
+    public static List<Map<String, Object>> listFields(@Nonnull FilePath workspace, @Nonnull byte[] kubeConfig,
+                                                       @Nonnull String apiVersion, @Nonnull String kind,
+                                                       boolean allNamespaces, @CheckForNull String labelSelector,
+                                                       @CheckForNull String fieldSelector, int limit, boolean metadataOnly,
+                                                       @Nonnull List<String> fields, @Nonnull TaskListener listener)
+            throws IOException, InterruptedException {
+        return workspace.act(new ListResourcesCallable(kubeConfig, apiVersion, kind, allNamespaces, labelSelector,
+                fieldSelector, limit, metadataOnly, null, fields, listener)).selected;
+    }
+}
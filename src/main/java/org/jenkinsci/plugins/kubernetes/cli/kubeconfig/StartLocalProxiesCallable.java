@@ -0,0 +1,109 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.AuthInfo;
+import io.fabric8.kubernetes.api.model.Cluster;
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.NamedAuthInfo;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedContext;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts a {@link LocalProxy} per cluster of kubeconfig files, and points the files to them. Runs on the node itself.
+ * <p>
+ * The clusters of the files get the URL of their proxy, without any certificate authority, and their users a random
+ * token the proxies swap for the actual credentials. The files are rewritten in place. Returns the ids of the
+ * proxies, with the URL of the API server each of them forwards to.
+ *
+ * @author Max Laverse
+ */
+class StartLocalProxiesCallable extends MasterToSlaveCallable<LinkedHashMap<String, String>, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> paths;
+
+    StartLocalProxiesCallable(List<String> paths) {
+        this.paths = paths;
+    }
+
+    @Override
+    public LinkedHashMap<String, String> call() throws IOException {
+        LinkedHashMap<String, String> ids = new LinkedHashMap<>();
+        try {
+            for (String path : paths) {
+                proxy(new File(path).toPath(), ids);
+            }
+        } catch (IOException | RuntimeException e) {
+            // don't leave proxies behind
+            for (String id : ids.keySet()) {
+                LocalProxy.stop(id);
+            }
+            throw e;
+        }
+        return ids;
+    }
+
+    private static void proxy(Path path, Map<String, String> ids) throws IOException {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Config kubeConfig = SerializationUtils.getMapper().readValue(content, Config.class);
+        if (kubeConfig.getContexts() == null) {
+            return;
+        }
+
+        Map<String, LocalProxy> proxies = new HashMap<>();
+        Map<String, String> tokens = new HashMap<>();
+        for (NamedContext context : kubeConfig.getContexts()) {
+            if (context.getContext() == null || context.getContext().getCluster() == null || context.getContext().getUser() == null) {
+                continue;
+            }
+            io.fabric8.kubernetes.client.Config clientConfig = io.fabric8.kubernetes.client.Config.fromKubeconfig(context.getName(), content, path.toString());
+            if (clientConfig.getMasterUrl() == null) {
+                continue;
+            }
+            LocalProxy proxy = proxies.get(context.getContext().getCluster());
+            if (proxy == null) {
+                proxy = LocalProxy.start(clientConfig.getMasterUrl());
+                ids.put(proxy.getId(), proxy.getUpstream());
+                proxies.put(context.getContext().getCluster(), proxy);
+            }
+            // a user can be used with several clusters, and must keep the same token for all of them
+            String token = tokens.computeIfAbsent(context.getContext().getUser(), user -> LocalProxy.newToken());
+            proxy.addUser(token, HttpClientUtils.createHttpClient(clientConfig));
+        }
+
+        if (proxies.isEmpty()) {
+            return;
+        }
+        for (NamedCluster namedCluster : kubeConfig.getClusters()) {
+            LocalProxy proxy = proxies.get(namedCluster.getName());
+            if (proxy != null && namedCluster.getCluster() != null) {
+                Cluster cluster = namedCluster.getCluster();
+                cluster.setServer(proxy.getUrl());
+                cluster.setCertificateAuthority(null);
+                cluster.setCertificateAuthorityData(null);
+                cluster.setInsecureSkipTlsVerify(null);
+            }
+        }
+        for (NamedAuthInfo namedAuthInfo : kubeConfig.getUsers()) {
+            String token = tokens.get(namedAuthInfo.getName());
+            if (token != null) {
+                AuthInfo authInfo = new AuthInfo();
+                authInfo.setToken(token);
+                namedAuthInfo.setUser(authInfo);
+            }
+        }
+        Files.write(path, KubeConfigSerializer.toBytes(kubeConfig));
+    }
+}
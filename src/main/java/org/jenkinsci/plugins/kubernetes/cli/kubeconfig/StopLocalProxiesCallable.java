@@ -0,0 +1,33 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import jenkins.security.MasterToSlaveCallable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stops {@link LocalProxy proxies} of a node and returns their statistics. Runs on the node itself.
+ *
+ * @author Max Laverse
+ */
+class StopLocalProxiesCallable extends MasterToSlaveCallable<List<LocalProxy.Stats>, RuntimeException> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> ids;
+
+    StopLocalProxiesCallable(List<String> ids) {
+        this.ids = ids;
+    }
+
+    @Override
+    public List<LocalProxy.Stats> call() {
+        List<LocalProxy.Stats> stats = new ArrayList<>();
+        for (String id : ids) {
+            LocalProxy.Stats proxyStats = LocalProxy.stop(id);
+            if (proxyStats != null) {
+                stats.add(proxyStats);
+            }
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,265 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.model.Computer;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the tokens of {@link TokenProducer} credentials until they expire.
+ * <p>
+ * The lifetime of a token is read from its expiry claim when it is a JWT, or defaults to {@link #DEFAULT_TTL}.
+ * A token close to its expiry is still served while a new one is fetched in the background. A single fetch is
+ * in flight per credential and server at any time, concurrent builds wait for it instead of starting their own.
+ * Credentials are told apart by a digest of their id and secret, never by their id alone: same-id credentials of
+ * different folders only share tokens when they hold the same secret. Tokens of credentials whose secret is of an
+ * unknown type are not cached.
+ *
+ * @author Max Laverse
+ */
+public final class TokenCache {
+    /**
+     * Lifetime in seconds of tokens which do not carry their own expiry.
+     */
+    public static final long DEFAULT_TTL = SystemProperties.getLong(TokenCache.class.getName() + ".defaultTtl", 300L);
+
+    /**
+     * How long in seconds before the expiry of a token a new one is fetched in the background.
+     * Tokens with short lifetimes are refreshed once half of their lifetime has passed at the latest.
+     */
+    public static final long REFRESH_AHEAD = SystemProperties.getLong(TokenCache.class.getName() + ".refreshAhead", 60L);
+
+    private static final TokenCache INSTANCE = new TokenCache(DEFAULT_TTL, REFRESH_AHEAD, Computer.threadPoolForRemoting, System::currentTimeMillis);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final long defaultTtl;
+    private final long refreshAhead;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    TokenCache(long defaultTtl, long refreshAhead, Executor executor, LongSupplier clock) {
+        this.defaultTtl = TimeUnit.SECONDS.toMillis(defaultTtl);
+        this.refreshAhead = TimeUnit.SECONDS.toMillis(refreshAhead);
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cache shared by all the steps and build wrappers
+     */
+    public static TokenCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Wrap token producing credentials so that their tokens are served from the cache.
+     *
+     * @param credentials credentials producing tokens, must implement {@link TokenProducer}
+     * @return a caching token producer, or the credentials themselves if their secret is of an unknown type
+     * @throws IOException on credentials content access
+     */
+    public TokenProducer cachingProducer(@Nonnull StandardCredentials credentials) throws IOException {
+        if (!(credentials instanceof TokenProducer)) {
+            throw new IllegalArgumentException("Credentials " + credentials.getId() + " do not produce tokens");
+        }
+        TokenProducer producer = (TokenProducer) credentials;
+        String prefix = credentialsKey(credentials);
+        if (prefix == null) {
+            return producer;
+        }
+        return (serviceAddress, caCertData, skipTlsVerify) ->
+                getToken(prefix + '\n' + serviceAddress + '\n' + caCertData + '\n' + skipTlsVerify, producer, serviceAddress, caCertData, skipTlsVerify);
+    }
+
+    /**
+     * Return the cached token of a producer, fetching it if it is missing or expired.
+     *
+     * @param key            identifies the producer and its parameters
+     * @param producer       producer of the token
+     * @param serviceAddress address of the API server
+     * @param caCertData     certificate of the cluster authority
+     * @param skipTlsVerify  whether TLS verification is skipped
+     * @return the token
+     * @throws IOException if the token had to be fetched and that failed
+     */
+    String getToken(String key, TokenProducer producer, String serviceAddress, String caCertData, boolean skipTlsVerify) throws IOException {
+        long now = clock.getAsLong();
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+
+        Token token = entry.token;
+        if (token != null && now < token.expiresAt) {
+            hits.incrementAndGet();
+            if (now >= token.refreshAt) {
+                entry.refresh(producer, serviceAddress, caCertData, skipTlsVerify);
+            }
+            return token.value;
+        }
+
+        misses.incrementAndGet();
+        evictExpired(entry, now);
+        try {
+            return entry.refresh(producer, serviceAddress, caCertData, skipTlsVerify).get().value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a token");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Drop all the cached tokens.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of tokens served from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of times a build had to wait for a token
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of tokens fetched, in the background or not
+     */
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /**
+     * @return number of failed token fetches
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    private void evictExpired(Entry current, long now) {
+        entries.values().removeIf(e -> e != current && e.isExpired(now));
+    }
+
+    /**
+     * Identify credentials by a digest of their class, id and secret.
+     *
+     * @return the digest, or null if the secret is of an unknown type
+     */
+    @CheckForNull
+    static String credentialsKey(StandardCredentials credentials) throws IOException {
+        MessageDigest digest = CredentialsDigest.newDigest();
+        CredentialsDigest.add(digest, credentials.getClass().getName());
+        CredentialsDigest.add(digest, credentials.getId());
+        if (!CredentialsDigest.addSecret(digest, credentials)) {
+            return null;
+        }
+        return CredentialsDigest.toHex(digest.digest());
+    }
+
+    /**
+     * Compute when a token expires: the expiry claim of a JWT, or the default lifetime.
+     */
+    long expiresAt(String token, long now) {
+        String[] parts = token.split("\\.");
+        if (parts.length == 3) {
+            try {
+                long exp = MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1])).path("exp").asLong(0);
+                if (exp > 0) {
+                    return TimeUnit.SECONDS.toMillis(exp);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // not a JWT after all
+            }
+        }
+        return now + defaultTtl;
+    }
+
+    private static final class Token {
+        final String value;
+        final long expiresAt;
+        final long refreshAt;
+
+        Token(String value, long fetchedAt, long expiresAt, long refreshAhead) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.refreshAt = expiresAt - Math.min(refreshAhead, (expiresAt - fetchedAt) / 2);
+        }
+    }
+
+    /**
+     * Token of a producer, and its fetch in flight if any.
+     */
+    private final class Entry {
+        volatile Token token;
+        private CompletableFuture<Token> inFlight;
+
+        synchronized CompletableFuture<Token> refresh(TokenProducer producer, String serviceAddress, String caCertData, boolean skipTlsVerify) {
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<Token> future = new CompletableFuture<>();
+            inFlight = future;
+            executor.execute(() -> {
+                try {
+                    String value = producer.getToken(serviceAddress, caCertData, skipTlsVerify);
+                    long now = clock.getAsLong();
+                    Token fetched = new Token(value, now, expiresAt(value, now), refreshAhead);
+                    token = fetched;
+                    refreshes.incrementAndGet();
+                    done();
+                    future.complete(fetched);
+                } catch (Throwable t) {
+                    // a token still valid keeps being served, the next access retries
+                    failures.incrementAndGet();
+                    done();
+                    future.completeExceptionally(t);
+                }
+            });
+            return future;
+        }
+
+        private synchronized void done() {
+            inFlight = null;
+        }
+
+        synchronized boolean isExpired(long now) {
+            Token current = token;
+            return inFlight == null && current != null && now >= current.expiresAt;
+        }
+    }
+}
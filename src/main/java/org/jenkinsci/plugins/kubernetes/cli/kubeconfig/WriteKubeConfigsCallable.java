@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import jenkins.security.MasterToSlaveCallable;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes a batch of rendered kubeconfigs to temporary files of a node, in a single remoting call.
+ * A null content only creates the file, so that it can be streamed afterwards.
+ * Unless the folder to write to is already known and still exists, memory-backed folders are probed first, see
+ * {@link KubeConfigStorage}.
+ *
+ * @author Max Laverse
+ */
+class WriteKubeConfigsCallable extends MasterToSlaveCallable<WriteKubeConfigsCallable.Result, IOException> {
+    private static final long serialVersionUID = 1L;
+    private static final String TMPDIR_PROPERTY = "java.io.tmpdir";
+
+    private final String workspace;
+    private final List<byte[]> contents;
+    private final List<String> memoryBackedFolders;
+    private final String temporaryFolder;
+
+    WriteKubeConfigsCallable(String workspace, List<byte[]> contents) {
+        this(workspace, contents, Collections.emptyList(), null);
+    }
+
+    WriteKubeConfigsCallable(String workspace, List<byte[]> contents, List<String> memoryBackedFolders, @CheckForNull String temporaryFolder) {
+        this.workspace = workspace;
+        this.contents = contents;
+        this.memoryBackedFolders = memoryBackedFolders;
+        this.temporaryFolder = temporaryFolder;
+    }
+
+    @Override
+    public Result call() throws IOException {
+        Result result = new Result();
+
+        File workspaceFolder = new File(workspace);
+        if (!workspaceFolder.exists()) {
+            Files.createDirectories(workspaceFolder.toPath());
+            result.createdWorkspace = true;
+        }
+
+        File tempFolder = temporaryFolder == null ? null : new File(temporaryFolder);
+        if (tempFolder == null || !tempFolder.exists() && !memoryBackedFolders.isEmpty()) {
+            // a memory-backed folder which disappeared is probed again, so that it is recreated private to the user
+            String memoryBackedFolder = memoryBackedFolders.isEmpty() ? null : MemoryBackedFolders.find(memoryBackedFolders);
+            if (memoryBackedFolder != null) {
+                tempFolder = new File(memoryBackedFolder);
+            } else {
+                tempFolder = new File(System.getProperty(TMPDIR_PROPERTY));
+                result.memoryBackedUnavailable = !memoryBackedFolders.isEmpty();
+            }
+        }
+        if (!tempFolder.exists()) {
+            Files.createDirectories(tempFolder.toPath());
+            result.createdTemporaryFolder = true;
+        }
+        result.temporaryFolder = tempFolder.getPath();
+
+        try {
+            for (byte[] content : contents) {
+                File configFile = File.createTempFile(KubeConfigWriter.TEMP_FILE_PREFIX, KubeConfigWriter.TEMP_FILE_SUFFIX, tempFolder);
+                result.paths.add(configFile.getAbsolutePath());
+                if (content != null) {
+                    Files.write(configFile.toPath(), content);
+                }
+            }
+        } catch (IOException e) {
+            // don't leave partial results behind
+            for (String path : result.paths) {
+                Files.deleteIfExists(new File(path).toPath());
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final List<String> paths = new ArrayList<>();
+        String temporaryFolder;
+        boolean createdWorkspace;
+        boolean createdTemporaryFolder;
+        boolean memoryBackedUnavailable;
+    }
+}
@@ -1,8 +1,11 @@
 package org.jenkinsci.plugins.kubernetes.cli;
 
 import hudson.EnvVars;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
 import org.junit.Test;
 
+import java.io.File;
+
 import static org.junit.Assert.assertEquals;
 
 public class KubeConfigExpanderTest {
@@ -32,4 +35,49 @@ public class KubeConfigExpanderTest {
         expander.expand(initialEnv);
         assertEquals("value", initialEnv.get("ANOTHER"));
     }
+
+    @Test
+    public void testExpanderInherit() throws Exception {
+        KubeConfigExpander expander = new KubeConfigExpander("a-file-path", true);
+        EnvVars initialEnv = new EnvVars();
+        initialEnv.put("KUBECONFIG", "an-outer-path" + File.pathSeparator + "another-outer-path");
+        expander.expand(initialEnv);
+        assertEquals("a-file-path" + File.pathSeparator + "an-outer-path" + File.pathSeparator + "another-outer-path", initialEnv.get("KUBECONFIG"));
+    }
+
+    @Test
+    public void testExpanderInheritNothing() throws Exception {
+        KubeConfigExpander expander = new KubeConfigExpander("a-file-path", true);
+        EnvVars initialEnv = new EnvVars();
+        expander.expand(initialEnv);
+        assertEquals("a-file-path", initialEnv.get("KUBECONFIG"));
+
+        initialEnv.put("KUBECONFIG", "");
+        expander.expand(initialEnv);
+        assertEquals("a-file-path", initialEnv.get("KUBECONFIG"));
+    }
+
+    @Test
+    public void testExpanderInheritMerged() throws Exception {
+        EnvVars initialEnv = new EnvVars();
+        EnvironmentExpander.merge(new KubeConfigExpander("an-outer-path"), new KubeConfigExpander("a-file-path", true)).expand(initialEnv);
+        assertEquals("a-file-path" + File.pathSeparator + "an-outer-path", initialEnv.get("KUBECONFIG"));
+    }
+
+    @Test
+    public void testExpanderCacheDirectory() throws Exception {
+        KubeConfigExpander expander = new KubeConfigExpander("a-file-path", false, "a-cache-path");
+        EnvVars initialEnv = new EnvVars();
+        expander.expand(initialEnv);
+        assertEquals("a-cache-path", initialEnv.get("KUBECACHEDIR"));
+    }
+
+    @Test
+    public void testExpanderCacheDirectoryKeepsUserValue() throws Exception {
+        KubeConfigExpander expander = new KubeConfigExpander("a-file-path", false, "a-cache-path");
+        EnvVars initialEnv = new EnvVars();
+        initialEnv.put("KUBECACHEDIR", "a-user-cache-path");
+        expander.expand(initialEnv);
+        assertEquals("a-user-cache-path", initialEnv.get("KUBECACHEDIR"));
+    }
 }
@@ -0,0 +1,149 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.FreeStyleBuild;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSession;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSessionsAction;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigTimingsAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Max Laverse
+ */
+public class KubeConfigSessionStepTest extends KubectlTestBase {
+    private static final Pattern SESSION_FILE = Pattern.compile("Using session file (\\S+)");
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void addFakeSlave() throws Exception {
+        r.jenkins.addNode(getFakeSlave(r));
+        r.jenkins.setNumExecutors(0);
+    }
+
+    @Test
+    public void testSessionSharedAcrossStagesAndBranches() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testSessionSharedAcrossStagesAndBranches");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlSession.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.SUCCESS, r.waitForCompletion(b));
+
+        Set<String> paths = new HashSet<>();
+        Matcher matcher = SESSION_FILE.matcher(JenkinsRule.getLog(b));
+        int uses = 0;
+        while (matcher.find()) {
+            paths.add(matcher.group(1));
+            uses++;
+        }
+        assertEquals(3, uses);
+        assertEquals(1, paths.size());
+
+        KubeConfigTimingsAction timings = b.getAction(KubeConfigTimingsAction.class);
+        assertNotNull(timings);
+        assertEquals(1, timings.getInvocations().size());
+        assertEquals("kubeConfigSession", timings.getInvocations().get(0).getStep());
+
+        KubeConfigSession session = KubeConfigSessionsAction.get(b, "kubeconfig-session-1");
+        assertNotNull(session);
+        assertTrue(session.isClosed());
+        assertTrue(session.getNodes().isEmpty());
+
+        File file = new File(paths.iterator().next());
+        for (int i = 0; i < 50 && file.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testMissingFileWrittenAgain() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        KubeConfigEnvironment environment = controllerEnvironment();
+        KubeConfigSession session = new KubeConfigSession("kubeconfig-session-1", SERVER_URL, CREDENTIAL_ID, null,
+                null, null, null, false);
+
+        String first = session.acquire(environment, TaskListener.NULL, "test");
+        session.release("");
+        // e.g. deleted along with the workspace of the first block
+        assertTrue(new File(first).delete());
+
+        String second = session.acquire(environment, TaskListener.NULL, "test");
+        assertNotEquals(first, second);
+        assertTrue(new File(second).exists());
+        assertEquals(1, session.getReferences(""));
+
+        session.release("");
+        session.close();
+    }
+
+    @Test
+    public void testFailedWriteRetried() throws Exception {
+        KubeConfigEnvironment environment = controllerEnvironment();
+        KubeConfigSession session = new KubeConfigSession("kubeconfig-session-1", SERVER_URL, CREDENTIAL_ID, null,
+                null, null, null, false);
+
+        try {
+            session.acquire(environment, TaskListener.NULL, "test");
+            fail("The credentials do not exist yet");
+        } catch (AbortException e) {
+            assertEquals("Unable to find credentials with id '" + CREDENTIAL_ID + "'", e.getMessage());
+        }
+        assertTrue(session.getNodes().isEmpty());
+        assertEquals(0, session.getReferences(""));
+
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        String path = session.acquire(environment, TaskListener.NULL, "test");
+        assertTrue(new File(path).exists());
+        assertEquals(1, session.getReferences(""));
+
+        session.release("");
+        session.close();
+    }
+
+    private KubeConfigEnvironment controllerEnvironment() throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        FilePath workspace = r.jenkins.getRootPath().child("session-workspace");
+        return new KubeConfigEnvironment(workspace, new Launcher.LocalLauncher(TaskListener.NULL), build, new EnvVars());
+    }
+
+    @Test
+    public void testUnknownSession() throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testUnknownSession");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlSessionUnknown.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("ERROR: Unable to find kubeconfig session 'kubeconfig-session-42'", b);
+    }
+}
@@ -6,6 +6,9 @@ import com.cloudbees.plugins.credentials.CredentialsStore;
 import com.cloudbees.plugins.credentials.domains.Domain;
 import hudson.model.Result;
 import hudson.util.ListBoxModel;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigInvocation;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigTimingsAction;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -14,8 +17,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Max Laverse
@@ -156,6 +164,99 @@ public class KubectlBuildStepTest extends KubectlTestBase {
         r.assertLogNotContains("kubectl, config, set-cluster", b);
     }
 
+    @Test
+    public void testMultipleCredentials() throws Exception {
+        CredentialsStore store = CredentialsProvider.lookupStores(r.jenkins).iterator().next();
+        store.addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        store.addCredentials(Domain.global(), usernamePasswordCredential("cred5678"));
+        store.addCredentials(Domain.global(), secretCredential(SECONDARY_CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testMultipleCredentials");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlMockedMulti.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        waitForResult(b, Result.SUCCESS);
+        r.assertLogContains("kubectl configuration cleaned up", b);
+    }
+
+    @Test
+    public void testMultipleCredentialsReportsFirstFailure() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testMultipleCredentialsReportsFirstFailure");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlMockedMulti.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        waitForResult(b, Result.FAILURE);
+        r.assertLogContains("ERROR: Unable to find credentials with id 'cred5678'", b);
+        r.assertLogNotContains("cred9999", b);
+    }
+
+    @Test
+    public void testTimingsRecorded() throws Exception {
+        CredentialsStore store = CredentialsProvider.lookupStores(r.jenkins).iterator().next();
+        store.addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        store.addCredentials(Domain.global(), usernamePasswordCredential("cred5678"));
+        store.addCredentials(Domain.global(), secretCredential(SECONDARY_CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testTimingsRecorded");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlMockedMulti.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        waitForResult(b, Result.SUCCESS);
+
+        KubeConfigTimingsAction action = b.getAction(KubeConfigTimingsAction.class);
+        assertNotNull(action);
+        assertEquals(1, action.getInvocations().size());
+        KubeConfigInvocation invocation = action.getInvocations().get(0);
+        assertEquals("withKubeCredentials", invocation.getStep());
+        assertTrue(invocation.getSetup() >= 0);
+        assertTrue(invocation.getRemoteWrite() >= 0);
+        assertTrue(invocation.getCleanup() >= 0);
+        assertEquals(3, invocation.getCredentials().size());
+        assertEquals("cred5678", invocation.getCredentials().get(1).getCredentialsId());
+        assertTrue(invocation.getCredentials().get(1).getLookup() >= 0);
+
+        JSONObject json = JSONObject.fromObject(r.createWebClient().goTo(b.getUrl() + "api/json?depth=1", "application/json").getWebResponse().getContentAsString());
+        boolean exported = false;
+        for (Object a : json.getJSONArray("actions")) {
+            JSONObject exportedAction = (JSONObject) a;
+            if (exportedAction.has("invocations")) {
+                exported = true;
+                assertEquals("withKubeCredentials", exportedAction.getJSONArray("invocations").getJSONObject(0).getString("step"));
+                assertEquals(3, exportedAction.getJSONArray("invocations").getJSONObject(0).getJSONArray("credentials").size());
+            }
+        }
+        assertTrue(exported);
+
+        r.assertLogContains("kubectl configuration cleaned up", b);
+    }
+
+    @Test
+    public void testNestedInheritKubeConfig() throws Exception {
+        CredentialsStore store = CredentialsProvider.lookupStores(r.jenkins).iterator().next();
+        store.addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        store.addCredentials(Domain.global(), secretCredential(SECONDARY_CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testNestedInheritKubeConfig");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlNestedInherit.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        waitForResult(b, Result.SUCCESS);
+
+        Matcher outer = Pattern.compile("Outer KUBECONFIG (\\S+)").matcher(JenkinsRule.getLog(b));
+        Matcher inner = Pattern.compile("Inner KUBECONFIG (\\S+)").matcher(JenkinsRule.getLog(b));
+        assertTrue(outer.find());
+        assertTrue(inner.find());
+        String[] innerFiles = inner.group(1).split(Pattern.quote(File.pathSeparator));
+        assertEquals(2, innerFiles.length);
+        assertEquals(outer.group(1), innerFiles[1]);
+
+        KubeConfigTimingsAction action = b.getAction(KubeConfigTimingsAction.class);
+        assertEquals(2, action.getInvocations().size());
+        assertEquals(1, action.getInvocations().get(1).getCredentials().size());
+    }
+
     private void waitForResult(WorkflowRun b, Result result) throws Exception {
         r.assertBuildStatus(result, r.waitForCompletion(b));
 
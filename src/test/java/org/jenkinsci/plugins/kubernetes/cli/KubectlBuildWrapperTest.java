@@ -10,6 +10,7 @@ import hudson.tasks.Shell;
 import hudson.util.ListBoxModel;
 import org.jenkinsci.plugins.envinject.EnvInjectBuildWrapper;
 import org.jenkinsci.plugins.envinject.EnvInjectJobPropertyInfo;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigTimingsAction;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -79,6 +80,39 @@ public class KubectlBuildWrapperTest extends KubectlTestBase {
         r.assertLogContains("server: \"http://my-server\"", b);
     }
 
+    @Test
+    public void testEnvInterpolationOfNames() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+
+        FreeStyleProject p = r.createFreeStyleProject();
+
+        StringBuffer propertiesContent = new StringBuffer();
+        propertiesContent.append("CLUSTER").append("=").append("my-cluster").append("\n");
+        propertiesContent.append("CONTEXT").append("=").append("my-context").append("\n");
+        propertiesContent.append("NAMESPACE").append("=").append("my-namespace");
+        EnvInjectJobPropertyInfo info = new EnvInjectJobPropertyInfo(null, propertiesContent.toString(), null, null, true, null);
+        EnvInjectBuildWrapper envInjectBuildWrapper = new EnvInjectBuildWrapper();
+        envInjectBuildWrapper.setInfo(info);
+        p.getBuildWrappersList().add(envInjectBuildWrapper);
+
+        KubectlBuildWrapper bw = new KubectlBuildWrapper();
+        bw.credentialsId = CREDENTIAL_ID;
+        bw.clusterName = "${CLUSTER}";
+        bw.contextName = "${CONTEXT}";
+        bw.namespace = "${NAMESPACE}";
+        p.getBuildWrappersList().add(bw);
+
+        Shell b2 = new Shell("#!/bin/bash\ncat $KUBECONFIG");
+        p.getBuildersList().add(b2);
+
+        FreeStyleBuild b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.SUCCESS, r.waitForCompletion(b));
+        r.assertLogContains("cluster: \"my-cluster\"", b);
+        r.assertLogContains("current-context: \"my-context\"", b);
+        r.assertLogContains("namespace: \"my-namespace\"", b);
+    }
+
     @Test
     public void testKubeConfigDisposed() throws Exception {
         CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
@@ -93,6 +127,11 @@ public class KubectlBuildWrapperTest extends KubectlTestBase {
         assertNotNull(b);
         r.assertBuildStatus(Result.SUCCESS, r.waitForCompletion(b));
         r.assertLogContains("kubectl configuration cleaned up", b);
+
+        KubeConfigTimingsAction timings = b.getAction(KubeConfigTimingsAction.class);
+        assertNotNull(timings);
+        assertEquals(1, timings.getInvocations().size());
+        assertEquals("kubectlBuildWrapper", timings.getInvocations().get(0).getStep());
     }
 
     @Test
@@ -4,6 +4,7 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsStore;
 import com.cloudbees.plugins.credentials.domains.Domain;
 import hudson.FilePath;
+import hudson.model.Result;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -385,6 +386,30 @@ public class KubectlIntegrationTest extends KubectlTestBase {
                 "current-context: test-sample\n"));
     }
 
+    @Test
+    public void testMultiKubeConfigMerged() throws Exception {
+        CredentialsStore store = CredentialsProvider.lookupStores(r.jenkins).iterator().next();
+        store.addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+        store.addCredentials(Domain.global(), secretCredential(SECONDARY_CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "multiKubeConfigMerged");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlMultiDumpMerged.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatusSuccess(r.waitForCompletion(b));
+        r.assertLogContains("kubectl configuration cleaned up", b);
+
+        FilePath configDump = r.jenkins.getWorkspaceFor(p).child("configDump");
+        assertTrue(configDump.exists());
+        String configDumpContent = configDump.readToString().trim();
+        assertThat(configDumpContent, containsString("name: \"clus1234\""));
+        assertThat(configDumpContent, containsString("name: \"clus9999\""));
+        assertThat(configDumpContent, containsString("name: \"cont1234\""));
+        assertThat(configDumpContent, containsString("name: \"cont9999\""));
+        assertThat(configDumpContent, containsString("name: \"cred1234\""));
+        assertThat(configDumpContent, containsString("name: \"cred9999\""));
+    }
+
     @Test
     public void testPlainKubeConfigWithContext() throws Exception {
         CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), fileCredential(CREDENTIAL_ID));
@@ -493,4 +518,44 @@ public class KubectlIntegrationTest extends KubectlTestBase {
                 "current-context: \"test-sample\"\n" +
                 "users: []", configDumpContent);
     }
+
+    @Test
+    public void testPlainKubeConfigPrunedWithServer() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), fileCredential(CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "fileCredential");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlDumpPrunedWithServer.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatusSuccess(r.waitForCompletion(b));
+
+        FilePath configDump = r.jenkins.getWorkspaceFor(p).child("configDump");
+        assertTrue(configDump.exists());
+        String configDumpContent = configDump.readToString().trim();
+        assertEquals("---\n" +
+                "apiVersion: \"v1\"\n" +
+                "clusters:\n" +
+                "- cluster:\n" +
+                "    insecure-skip-tls-verify: true\n" +
+                "    server: \"https://localhost:6443\"\n" +
+                "  name: \"k8s\"\n" +
+                "contexts:\n" +
+                "- context:\n" +
+                "    cluster: \"k8s\"\n" +
+                "  name: \"test-sample\"\n" +
+                "current-context: \"test-sample\"\n" +
+                "users: []", configDumpContent);
+    }
+
+    @Test
+    public void testPlainKubeConfigPrunedWithUnknownContext() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), fileCredential(CREDENTIAL_ID));
+
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "fileCredential");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubectlDumpPrunedWithUnknownContext.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("Unable to prune the kubeconfig of credentials 'cred1234': context 'unknown' not found", b);
+    }
 }
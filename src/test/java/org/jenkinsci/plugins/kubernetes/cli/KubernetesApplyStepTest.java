@@ -0,0 +1,47 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * @author Max Laverse
+ */
+public class KubernetesApplyStepTest extends KubectlTestBase {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void addCredentials() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential(CREDENTIAL_ID));
+    }
+
+    @Test
+    public void testNoManifestsMatch() throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testNoManifestsMatch");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubernetesApplyNoManifests.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("ERROR: No manifests match 'k8s/*.yaml'", b);
+    }
+
+    @Test
+    public void testMissingManifests() throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testMissingManifests");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubernetesApplyMissingManifests.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("ERROR: No manifests given to apply", b);
+    }
+}
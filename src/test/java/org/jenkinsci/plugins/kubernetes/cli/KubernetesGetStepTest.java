@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.kubernetes.cli;
+
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * @author Max Laverse
+ */
+public class KubernetesGetStepTest extends KubectlTestBase {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testParseFields() {
+        assertEquals(Arrays.asList("metadata.name", "status.phase"), KubernetesGetStep.parseFields(" metadata.name, status.phase,"));
+        assertEquals(Collections.emptyList(), KubernetesGetStep.parseFields(" "));
+    }
+
+    @Test
+    public void testFileAndFields() throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testFileAndFields");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubernetesGetFileAndFields.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("ERROR: Exactly one of file or fields must be given", b);
+    }
+
+    @Test
+    public void testMissingKind() throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "testMissingKind");
+        p.setDefinition(new CpsFlowDefinition(loadResource("kubernetesGetMissingKind.groovy"), true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        assertNotNull(b);
+        r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(b));
+        r.assertLogContains("ERROR: No kind given to list", b);
+    }
+}
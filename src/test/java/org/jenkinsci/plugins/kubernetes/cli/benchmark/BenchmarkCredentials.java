@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.kubernetes.cli.benchmark;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SecretBytes;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.kubernetes.cli.utils.FakeBearerTokenCredentialImpl;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Credentials and kubeconfigs used by the benchmarks.
+ *
+ * @author Max Laverse
+ */
+final class BenchmarkCredentials {
+    static final String SERVER_URL = "https://localhost:6443";
+    static final String CA_CERTIFICATE = "-----BEGIN CERTIFICATE-----\na-certificate\n-----END CERTIFICATE-----";
+    static final String PASSPHRASE = "test";
+
+    private BenchmarkCredentials() {
+    }
+
+    /**
+     * @param type one of usernamePassword, secret, certificate, kubeconfig or token
+     */
+    static StandardCredentials create(String type, String id) {
+        switch (type) {
+            case "usernamePassword":
+                return new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, "benchmark", "bob", "s3cr3t");
+            case "secret":
+                return new StringCredentialsImpl(CredentialsScope.GLOBAL, id, "benchmark", Secret.fromString("s3cr3t"));
+            case "certificate":
+                return certificate(id);
+            case "kubeconfig":
+                return kubeconfig(id, 1);
+            case "token":
+                return new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, id, "benchmark", "bob", "s3cr3t");
+            default:
+                throw new IllegalArgumentException("Unknown credentials type " + type);
+        }
+    }
+
+    static CertificateCredentialsImpl certificate(String id) {
+        String storeFile = BenchmarkCredentials.class.getResource("/org/jenkinsci/plugins/kubernetes/cli/kubernetes.pkcs12").getFile();
+        CertificateCredentialsImpl.KeyStoreSource keyStoreSource = new CertificateCredentialsImpl.FileOnMasterKeyStoreSource(storeFile);
+        return new CertificateCredentialsImpl(CredentialsScope.GLOBAL, id, "benchmark", PASSPHRASE, keyStoreSource);
+    }
+
+    /**
+     * An imported kubeconfig with the given number of clusters, users and contexts.
+     */
+    static FileCredentialsImpl kubeconfig(String id, int contexts) {
+        StringBuilder sb = new StringBuilder("---\napiVersion: \"v1\"\nkind: \"Config\"\nclusters:\n");
+        for (int i = 0; i < contexts; i++) {
+            sb.append("- name: \"cluster-").append(i).append("\"\n")
+                    .append("  cluster:\n")
+                    .append("    server: \"https://cluster-").append(i).append(":6443\"\n");
+        }
+        sb.append("users:\n");
+        for (int i = 0; i < contexts; i++) {
+            sb.append("- name: \"user-").append(i).append("\"\n")
+                    .append("  user:\n")
+                    .append("    token: \"token-").append(i).append("\"\n");
+        }
+        sb.append("contexts:\n");
+        for (int i = 0; i < contexts; i++) {
+            sb.append("- name: \"context-").append(i).append("\"\n")
+                    .append("  context:\n")
+                    .append("    cluster: \"cluster-").append(i).append("\"\n")
+                    .append("    user: \"user-").append(i).append("\"\n");
+        }
+        sb.append("current-context: \"context-").append(contexts / 2).append("\"\n");
+        return new FileCredentialsImpl(CredentialsScope.GLOBAL, id, "benchmark", "kubeconfig",
+                SecretBytes.fromBytes(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.kubernetes.cli.benchmark;
+
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+import hudson.FilePath;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.apache.commons.codec.binary.Base64;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.CertificateHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Wrapping certificates and keys in PEM markers, and extracting them from a keystore.
+ *
+ * @author Max Laverse
+ */
+@JmhBenchmark
+public class CertificateHelperBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class EncodedState {
+        String certificate;
+        String privateKey;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            byte[] certificateBytes = new byte[1200];
+            byte[] keyBytes = new byte[1700];
+            random.nextBytes(certificateBytes);
+            random.nextBytes(keyBytes);
+            certificate = Base64.encodeBase64String(certificateBytes);
+            privateKey = Base64.encodeBase64String(keyBytes);
+        }
+    }
+
+    public static class KeyStoreState extends JmhBenchmarkState {
+        CertificateCredentialsImpl credentials;
+        FilePath certificateFile;
+        FilePath keyFile;
+
+        @Override
+        public void setup() throws Exception {
+            credentials = BenchmarkCredentials.certificate("benchmark");
+            File folder = Files.createTempDirectory("kubernetes-cli-benchmark").toFile();
+            certificateFile = new FilePath(new File(folder, "client.crt"));
+            keyFile = new FilePath(new File(folder, "client.key"));
+        }
+
+        @Override
+        public void tearDown() {
+            try {
+                certificateFile.getParent().deleteRecursive();
+            } catch (Exception e) {
+                // best effort
+            }
+        }
+    }
+
+    @Benchmark
+    public String wrapCertificate(EncodedState state) {
+        return CertificateHelper.wrapCertificate(state.certificate);
+    }
+
+    @Benchmark
+    public String wrapPrivateKey(EncodedState state) {
+        return CertificateHelper.wrapPrivateKey(state.privateKey);
+    }
+
+    @Benchmark
+    public void extractFromCertificate(KeyStoreState state) throws Exception {
+        CertificateHelper.extractFromCertificate(state.credentials, state.certificateFile, state.keyFile);
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.kubernetes.cli.benchmark;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import io.fabric8.kubernetes.api.model.Config;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.CertificateKeyCache;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigEnvironment;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigWriter;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.ParsedKubeConfigCache;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.TokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building kubeconfigs from each supported credentials type, and from imported kubeconfigs of growing sizes
+ * which get their cluster, context and namespace overridden.
+ * <p>
+ * Tokens, key material and parsed kubeconfigs are cached across blocks, so the first benchmarks measure cache hits.
+ * The uncached ones clear the caches before every invocation, to measure the actual generation.
+ *
+ * @author Max Laverse
+ */
+@JmhBenchmark
+public class KubeConfigBuildBenchmark {
+    private static final String CREDENTIALS_ID = "benchmark";
+
+    private static KubeConfigWriter createWriter(StandardCredentials credentials, String contextName) throws Exception {
+        Jenkins jenkins = JmhBenchmarkState.getJenkins();
+        CredentialsProvider.lookupStores(jenkins).iterator().next().addCredentials(Domain.global(), credentials);
+        FreeStyleProject project = jenkins.createProject(FreeStyleProject.class, "benchmark");
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+        KubeConfigEnvironment environment = new KubeConfigEnvironment(null, new Launcher.LocalLauncher(TaskListener.NULL), build, new EnvVars());
+        return new KubeConfigWriter(BenchmarkCredentials.SERVER_URL, CREDENTIALS_ID, BenchmarkCredentials.CA_CERTIFICATE,
+                "benchmark-cluster", contextName, "benchmark-namespace", false, environment);
+    }
+
+    public static class CredentialsState extends JmhBenchmarkState {
+        @Param({"usernamePassword", "secret", "certificate", "kubeconfig", "token"})
+        public String credentialsType;
+
+        KubeConfigWriter writer;
+
+        @Override
+        public void setup() throws Exception {
+            writer = createWriter(BenchmarkCredentials.create(credentialsType, CREDENTIALS_ID), null);
+        }
+    }
+
+    public static class ImportedKubeConfigState extends JmhBenchmarkState {
+        @Param({"10", "100", "1000"})
+        public int contexts;
+
+        KubeConfigWriter writer;
+
+        @Override
+        public void setup() throws Exception {
+            writer = createWriter(BenchmarkCredentials.kubeconfig(CREDENTIALS_ID, contexts), "context-" + (contexts - 1));
+        }
+    }
+
+    /**
+     * Clears the caches of credentials material before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class NoCacheState {
+        @Setup(Level.Invocation)
+        public void invalidate() {
+            TokenCache.get().invalidateAll();
+            CertificateKeyCache.get().invalidateAll();
+            ParsedKubeConfigCache.get().invalidateAll();
+        }
+    }
+
+    @Benchmark
+    public Config buildFromCredentials(CredentialsState state) throws Exception {
+        return state.writer.buildKubeConfig();
+    }
+
+    @Benchmark
+    public Config buildFromImportedKubeConfig(ImportedKubeConfigState state) throws Exception {
+        return state.writer.buildKubeConfig();
+    }
+
+    @Benchmark
+    public Config buildFromCredentialsUncached(CredentialsState state, NoCacheState noCache) throws Exception {
+        return state.writer.buildKubeConfig();
+    }
+
+    @Benchmark
+    public Config buildFromImportedKubeConfigUncached(ImportedKubeConfigState state, NoCacheState noCache) throws Exception {
+        return state.writer.buildKubeConfig();
+    }
+}
@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.kubernetes.cli.benchmark;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.ConfigBuilder;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigMerger;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.KubeConfigSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializing kubeconfigs to YAML, and merging several of them into one.
+ *
+ * @author Max Laverse
+ */
+@JmhBenchmark
+public class KubeConfigSerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ConfigState {
+        @Param({"1", "10", "100", "1000"})
+        public int contexts;
+
+        Config config;
+        List<Config> configs;
+        PrintStream logger;
+
+        @Setup
+        public void setup() {
+            config = config("", contexts);
+            configs = new ArrayList<>();
+            // the second kubeconfig overlaps half of the first one
+            configs.add(config);
+            configs.add(config("", contexts / 2));
+            configs.add(config("other-", contexts));
+            logger = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            });
+        }
+
+        private static Config config(String prefix, int contexts) {
+            ConfigBuilder builder = new ConfigBuilder().withApiVersion("v1").withKind("Config");
+            for (int i = 0; i < contexts; i++) {
+                builder.addNewCluster().withName(prefix + "cluster-" + i)
+                        .withNewCluster().withServer("https://" + prefix + "cluster-" + i + ":6443").endCluster().endCluster()
+                        .addNewUser().withName(prefix + "user-" + i)
+                        .withNewUser().withToken("token-" + i).endUser().endUser()
+                        .addNewContext().withName(prefix + "context-" + i)
+                        .withNewContext().withCluster(prefix + "cluster-" + i).withUser(prefix + "user-" + i).endContext().endContext();
+            }
+            return builder.withCurrentContext(prefix + "context-0").build();
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(ConfigState state) throws Exception {
+        return KubeConfigSerializer.toBytes(state.config);
+    }
+
+    @Benchmark
+    public Config merge(ConfigState state) {
+        return KubeConfigMerger.merge(state.configs, state.logger);
+    }
+}
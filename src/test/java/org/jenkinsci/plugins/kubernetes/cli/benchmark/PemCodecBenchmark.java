@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.kubernetes.cli.benchmark;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkinsci.plugins.kubernetes.cli.kubeconfig.PemCodec;
+import org.jenkinsci.plugins.kubernetes.credentials.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Encoding certificate authorities for kubeconfigs, from a single Base64 body up to large corporate CA bundles,
+ * with the {@link PemCodec} and with the helpers of the kubernetes-credentials plugin it replaces.
+ *
+ * @author Max Laverse
+ */
+@JmhBenchmark
+public class PemCodecBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BundleState {
+        @Param({"1", "10", "150"})
+        public int certificates;
+
+        String body;
+        String bundle;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            Base64.Encoder encoder = Base64.getMimeEncoder(64, new byte[]{'\n'});
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < certificates; i++) {
+                // DER certificates of corporate CAs are usually between 1 and 2 KB
+                byte[] der = new byte[1200 + random.nextInt(800)];
+                random.nextBytes(der);
+                sb.append("# Subject: CN=Corporate CA ").append(i).append('\n')
+                        .append("-----BEGIN CERTIFICATE-----\n")
+                        .append(encoder.encodeToString(der))
+                        .append("\n-----END CERTIFICATE-----\n");
+                if (i == 0) {
+                    body = Base64.getEncoder().encodeToString(der);
+                }
+            }
+            bundle = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public String encodeBody(BundleState state) {
+        return PemCodec.encodeCertificateAuthorityData(state.body);
+    }
+
+    @Benchmark
+    public String encodeBodyWithHelpers(BundleState state) {
+        return Utils.encodeBase64(Utils.wrapCertificate(state.body));
+    }
+
+    @Benchmark
+    public String encodeBundle(BundleState state) {
+        return PemCodec.encodeCertificateAuthorityData(state.bundle);
+    }
+
+    @Benchmark
+    public String encodeBundleWithHelpers(BundleState state) {
+        return Utils.encodeBase64(Utils.wrapCertificate(state.bundle));
+    }
+
+    @Benchmark
+    public List<byte[]> decodeBundle(BundleState state) {
+        return PemCodec.decode(state.bundle, PemCodec.CERTIFICATE);
+    }
+}
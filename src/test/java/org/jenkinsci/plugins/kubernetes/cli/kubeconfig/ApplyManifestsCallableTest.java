@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.AbortException;
+import hudson.util.StreamTaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApplyManifestsCallableTest {
+    private static final String CRD_PATH = "/apis/apiextensions.k8s.io/v1/customresourcedefinitions/widgets.example.com";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> patches = new CopyOnWriteArrayList<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean crdApplied = new AtomicBoolean();
+    private final AtomicInteger crdChecks = new AtomicInteger();
+
+    @Before
+    public void startFakeApiServer() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if ("PATCH".equals(exchange.getRequestMethod())) {
+                JsonNode object = mapper.readTree(exchange.getRequestBody());
+                patches.add(path);
+                queries.add(exchange.getRequestURI().getQuery());
+                contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+                if (path.endsWith("/configmaps/broken")) {
+                    respond(exchange, 422, "{\"kind\":\"Status\",\"message\":\"data must be a map\"}");
+                    return;
+                }
+                if (path.equals(CRD_PATH)) {
+                    crdApplied.set(true);
+                }
+                respond(exchange, path.endsWith("/configmaps/settings") ? 200 : 201, mapper.writeValueAsString(object));
+                return;
+            }
+            switch (path) {
+                case "/api/v1":
+                    respond(exchange, 200, "{\"kind\":\"APIResourceList\",\"groupVersion\":\"v1\",\"resources\":["
+                            + "{\"name\":\"namespaces\",\"namespaced\":false,\"kind\":\"Namespace\"},"
+                            + "{\"name\":\"configmaps\",\"namespaced\":true,\"kind\":\"ConfigMap\"}]}");
+                    break;
+                case "/apis/apiextensions.k8s.io/v1":
+                    respond(exchange, 200, "{\"kind\":\"APIResourceList\",\"groupVersion\":\"apiextensions.k8s.io/v1\",\"resources\":["
+                            + "{\"name\":\"customresourcedefinitions\",\"namespaced\":false,\"kind\":\"CustomResourceDefinition\"},"
+                            + "{\"name\":\"customresourcedefinitions/status\",\"namespaced\":false,\"kind\":\"CustomResourceDefinition\"}]}");
+                    break;
+                case "/apis/example.com/v1":
+                    if (crdApplied.get()) {
+                        respond(exchange, 200, "{\"kind\":\"APIResourceList\",\"groupVersion\":\"example.com/v1\",\"resources\":["
+                                + "{\"name\":\"widgets\",\"namespaced\":true,\"kind\":\"Widget\"}]}");
+                    } else {
+                        respond(exchange, 404, "{\"kind\":\"Status\",\"message\":\"not found\"}");
+                    }
+                    break;
+                case CRD_PATH:
+                    // established on the second check
+                    String established = crdChecks.incrementAndGet() > 1 ? "True" : "False";
+                    respond(exchange, 200, "{\"status\":{\"conditions\":[{\"type\":\"Established\",\"status\":\"" + established + "\"}]}}");
+                    break;
+                default:
+                    respond(exchange, 404, "{\"kind\":\"Status\",\"message\":\"not found\"}");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopFakeApiServer() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private byte[] kubeConfig() {
+        return ("---\n" +
+                "apiVersion: \"v1\"\n" +
+                "clusters:\n" +
+                "- cluster:\n" +
+                "    server: \"http://127.0.0.1:" + server.getAddress().getPort() + "\"\n" +
+                "  name: \"k8s\"\n" +
+                "contexts:\n" +
+                "- context:\n" +
+                "    cluster: \"k8s\"\n" +
+                "    namespace: \"team-b\"\n" +
+                "    user: \"test-credential\"\n" +
+                "  name: \"k8s\"\n" +
+                "current-context: \"k8s\"\n" +
+                "users:\n" +
+                "- name: \"test-credential\"\n" +
+                "  user:\n" +
+                "    token: \"a-token\"\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private File workspace() throws IOException {
+        File workspace = tmp.newFolder("workspace");
+        File manifests = new File(workspace, "k8s");
+        assertTrue(manifests.mkdirs());
+        Files.write(new File(manifests, "app.yaml").toPath(), ("---\n" +
+                "apiVersion: v1\n" +
+                "kind: ConfigMap\n" +
+                "metadata:\n" +
+                "  name: settings\n" +
+                "  namespace: team-a\n" +
+                "data:\n" +
+                "  key: value\n" +
+                "---\n" +
+                "apiVersion: example.com/v1\n" +
+                "kind: Widget\n" +
+                "metadata:\n" +
+                "  name: w1\n" +
+                "---\n" +
+                "apiVersion: v1\n" +
+                "kind: Namespace\n" +
+                "metadata:\n" +
+                "  name: team-a\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(manifests, "crd.json").toPath(), ("{\"apiVersion\":\"apiextensions.k8s.io/v1\","
+                + "\"kind\":\"CustomResourceDefinition\",\"metadata\":{\"name\":\"widgets.example.com\"}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(manifests, "README.md").toPath(), "not a manifest".getBytes(StandardCharsets.UTF_8));
+        return workspace;
+    }
+
+    @Test
+    public void testApplyInDependencyOrder() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ApplyManifestsCallable.Result result = new ApplyManifestsCallable(kubeConfig(), "k8s", "jenkins", true, 2, 10,
+                new StreamTaskListener(log)).invoke(workspace(), null);
+
+        assertEquals(4, result.applied);
+        assertEquals(0, result.failed);
+        assertEquals(4, patches.size());
+        assertTrue(patches.subList(0, 2).contains("/api/v1/namespaces/team-a"));
+        assertTrue(patches.subList(0, 2).contains(CRD_PATH));
+        assertTrue(patches.subList(2, 4).contains("/api/v1/namespaces/team-a/configmaps/settings"));
+        // objects without namespace go to the one of the context
+        assertTrue(patches.subList(2, 4).contains("/apis/example.com/v1/namespaces/team-b/widgets/w1"));
+        assertTrue(crdChecks.get() >= 2);
+        for (String query : queries) {
+            assertEquals("fieldManager=jenkins&force=true", query);
+        }
+        for (String contentType : contentTypes) {
+            assertTrue(contentType.startsWith("application/apply-patch+yaml"));
+        }
+
+        String output = new String(log.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(output.contains("namespace/team-a created"));
+        assertTrue(output.contains("customresourcedefinition.apiextensions.k8s.io/widgets.example.com established"));
+        assertTrue(output.contains("configmap/settings serverside-applied"));
+        assertTrue(output.contains("widget.example.com/w1 created"));
+    }
+
+    @Test
+    public void testApplyReportsFailures() throws Exception {
+        File workspace = workspace();
+        Files.write(new File(workspace, "k8s/broken.yml").toPath(), ("apiVersion: v1\n" +
+                "kind: List\n" +
+                "items:\n" +
+                "- apiVersion: v1\n" +
+                "  kind: ConfigMap\n" +
+                "  metadata:\n" +
+                "    name: broken\n" +
+                "- apiVersion: unknown.example.com/v1\n" +
+                "  kind: Gadget\n" +
+                "  metadata:\n" +
+                "    name: g1\n").getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ApplyManifestsCallable.Result result = new ApplyManifestsCallable(kubeConfig(), "k8s/*.y*ml", "ci", false, 4, 10,
+                new StreamTaskListener(log)).invoke(workspace, null);
+
+        // the CRD is in a JSON file the pattern does not match, so widgets cannot be resolved either
+        assertEquals(2, result.applied);
+        assertEquals(3, result.failed);
+        for (String query : queries) {
+            assertEquals("fieldManager=ci", query);
+        }
+        String output = new String(log.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(output.contains("configmap/broken failed: data must be a map (HTTP 422)"));
+        assertTrue(output.contains("gadget.unknown.example.com/g1 failed: the API server does not serve Gadget in unknown.example.com/v1"));
+        assertTrue(output.contains("widget.example.com/w1 failed"));
+    }
+
+    @Test
+    public void testNoManifests() throws Exception {
+        try {
+            new ApplyManifestsCallable(kubeConfig(), "missing/*.yaml", "jenkins", false, 1, 10,
+                    new StreamTaskListener(new ByteArrayOutputStream())).invoke(workspace(), null);
+            fail("Expected an AbortException");
+        } catch (AbortException e) {
+            assertEquals("No manifests match 'missing/*.yaml'", e.getMessage());
+        }
+        assertTrue(patches.isEmpty());
+    }
+
+    @Test
+    public void testInvalidObject() throws Exception {
+        File workspace = workspace();
+        Files.write(new File(workspace, "k8s/invalid.yaml").toPath(), "kind: ConfigMap\nmetadata:\n  name: x\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            new ApplyManifestsCallable(kubeConfig(), "k8s", "jenkins", false, 1, 10,
+                    new StreamTaskListener(new ByteArrayOutputStream())).invoke(workspace, null);
+            fail("Expected an AbortException");
+        } catch (AbortException e) {
+            assertEquals("Object invalid.yaml#1 has no apiVersion, kind or metadata.name", e.getMessage());
+        }
+        // nothing is applied unless all the manifests are valid
+        assertTrue(patches.isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.AbortException;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ItemGroup;
+import hudson.util.Secret;
+import org.acegisecurity.Authentication;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CredentialsPrefetcherTest {
+    private static final String CREDENTIAL_ID = "cred1234";
+    private static final String SECONDARY_CREDENTIAL_ID = "cred9999";
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testConcurrentLookupsAreShared() throws Exception {
+        addCredentials(CREDENTIAL_ID);
+        FreeStyleBuild first = r.buildAndAssertSuccess(r.createFreeStyleProject("p"));
+        FreeStyleBuild second = r.buildAndAssertSuccess(first.getParent());
+
+        CredentialsPrefetcher prefetcher = new CredentialsPrefetcher(60_000, 60_000);
+        Map<String, Future<StandardCredentials>> firstLookups = prefetcher.prefetch(first, Arrays.asList(CREDENTIAL_ID, CREDENTIAL_ID, SECONDARY_CREDENTIAL_ID));
+        Map<String, Future<StandardCredentials>> secondLookups = prefetcher.prefetch(second, Collections.singletonList(CREDENTIAL_ID));
+
+        StandardCredentials credentials = prefetcher.await(CREDENTIAL_ID, firstLookups.get(CREDENTIAL_ID));
+        assertNotNull(credentials);
+        assertSame(credentials, prefetcher.await(CREDENTIAL_ID, secondLookups.get(CREDENTIAL_ID)));
+        assertNull(prefetcher.await(SECONDARY_CREDENTIAL_ID, firstLookups.get(SECONDARY_CREDENTIAL_ID)));
+        assertEquals(2, prefetcher.getLookupCount());
+        assertEquals(1, prefetcher.getSharedCount());
+    }
+
+    @Test
+    public void testLookupsAreNotSharedAcrossJobs() throws Exception {
+        addCredentials(CREDENTIAL_ID);
+        FreeStyleBuild first = r.buildAndAssertSuccess(r.createFreeStyleProject("p1"));
+        FreeStyleBuild second = r.buildAndAssertSuccess(r.createFreeStyleProject("p2"));
+
+        CredentialsPrefetcher prefetcher = new CredentialsPrefetcher(60_000, 60_000);
+        prefetcher.await(CREDENTIAL_ID, prefetcher.prefetch(first, Collections.singletonList(CREDENTIAL_ID)).get(CREDENTIAL_ID));
+        prefetcher.await(CREDENTIAL_ID, prefetcher.prefetch(second, Collections.singletonList(CREDENTIAL_ID)).get(CREDENTIAL_ID));
+        assertEquals(2, prefetcher.getLookupCount());
+        assertEquals(0, prefetcher.getSharedCount());
+    }
+
+    @Test
+    public void testExpiredLookupsAreNotShared() throws Exception {
+        addCredentials(CREDENTIAL_ID);
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject("p"));
+
+        CredentialsPrefetcher prefetcher = new CredentialsPrefetcher(0, 60_000);
+        prefetcher.await(CREDENTIAL_ID, prefetcher.prefetch(build, Collections.singletonList(CREDENTIAL_ID)).get(CREDENTIAL_ID));
+        Thread.sleep(10);
+        prefetcher.await(CREDENTIAL_ID, prefetcher.prefetch(build, Collections.singletonList(CREDENTIAL_ID)).get(CREDENTIAL_ID));
+        assertEquals(2, prefetcher.getLookupCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject("p");
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+        SlowCredentialsProvider.enabled = true;
+        try {
+            CredentialsPrefetcher prefetcher = new CredentialsPrefetcher(60_000, 100);
+            Future<StandardCredentials> lookup = prefetcher.prefetch(build, Collections.singletonList(CREDENTIAL_ID)).get(CREDENTIAL_ID);
+            prefetcher.await(CREDENTIAL_ID, lookup);
+            fail("lookup should have timed out");
+        } catch (AbortException e) {
+            assertEquals("Timed out after 100ms looking up credentials with id 'cred1234'", e.getMessage());
+        } finally {
+            SlowCredentialsProvider.enabled = false;
+        }
+    }
+
+    private void addCredentials(String id) throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next()
+                .addCredentials(Domain.global(), new StringCredentialsImpl(CredentialsScope.GLOBAL, id, "secret", Secret.fromString("s3cr3t")));
+    }
+
+    @TestExtension("testTimeout")
+    public static class SlowCredentialsProvider extends CredentialsProvider {
+        static volatile boolean enabled;
+
+        @Override
+        public <C extends Credentials> List<C> getCredentials(Class<C> type, ItemGroup itemGroup, Authentication authentication) {
+            if (enabled) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EvictKubectlCacheCallableTest {
+    private static final long NOW = TimeUnit.DAYS.toMillis(365);
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testMissingFolder() throws Exception {
+        EvictKubectlCacheCallable.Result result = EvictKubectlCacheCallable.evict(new File(tmp.getRoot(), "missing").toPath(), 0, 0, NOW);
+        assertEquals(0, result.evictedEntries);
+    }
+
+    @Test
+    public void testEvictsExpiredClusters() throws Exception {
+        Path root = tmp.getRoot().toPath();
+        Path stale = write(root.resolve("discovery/stale.example.com_6443/v1/serverresources.json"), 100, NOW - MAX_AGE - 1);
+        Path fresh = write(root.resolve("discovery/fresh.example.com_6443/v1/serverresources.json"), 100, NOW - MAX_AGE + 1000);
+
+        EvictKubectlCacheCallable.Result result = EvictKubectlCacheCallable.evict(root, 1024, MAX_AGE, NOW);
+
+        assertEquals(1, result.evictedEntries);
+        assertEquals(100, result.evictedBytes);
+        assertEquals(100, result.retainedBytes);
+        assertFalse(Files.exists(stale.getParent().getParent()));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    public void testClusterAgeIsItsNewestFile() throws Exception {
+        Path root = tmp.getRoot().toPath();
+        write(root.resolve("discovery/a.example.com_6443/servergroups.json"), 10, NOW - MAX_AGE - 1);
+        Path refreshed = write(root.resolve("discovery/a.example.com_6443/v1/serverresources.json"), 10, NOW - 1000);
+
+        EvictKubectlCacheCallable.Result result = EvictKubectlCacheCallable.evict(root, 1024, MAX_AGE, NOW);
+
+        assertEquals(0, result.evictedEntries);
+        assertTrue(Files.exists(refreshed));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyModifiedOverSize() throws Exception {
+        Path root = tmp.getRoot().toPath();
+        Path oldest = write(root.resolve("http/response-1"), 400, NOW - TimeUnit.HOURS.toMillis(3));
+        Path older = write(root.resolve("http/response-2"), 400, NOW - TimeUnit.HOURS.toMillis(2));
+        Path recent = write(root.resolve("discovery/a.example.com_6443/servergroups.json"), 400, NOW - TimeUnit.HOURS.toMillis(1));
+
+        EvictKubectlCacheCallable.Result result = EvictKubectlCacheCallable.evict(root, 1000, MAX_AGE, NOW);
+
+        assertEquals(1, result.evictedEntries);
+        assertEquals(800, result.retainedBytes);
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(older));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    public void testKeepsEntriesInUse() throws Exception {
+        Path root = tmp.getRoot().toPath();
+        Path inUse = write(root.resolve("http/response-1"), 400, NOW - 1000);
+
+        EvictKubectlCacheCallable.Result result = EvictKubectlCacheCallable.evict(root, 100, MAX_AGE, NOW);
+
+        assertEquals(0, result.evictedEntries);
+        assertEquals(400, result.retainedBytes);
+        assertTrue(Files.exists(inUse));
+    }
+
+    private static Path write(Path file, int size, long lastModified) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file;
+    }
+}
@@ -0,0 +1,184 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.ConfigBuilder;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedClusterBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedKubeConfigTest {
+    private static Config config(int contexts) {
+        ConfigBuilder builder = new ConfigBuilder().withApiVersion("v1").withKind("Config");
+        for (int i = 0; i < contexts; i++) {
+            builder.addNewCluster().withName("cluster-" + i).withNewCluster().withServer("https://cluster-" + i).endCluster().endCluster()
+                    .addNewUser().withName("user-" + i).withNewUser().withToken("token-" + i).endUser().endUser()
+                    .addNewContext().withName("context-" + i).withNewContext().withCluster("cluster-" + i).withUser("user-" + i).endContext().endContext();
+        }
+        return builder.withCurrentContext("context-0").build();
+    }
+
+    @Test
+    public void testLookups() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(500));
+
+        assertEquals("https://cluster-250", kubeConfig.getCluster("cluster-250").getCluster().getServer());
+        assertEquals("token-499", kubeConfig.getUser("user-499").getUser().getToken());
+        assertEquals("cluster-10", kubeConfig.getContext("context-10").getContext().getCluster());
+        assertNull(kubeConfig.getContext("context-500"));
+    }
+
+    @Test
+    public void testEditInPlace() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(3));
+        kubeConfig.getOrAddContext("context-1").setNamespace("my-namespace");
+        kubeConfig.setCurrentContext("context-1");
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(3, config.getContexts().size());
+        assertEquals("my-namespace", config.getContexts().get(1).getContext().getNamespace());
+        assertEquals("cluster-1", config.getContexts().get(1).getContext().getCluster());
+        assertEquals("context-1", config.getCurrentContext());
+    }
+
+    @Test
+    public void testAddMissingContext() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(1));
+        kubeConfig.getOrAddContext("new-context").setCluster("cluster-0");
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(2, config.getContexts().size());
+        assertEquals("new-context", config.getContexts().get(1).getName());
+        assertEquals("cluster-0", config.getContexts().get(1).getContext().getCluster());
+    }
+
+    @Test
+    public void testExistingClusterKept() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(1));
+        NamedCluster added = new NamedClusterBuilder().withName("cluster-0").withNewCluster().withServer("https://other").endCluster().build();
+        NamedCluster kept = kubeConfig.addClusterIfAbsent(added);
+        NamedCluster newCluster = new NamedClusterBuilder().withName("k8s").withNewCluster().withServer("https://k8s").endCluster().build();
+        assertSame(newCluster, kubeConfig.addClusterIfAbsent(newCluster));
+
+        Config config = kubeConfig.toConfig();
+        assertEquals("https://cluster-0", kept.getCluster().getServer());
+        assertEquals(2, config.getClusters().size());
+        assertEquals("https://k8s", config.getClusters().get(1).getCluster().getServer());
+    }
+
+    @Test
+    public void testDuplicatesKept() {
+        Config config = new ConfigBuilder(config(1))
+                .addNewContext().withName("context-0").withNewContext().withCluster("duplicate").endContext().endContext()
+                .build();
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config);
+        kubeConfig.getOrAddContext("context-0").setNamespace("my-namespace");
+
+        Config result = kubeConfig.toConfig();
+        assertEquals(2, result.getContexts().size());
+        assertEquals("my-namespace", result.getContexts().get(0).getContext().getNamespace());
+        assertNull(result.getContexts().get(1).getContext().getNamespace());
+    }
+
+    @Test
+    public void testEmptyKubeConfig() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(new Config());
+        kubeConfig.getOrAddContext("k8s").setNamespace("default");
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(1, config.getContexts().size());
+        assertEquals(0, config.getClusters().size());
+    }
+
+    @Test
+    public void testRetainContext() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(3));
+        assertTrue(kubeConfig.retainContext("context-1"));
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(1, config.getContexts().size());
+        assertEquals("context-1", config.getContexts().get(0).getName());
+        assertEquals(1, config.getClusters().size());
+        assertEquals("cluster-1", config.getClusters().get(0).getName());
+        assertEquals(1, config.getUsers().size());
+        assertEquals("user-1", config.getUsers().get(0).getName());
+        assertNull(config.getCurrentContext());
+    }
+
+    @Test
+    public void testRetainContextAfterClusterOverride() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(2));
+        kubeConfig.addClusterIfAbsent(new NamedClusterBuilder().withName("k8s").withNewCluster().withServer("https://k8s").endCluster().build());
+        kubeConfig.getOrAddContext("context-0").setCluster("k8s");
+        assertTrue(kubeConfig.retainContext("context-0"));
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(1, config.getClusters().size());
+        assertEquals("https://k8s", config.getClusters().get(0).getCluster().getServer());
+        assertEquals("user-0", config.getUsers().get(0).getName());
+        assertEquals("context-0", config.getCurrentContext());
+    }
+
+    @Test
+    public void testRetainContextKeepsFirstDuplicate() {
+        Config config = new ConfigBuilder(config(1))
+                .addNewContext().withName("context-0").withNewContext().withCluster("duplicate").endContext().endContext()
+                .build();
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config);
+        assertTrue(kubeConfig.retainContext("context-0"));
+
+        Config result = kubeConfig.toConfig();
+        assertEquals(1, result.getContexts().size());
+        assertEquals("cluster-0", result.getContexts().get(0).getContext().getCluster());
+    }
+
+    @Test
+    public void testRetainMissingContext() {
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.of(config(2));
+        assertFalse(kubeConfig.retainContext("context-2"));
+
+        Config config = kubeConfig.toConfig();
+        assertEquals(2, config.getContexts().size());
+        assertEquals(2, config.getClusters().size());
+        assertEquals("context-0", config.getCurrentContext());
+    }
+
+    @Test
+    public void testViewLeavesSharedKubeConfigUntouched() {
+        Config shared = config(2);
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.view(shared);
+        kubeConfig.addClusterIfAbsent(new NamedClusterBuilder().withName("k8s").withNewCluster().withServer("https://k8s").endCluster().build());
+        kubeConfig.getOrAddContext("context-0").setCluster("k8s");
+        kubeConfig.getOrAddContext("context-0").setNamespace("my-namespace");
+        kubeConfig.setCurrentContext("context-1");
+
+        Config config = kubeConfig.toConfig();
+        assertEquals("k8s", config.getContexts().get(0).getContext().getCluster());
+        assertEquals("my-namespace", config.getContexts().get(0).getContext().getNamespace());
+        assertEquals("user-0", config.getContexts().get(0).getContext().getUser());
+        assertSame(shared.getContexts().get(1), config.getContexts().get(1));
+        assertEquals(3, config.getClusters().size());
+        assertEquals("context-1", config.getCurrentContext());
+
+        assertEquals("cluster-0", shared.getContexts().get(0).getContext().getCluster());
+        assertNull(shared.getContexts().get(0).getContext().getNamespace());
+        assertEquals(2, shared.getClusters().size());
+        assertEquals("context-0", shared.getCurrentContext());
+    }
+
+    @Test
+    public void testViewPruned() {
+        Config shared = config(2);
+        IndexedKubeConfig kubeConfig = IndexedKubeConfig.view(shared);
+        assertTrue(kubeConfig.retainContext("context-1"));
+
+        assertEquals(1, kubeConfig.toConfig().getContexts().size());
+        assertEquals(2, shared.getContexts().size());
+        assertEquals("context-0", shared.getCurrentContext());
+    }
+}
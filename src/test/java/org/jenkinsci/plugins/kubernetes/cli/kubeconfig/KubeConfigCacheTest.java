@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.kubernetes.cli.utils.FakeBearerTokenCredentialImpl;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class KubeConfigCacheTest {
+    private static final String SERVER_URL = "https://localhost:6443";
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        KubeConfigCache cache = new KubeConfigCache(2);
+        cache.put("a", new byte[]{1});
+        cache.put("b", new byte[]{2});
+        assertNotNull(cache.getIfPresent("a"));
+        cache.put("c", new byte[]{3});
+
+        assertEquals(2, cache.size());
+        assertArrayEquals(new byte[]{1}, cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertArrayEquals(new byte[]{3}, cache.getIfPresent("c"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        KubeConfigCache cache = new KubeConfigCache(0);
+        cache.put("a", new byte[]{1});
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKeyFollowsSecretAndSettings() throws Exception {
+        String key = KubeConfigCache.key(secretCredential("s3cr3t"), SERVER_URL, null, null, null, null, false);
+        assertNotNull(key);
+        assertEquals(key, KubeConfigCache.key(secretCredential("s3cr3t"), SERVER_URL, null, null, null, null, false));
+        assertNotEquals(key, KubeConfigCache.key(secretCredential("rotated"), SERVER_URL, null, null, null, null, false));
+        assertNotEquals(key, KubeConfigCache.key(secretCredential("s3cr3t"), SERVER_URL, null, null, null, "ns", false));
+        assertNotEquals(key, KubeConfigCache.key(secretCredential("s3cr3t"), SERVER_URL, null, null, null, null, true));
+        assertNotEquals(key, KubeConfigCache.key(secretCredential("s3cr3t"), SERVER_URL, null, null, null, null, false, true));
+    }
+
+    @Test
+    public void testTokenProducersAreNotCached() throws Exception {
+        FakeBearerTokenCredentialImpl credentials = new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, "token", "token", "bob", "s3cr3t");
+        assertNull(KubeConfigCache.key(credentials, SERVER_URL, null, null, null, null, false));
+    }
+
+    @Test
+    public void testClearedOnCredentialsChange() throws Exception {
+        KubeConfigCache.get().put("a", new byte[]{1});
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), secretCredential("s3cr3t"));
+        assertEquals(0, KubeConfigCache.get().size());
+    }
+
+    private static StringCredentialsImpl secretCredential(String secret) {
+        return new StringCredentialsImpl(CredentialsScope.GLOBAL, "secret", "secret", Secret.fromString(secret));
+    }
+}
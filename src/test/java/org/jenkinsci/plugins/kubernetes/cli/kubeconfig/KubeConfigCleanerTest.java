@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.slaves.DumbSlave;
+import hudson.util.StreamTaskListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KubeConfigCleanerTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testDeletesAllFiles() throws Exception {
+        FilePath root = r.jenkins.getRootPath();
+        FilePath first = root.createTempFile("kubeconfig", "");
+        FilePath second = root.createTempFile("kubeconfig", "");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        new KubeConfigCleaner(10_000).cleanup(null, root, Arrays.asList(first.getRemote(), second.getRemote()), new StreamTaskListener(log));
+
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+        assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("kubectl configuration cleaned up"));
+    }
+
+    @Test
+    public void testRetriedWhenNodeIsBackOnline() throws Exception {
+        DumbSlave slave = r.createOnlineSlave();
+        FilePath root = slave.getRootPath();
+        FilePath config = root.createTempFile("kubeconfig", "");
+        List<String> paths = Collections.singletonList(config.getRemote());
+
+        Computer computer = slave.toComputer();
+        computer.disconnect(null).get();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        KubeConfigCleaner.get().cleanup(slave.getNodeName(), root, paths, new StreamTaskListener(log));
+
+        assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("kubectl configuration cleanup deferred until the node is back online"));
+        assertTrue(new File(config.getRemote()).exists());
+        assertEquals(1, KubeConfigCleaner.get().getPending(slave.getNodeName()).size());
+
+        computer.connect(false).get();
+        for (int i = 0; i < 300 && new File(config.getRemote()).exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(new File(config.getRemote()).exists());
+        for (int i = 0; i < 50 && !KubeConfigCleaner.get().getPending(slave.getNodeName()).isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(KubeConfigCleaner.get().getPending(slave.getNodeName()).isEmpty());
+    }
+}
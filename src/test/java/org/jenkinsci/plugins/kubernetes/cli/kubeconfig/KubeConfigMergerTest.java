@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.ConfigBuilder;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedContext;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+public class KubeConfigMergerTest {
+
+    private static Config config(String cluster, String server, String context, String user, String token) {
+        return new ConfigBuilder()
+                .withApiVersion("v1")
+                .withKind("Config")
+                .addNewCluster().withName(cluster).withNewCluster().withServer(server).endCluster().endCluster()
+                .addNewContext().withName(context).withNewContext().withCluster(cluster).withUser(user).endContext().endContext()
+                .addNewUser().withName(user).withNewUser().withToken(token).endUser().endUser()
+                .build();
+    }
+
+    @Test
+    public void testMergeDistinctEntries() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Config merged = KubeConfigMerger.merge(Arrays.asList(
+                config("c1", "https://c1", "ctx1", "u1", "t1"),
+                config("c2", "https://c2", "ctx2", "u2", "t2")), new PrintStream(out));
+
+        assertEquals(Arrays.asList("c1", "c2"), merged.getClusters().stream().map(NamedCluster::getName).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("ctx1", "ctx2"), merged.getContexts().stream().map(NamedContext::getName).collect(Collectors.toList()));
+        assertEquals(2, merged.getUsers().size());
+        assertEquals("v1", merged.getApiVersion());
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void testMergeKeepsFirstDefinition() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Config merged = KubeConfigMerger.merge(Arrays.asList(
+                config("k8s", "https://first", "k8s", "u1", "t1"),
+                config("k8s", "https://second", "k8s", "u2", "t2")), new PrintStream(out));
+
+        assertEquals(1, merged.getClusters().size());
+        assertEquals("https://first", merged.getClusters().get(0).getCluster().getServer());
+        assertEquals(1, merged.getContexts().size());
+        assertEquals("u1", merged.getContexts().get(0).getContext().getUser());
+        assertEquals(2, merged.getUsers().size());
+        assertThat(out.toString(), containsString("cluster 'k8s' is defined more than once"));
+        assertThat(out.toString(), containsString("context 'k8s' is defined more than once"));
+    }
+
+    @Test
+    public void testMergeIgnoresIdenticalDuplicates() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Config merged = KubeConfigMerger.merge(Arrays.asList(
+                config("k8s", "https://same", "k8s", "u1", "t1"),
+                config("k8s", "https://same", "k8s", "u1", "t1")), new PrintStream(out));
+
+        assertEquals(1, merged.getClusters().size());
+        assertEquals(1, merged.getContexts().size());
+        assertEquals(1, merged.getUsers().size());
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void testMergeFirstCurrentContextWins() throws Exception {
+        Config first = new ConfigBuilder(config("c1", "https://c1", "ctx1", "u1", "t1")).withCurrentContext("").build();
+        Config second = new ConfigBuilder(config("c2", "https://c2", "ctx2", "u2", "t2")).withCurrentContext("ctx2").build();
+        Config third = new ConfigBuilder(config("c3", "https://c3", "ctx3", "u3", "t3")).withCurrentContext("ctx3").build();
+
+        Config merged = KubeConfigMerger.merge(Arrays.asList(first, second, third), new PrintStream(new ByteArrayOutputStream()));
+        assertEquals("ctx2", merged.getCurrentContext());
+    }
+}
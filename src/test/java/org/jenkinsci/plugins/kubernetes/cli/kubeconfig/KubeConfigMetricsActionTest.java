@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import com.gargoylesoftware.htmlunit.Page;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.kubernetes.cli.KubectlBuildWrapper;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KubeConfigMetricsActionTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void setUpSecurity() {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.ADMINISTER).everywhere().to("admin")
+                .grant(Jenkins.READ).everywhere().to("bob"));
+    }
+
+    @Test
+    public void testMetricsOfABuild() throws Exception {
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(),
+                new StringCredentialsImpl(CredentialsScope.GLOBAL, "metrics-credentials", null, Secret.fromString("s3cr3t")));
+        FreeStyleProject p = r.createFreeStyleProject();
+        KubectlBuildWrapper bw = new KubectlBuildWrapper();
+        bw.credentialsId = "metrics-credentials";
+        bw.serverUrl = "https://metrics-cluster:6443";
+        p.getBuildWrappersList().add(bw);
+        r.buildAndAssertSuccess(p);
+
+        Page page = r.createWebClient().login("admin").goTo(KubeConfigMetricsAction.URL_NAME + "/", "application/json");
+        JSONObject json = JSONObject.fromObject(page.getWebResponse().getContentAsString());
+
+        assertTrue(json.getJSONObject("phases").getJSONObject("setup").getLong("count") >= 1);
+        assertTrue(json.getJSONObject("phases").getJSONObject("credentialsLookup").getLong("count") >= 1);
+        assertTrue(json.getJSONObject("clusters").getJSONObject("https://metrics-cluster:6443").getLong("count") >= 1);
+        assertTrue(json.getJSONObject("nodes").has("master"));
+        assertTrue(json.getJSONObject("files").has("leaked"));
+    }
+
+    @Test
+    public void testAdministratorsOnly() throws Exception {
+        JenkinsRule.WebClient wc = r.createWebClient().login("bob");
+        wc.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        Page page = wc.goTo(KubeConfigMetricsAction.URL_NAME + "/", null);
+        assertEquals(403, page.getWebResponse().getStatusCode());
+    }
+}
@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.kubernetes.cli.utils.FakeBearerTokenCredentialImpl;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KubeConfigMetricsTest {
+    @Test
+    public void testPercentiles() {
+        KubeConfigMetrics.Timer timer = new KubeConfigMetrics.Timer();
+        for (int i = 1; i <= 100; i++) {
+            timer.update(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        KubeConfigMetrics.Snapshot snapshot = timer.getSnapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50.5, snapshot.getMean(), 0.001);
+        assertEquals(50, snapshot.getPercentile(0.5), 0.001);
+        assertEquals(99, snapshot.getPercentile(0.99), 0.001);
+        assertEquals(100, snapshot.getMax(), 0.001);
+    }
+
+    @Test
+    public void testPercentilesOfRecentSamples() {
+        KubeConfigMetrics.Timer timer = new KubeConfigMetrics.Timer();
+        for (int i = 0; i < KubeConfigMetrics.RESERVOIR_SIZE; i++) {
+            timer.update(TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+        for (int i = 0; i < KubeConfigMetrics.RESERVOIR_SIZE; i++) {
+            timer.update(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        KubeConfigMetrics.Snapshot snapshot = timer.getSnapshot();
+        assertEquals(2 * KubeConfigMetrics.RESERVOIR_SIZE, snapshot.getCount());
+        assertEquals(1, snapshot.getPercentile(0.99), 0.001);
+        assertEquals(1000, snapshot.getMax(), 0.001);
+    }
+
+    @Test
+    public void testProxy() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(10);
+        metrics.recordProxy(new long[]{TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(4)}, 1, 1, 0);
+        metrics.recordProxy(new long[]{TimeUnit.MILLISECONDS.toNanos(6)}, 2, 0, 1);
+
+        KubeConfigMetrics.Snapshot snapshot = metrics.getTimer(KubeConfigMetrics.Phase.PROXY_REQUEST).getSnapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(4, snapshot.getMean(), 0.001);
+        assertEquals(3, metrics.getProxyConnectionCount());
+        assertEquals(1, metrics.getProxyHttp2ConnectionCount());
+        assertEquals(1, metrics.getProxyErrorCount());
+    }
+
+    @Test
+    public void testEmptyTimer() {
+        KubeConfigMetrics.Snapshot snapshot = new KubeConfigMetrics.Timer().getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getPercentile(0.99), 0);
+    }
+
+    @Test
+    public void testSetupRecordedPerCluster() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(10);
+        metrics.recordSetup(Arrays.asList("https://a", "https://b"), System.nanoTime());
+        metrics.recordSetup(Collections.singletonList("https://a"), System.nanoTime());
+
+        assertEquals(2, metrics.getTimer(KubeConfigMetrics.Phase.SETUP).getSnapshot().getCount());
+        Map<String, KubeConfigMetrics.Timer> clusters = metrics.getClusterTimers();
+        assertEquals(2, clusters.get("https://a").getSnapshot().getCount());
+        assertEquals(1, clusters.get("https://b").getSnapshot().getCount());
+    }
+
+    @Test
+    public void testSeriesAreBounded() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(2);
+        List<String> created = new ArrayList<>();
+        metrics.listenSeries((name, timer) -> created.add(name));
+
+        for (int i = 0; i < 5; i++) {
+            metrics.recordRemoteWrite("node-" + i, System.nanoTime());
+        }
+        metrics.recordRemoteWrite("", System.nanoTime());
+
+        Map<String, KubeConfigMetrics.Timer> nodes = metrics.getNodeTimers();
+        assertEquals(3, nodes.size());
+        assertEquals(4, nodes.get(KubeConfigMetrics.OTHER).getSnapshot().getCount());
+        assertEquals(Arrays.asList("node.node-0.remoteWrite", "node.node-1.remoteWrite", "node.other.remoteWrite"), created);
+        assertEquals(6, metrics.getTimer(KubeConfigMetrics.Phase.REMOTE_WRITE).getSnapshot().getCount());
+    }
+
+    @Test
+    public void testExistingSeriesReturnedToListener() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(10);
+        metrics.recordSetup(Collections.singletonList("https://a"), System.nanoTime());
+        metrics.recordRemoteWrite("node", System.nanoTime());
+
+        Map<String, KubeConfigMetrics.Timer> existing = metrics.listenSeries((name, timer) -> {
+        });
+        assertTrue(existing.containsKey("cluster.a.setup"));
+        assertTrue(existing.containsKey("node.node.remoteWrite"));
+    }
+
+    @Test
+    public void testSeriesNamesAreNormalized() {
+        assertEquals("api_example_com_6443", KubeConfigMetrics.normalize("https://api.example.com:6443/some/path"));
+        assertEquals("api_example_com", KubeConfigMetrics.normalize("https://api.example.com"));
+        assertEquals("credentials_my-kubeconfig", KubeConfigMetrics.normalize("credentials:my-kubeconfig"));
+        assertEquals("agent_1", KubeConfigMetrics.normalize("agent.1"));
+    }
+
+    @Test
+    public void testListenerGetsDurations() {
+        KubeConfigMetrics.Timer timer = new KubeConfigMetrics.Timer();
+        timer.update(1);
+        List<Long> durations = new ArrayList<>();
+        timer.listen(durations::add);
+        timer.update(2);
+        timer.update(3);
+
+        assertEquals(Arrays.asList(2L, 3L), durations);
+        assertEquals(3, timer.getSnapshot().getCount());
+    }
+
+    @Test
+    public void testFailuresByCredentialsType() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(10);
+        metrics.recordFailure(null);
+        metrics.recordFailure(new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "1", null, "bob", "s3cr3t"));
+        metrics.recordFailure(new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, "2", null, "bob", "s3cr3t"));
+        metrics.recordFailure(new StringCredentialsImpl(CredentialsScope.GLOBAL, "3", null, Secret.fromString("s3cr3t")));
+
+        assertEquals(1, metrics.getFailureCount(KubeConfigMetrics.CredentialsType.LOOKUP));
+        assertEquals(1, metrics.getFailureCount(KubeConfigMetrics.CredentialsType.USERNAME_PASSWORD));
+        assertEquals(1, metrics.getFailureCount(KubeConfigMetrics.CredentialsType.TOKEN));
+        assertEquals(1, metrics.getFailureCount(KubeConfigMetrics.CredentialsType.SECRET_TEXT));
+        assertEquals(0, metrics.getFailureCount(KubeConfigMetrics.CredentialsType.CERTIFICATE));
+    }
+
+    @Test
+    public void testLeakedFiles() {
+        KubeConfigMetrics metrics = new KubeConfigMetrics(10);
+        metrics.recordLeakedFiles(3);
+        metrics.recordLeakedFiles(1);
+        assertEquals(4, metrics.getLeakedFileCount());
+    }
+}
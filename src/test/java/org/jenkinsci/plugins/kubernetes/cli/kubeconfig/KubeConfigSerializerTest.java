@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.api.model.ConfigBuilder;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class KubeConfigSerializerTest {
+    private static final Config CONFIG = new ConfigBuilder()
+            .withApiVersion("v1")
+            .withKind("Config")
+            .addNewCluster().withName("k8s").withNewCluster().withServer("https://localhost:6443").endCluster().endCluster()
+            .addNewContext().withName("k8s").withNewContext().withCluster("k8s").withUser("bob").endContext().endContext()
+            .withCurrentContext("k8s")
+            .build();
+
+    @Test
+    public void testSameOutputAsMapper() throws Exception {
+        String expected = SerializationUtils.getMapper().writeValueAsString(CONFIG);
+        assertEquals(expected, new String(KubeConfigSerializer.toBytes(CONFIG), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamedOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KubeConfigSerializer.write(CONFIG, out);
+        assertArrayEquals(KubeConfigSerializer.toBytes(CONFIG), out.toByteArray());
+    }
+
+    @Test
+    public void testBoundedOutput() throws Exception {
+        byte[] full = KubeConfigSerializer.toBytes(CONFIG);
+        assertArrayEquals(full, KubeConfigSerializer.toBytes(CONFIG, full.length));
+        assertNull(KubeConfigSerializer.toBytes(CONFIG, full.length - 1));
+    }
+}
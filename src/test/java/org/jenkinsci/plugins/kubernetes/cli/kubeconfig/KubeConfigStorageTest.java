@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.slaves.DumbSlave;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class KubeConfigStorageTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testTemporaryFolderByDefault() throws Exception {
+        DumbSlave slave = r.createOnlineSlave();
+        assertEquals(Collections.emptyList(), KubeConfigStorage.getMemoryBackedFolders(slave.toComputer()));
+    }
+
+    @Test
+    public void testSelectedByLabel() throws Exception {
+        DumbSlave slave = r.createOnlineSlave(r.jenkins.getLabel("ram"));
+        DumbSlave other = r.createOnlineSlave(r.jenkins.getLabel("disk"));
+        KubeConfigStorageConfiguration.get().memoryBackedLabel = "ram";
+
+        assertEquals(Arrays.asList("/dev/shm", "${XDG_RUNTIME_DIR}"), KubeConfigStorage.getMemoryBackedFolders(slave.toComputer()));
+        assertEquals(Collections.emptyList(), KubeConfigStorage.getMemoryBackedFolders(other.toComputer()));
+    }
+
+    @Test
+    public void testSelectedByNodeProperty() throws Exception {
+        DumbSlave slave = r.createOnlineSlave(r.jenkins.getLabel("ram"));
+        KubeConfigStorageConfiguration.get().memoryBackedLabel = "ram";
+
+        KubeConfigStorageNodeProperty property = new KubeConfigStorageNodeProperty();
+        property.memoryBackedFolders = "/mnt/ram\n";
+        slave.getNodeProperties().add(property);
+        assertEquals(Collections.singletonList("/mnt/ram"), KubeConfigStorage.getMemoryBackedFolders(slave.toComputer()));
+
+        property.memoryBacked = false;
+        assertEquals(Collections.emptyList(), KubeConfigStorage.getMemoryBackedFolders(slave.toComputer()));
+    }
+}
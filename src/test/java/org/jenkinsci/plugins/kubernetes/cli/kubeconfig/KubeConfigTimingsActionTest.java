@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class KubeConfigTimingsActionTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testRecordCleanup() throws Exception {
+        FreeStyleBuild b = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        assertNull(b.getAction(KubeConfigTimingsAction.class));
+
+        int first = KubeConfigTimingsAction.record(b, invocation());
+        int second = KubeConfigTimingsAction.record(b, invocation());
+        KubeConfigTimingsAction.recordCleanup(b, second, System.nanoTime());
+
+        KubeConfigTimingsAction action = b.getAction(KubeConfigTimingsAction.class);
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(-1, action.getInvocations().get(0).getCleanup());
+        assertEquals(0, action.getInvocations().get(1).getCleanup());
+    }
+
+    @Test
+    public void testBoundedInvocations() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+        for (int i = 0; i < KubeConfigTimingsAction.MAX_INVOCATIONS + 3; i++) {
+            KubeConfigTimingsAction.record(b, invocation());
+        }
+        // ignored
+        KubeConfigTimingsAction.recordCleanup(b, KubeConfigTimingsAction.MAX_INVOCATIONS + 1, System.nanoTime());
+
+        KubeConfigTimingsAction action = b.getAction(KubeConfigTimingsAction.class);
+        assertEquals(KubeConfigTimingsAction.MAX_INVOCATIONS, action.getInvocations().size());
+        assertEquals(3, action.getDropped());
+    }
+
+    @Test
+    public void testPersisted() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+        KubeConfigTimingsAction.record(b, invocation());
+        b.save();
+
+        b.reload();
+        KubeConfigInvocation invocation = b.getAction(KubeConfigTimingsAction.class).getInvocations().get(0);
+        assertEquals("withKubeConfig", invocation.getStep());
+        assertEquals(12, invocation.getSetup());
+        assertEquals("cred1234", invocation.getCredentials().get(0).getCredentialsId());
+        assertEquals(-1, invocation.getCredentials().get(0).getSerialization());
+    }
+
+    private static KubeConfigInvocation invocation() {
+        CredentialTimings timings = new CredentialTimings("cred1234");
+        timings.record(KubeConfigMetrics.Phase.CREDENTIALS_LOOKUP, 5_000_000);
+        return new KubeConfigInvocation("withKubeConfig", "", System.currentTimeMillis(), 12, 3, Collections.singletonList(timings));
+    }
+}
@@ -0,0 +1,217 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.AbortException;
+import hudson.util.StreamTaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ListResourcesCallableTest {
+    private static final int PODS = 5;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<Map<String, String>> lists = new CopyOnWriteArrayList<>();
+    private final List<String> accepts = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startFakeApiServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/api/v1")) {
+                respond(exchange, 200, "{\"kind\":\"APIResourceList\",\"groupVersion\":\"v1\",\"resources\":["
+                        + "{\"name\":\"pods\",\"namespaced\":true,\"kind\":\"Pod\"}]}");
+                return;
+            }
+            if (!path.equals("/api/v1/namespaces/team-a/pods") && !path.equals("/api/v1/pods")) {
+                respond(exchange, 404, "{\"kind\":\"Status\",\"message\":\"not found\"}");
+                return;
+            }
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            query.put("path", path);
+            lists.add(query);
+            accepts.add(exchange.getRequestHeaders().getFirst("Accept"));
+            if ("expired".equals(query.get("continue"))) {
+                respond(exchange, 410, "{\"kind\":\"Status\",\"message\":\"The provided continue parameter is too old\"}");
+                return;
+            }
+
+            int limit = Integer.parseInt(query.get("limit"));
+            int from = query.containsKey("continue") ? Integer.parseInt(query.get("continue")) : 0;
+            int to = Math.min(PODS, from + limit);
+            StringBuilder body = new StringBuilder("{\"kind\":\"PodList\",\"apiVersion\":\"v1\",\"metadata\":{\"resourceVersion\":\"42\"");
+            if (to < PODS) {
+                body.append(",\"continue\":\"").append(to == 4 ? "expired" : String.valueOf(to)).append("\"");
+            }
+            body.append("},\"items\":[");
+            for (int i = from; i < to; i++) {
+                body.append(i == from ? "" : ",")
+                        .append("{\"metadata\":{\"name\":\"pod-").append(i).append("\",\"labels\":{\"app.kubernetes.io/name\":\"web\"}},")
+                        .append("\"spec\":{\"containers\":[{\"name\":\"main\"}]},")
+                        .append("\"status\":{\"phase\":\"Running\",\"ready\":").append(i % 2 == 0).append("}}");
+            }
+            body.append("]}");
+            respond(exchange, 200, body.toString());
+        });
+        server.start();
+    }
+
+    @After
+    public void stopFakeApiServer() {
+        server.stop(0);
+    }
+
+    private static Map<String, String> query(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : rawQuery.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], URLDecoder.decode(pair[1], "UTF-8"));
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private byte[] kubeConfig() {
+        return ("---\n" +
+                "apiVersion: \"v1\"\n" +
+                "clusters:\n" +
+                "- cluster:\n" +
+                "    server: \"http://127.0.0.1:" + server.getAddress().getPort() + "\"\n" +
+                "  name: \"k8s\"\n" +
+                "contexts:\n" +
+                "- context:\n" +
+                "    cluster: \"k8s\"\n" +
+                "    namespace: \"team-a\"\n" +
+                "    user: \"test-credential\"\n" +
+                "  name: \"k8s\"\n" +
+                "current-context: \"k8s\"\n" +
+                "users:\n" +
+                "- name: \"test-credential\"\n" +
+                "  user:\n" +
+                "    token: \"a-token\"\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testListToFile() throws Exception {
+        File workspace = tmp.newFolder("workspace");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ListResourcesCallable.Result result = new ListResourcesCallable(kubeConfig(), "v1", "Pod", false, "app=web",
+                "status.phase=Running", 3, false, "out/pods.json", null, new StreamTaskListener(log)).invoke(workspace, null);
+        assertEquals(PODS, result.items);
+        assertEquals(2, result.pages);
+        assertNull(result.selected);
+
+        assertEquals(2, lists.size());
+        for (Map<String, String> query : lists) {
+            assertEquals("/api/v1/namespaces/team-a/pods", query.get("path"));
+            assertEquals("app=web", query.get("labelSelector"));
+            assertEquals("status.phase=Running", query.get("fieldSelector"));
+            assertEquals("3", query.get("limit"));
+        }
+        assertFalse(lists.get(0).containsKey("continue"));
+        assertEquals("3", lists.get(1).get("continue"));
+
+        JsonNode list = new ObjectMapper().readTree(new File(workspace, "out/pods.json"));
+        assertEquals("List", list.get("kind").asText());
+        assertEquals(PODS, list.get("items").size());
+        for (int i = 0; i < PODS; i++) {
+            JsonNode pod = list.get("items").get(i);
+            assertEquals("pod-" + i, pod.get("metadata").get("name").asText());
+            assertEquals("Pod", pod.get("kind").asText());
+            assertEquals("v1", pod.get("apiVersion").asText());
+            assertEquals("main", pod.get("spec").get("containers").get(0).get("name").asText());
+        }
+        assertTrue(new String(log.toByteArray(), StandardCharsets.UTF_8).contains("Listed 5 Pod objects in 2 pages"));
+    }
+
+    @Test
+    public void testExpiredContinueToken() throws Exception {
+        File workspace = tmp.newFolder("workspace");
+        try {
+            // the continue token of the second page has expired
+            new ListResourcesCallable(kubeConfig(), "v1", "Pod", false, null, null, 2, false, "pods.json", null,
+                    new StreamTaskListener(new ByteArrayOutputStream())).invoke(workspace, null);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("The provided continue parameter is too old (HTTP 410)", e.getMessage());
+        }
+        assertEquals(3, lists.size());
+        assertFalse(new File(workspace, "pods.json").exists());
+    }
+
+    @Test
+    public void testListFields() throws Exception {
+        ListResourcesCallable.Result result = new ListResourcesCallable(kubeConfig(), "v1", "Pod", true, null, null,
+                5, true, null, Arrays.asList("metadata.name", "status.ready", "/metadata/labels/app.kubernetes.io~1name", "spec.nodeName"),
+                new StreamTaskListener(new ByteArrayOutputStream())).invoke(tmp.newFolder("workspace"), null);
+
+        assertEquals(PODS, result.items);
+        assertEquals(1, result.pages);
+        assertEquals("/api/v1/pods", lists.get(0).get("path"));
+        assertFalse(lists.get(0).containsKey("labelSelector"));
+        assertEquals(ListResourcesCallable.METADATA_ONLY, accepts.get(0));
+
+        assertEquals(PODS, result.selected.size());
+        Map<String, Object> first = result.selected.get(0);
+        assertEquals("pod-0", first.get("metadata.name"));
+        assertEquals(true, first.get("status.ready"));
+        assertEquals("web", first.get("/metadata/labels/app.kubernetes.io~1name"));
+        assertTrue(first.containsKey("spec.nodeName"));
+        assertNull(first.get("spec.nodeName"));
+        assertEquals(false, result.selected.get(1).get("status.ready"));
+    }
+
+    @Test
+    public void testUnknownKind() throws Exception {
+        try {
+            new ListResourcesCallable(kubeConfig(), "v1", "Gadget", false, null, null, 5, false, "gadgets.json", null,
+                    new StreamTaskListener(new ByteArrayOutputStream())).invoke(tmp.newFolder("workspace"), null);
+            fail("Expected an AbortException");
+        } catch (AbortException e) {
+            assertEquals("The API server does not serve Gadget in v1", e.getMessage());
+        }
+        assertTrue(lists.isEmpty());
+    }
+
+    @Test
+    public void testPointer() throws Exception {
+        assertEquals("/status/phase", ListResourcesCallable.pointer("status.phase").toString());
+        assertEquals("/metadata/labels/a.b~1c", ListResourcesCallable.pointer("/metadata/labels/a.b~1c").toString());
+    }
+}
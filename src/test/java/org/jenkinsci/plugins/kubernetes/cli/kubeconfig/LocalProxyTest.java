@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.kubernetes.api.model.Config;
+import io.fabric8.kubernetes.client.internal.SerializationUtils;
+import okhttp3.OkHttpClient;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalProxyTest {
+    private static final String TOKEN = "an-upstream-token";
+    private static final long WATCH_IDLE_MILLIS = 500;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer upstream;
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private List<String> proxyIds;
+
+    @Before
+    public void startFakeApiServer() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        upstream.createContext("/watch", exchange -> {
+            // a watch staying idle for longer than the read timeout of the upstream client
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{\"type\":\"ADDED\"}\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(3 * WATCH_IDLE_MILLIS);
+                out.write("{\"type\":\"MODIFIED\"}\n".getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        upstream.createContext("/", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            try (InputStream in = exchange.getRequestBody()) {
+                bodies.add(IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+            byte[] bytes = ("{\"path\":\"" + exchange.getRequestURI() + "\",\"method\":\"" + exchange.getRequestMethod() + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        upstream.start();
+    }
+
+    @After
+    public void stop() {
+        if (proxyIds != null) {
+            new StopLocalProxiesCallable(proxyIds).call();
+        }
+        upstream.stop(0);
+    }
+
+    @Test
+    public void testProxy() throws Exception {
+        File kubeConfigFile = tmp.newFile("kubeconfig");
+        Files.write(kubeConfigFile.toPath(), ("---\n" +
+                "apiVersion: \"v1\"\n" +
+                "clusters:\n" +
+                "- cluster:\n" +
+                "    server: \"http://127.0.0.1:" + upstream.getAddress().getPort() + "\"\n" +
+                "  name: \"k8s\"\n" +
+                "contexts:\n" +
+                "- context:\n" +
+                "    cluster: \"k8s\"\n" +
+                "    user: \"test-credential\"\n" +
+                "  name: \"k8s\"\n" +
+                "current-context: \"k8s\"\n" +
+                "users:\n" +
+                "- name: \"test-credential\"\n" +
+                "  user:\n" +
+                "    token: \"" + TOKEN + "\"\n").getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> proxies = new StartLocalProxiesCallable(Collections.singletonList(kubeConfigFile.getPath())).call();
+        proxyIds = new ArrayList<>(proxies.keySet());
+        assertEquals(1, proxyIds.size());
+        assertEquals("http://127.0.0.1:" + upstream.getAddress().getPort(), proxies.get(proxyIds.get(0)));
+
+        Config kubeConfig = SerializationUtils.getMapper().readValue(kubeConfigFile, Config.class);
+        String server = kubeConfig.getClusters().get(0).getCluster().getServer();
+        String localToken = kubeConfig.getUsers().get(0).getUser().getToken();
+        assertTrue(server.startsWith("http://127.0.0.1:"));
+        assertNotEquals(TOKEN, localToken);
+        assertNull(kubeConfig.getClusters().get(0).getCluster().getCertificateAuthorityData());
+
+        HttpURLConnection get = open(server + "/api/v1/namespaces/default/pods?limit=10", localToken);
+        assertEquals(200, get.getResponseCode());
+        assertEquals("{\"path\":\"/api/v1/namespaces/default/pods?limit=10\",\"method\":\"GET\"}", read(get));
+
+        HttpURLConnection post = open(server + "/api/v1/namespaces/default/configmaps", localToken);
+        post.setRequestMethod("POST");
+        post.setDoOutput(true);
+        post.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = post.getOutputStream()) {
+            out.write("{\"kind\":\"ConfigMap\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, post.getResponseCode());
+        read(post);
+
+        assertEquals(401, open(server + "/api", "a-wrong-token").getResponseCode());
+
+        assertEquals(2, authorizations.size());
+        for (String authorization : authorizations) {
+            assertEquals("Bearer " + TOKEN, authorization);
+        }
+        assertEquals("{\"kind\":\"ConfigMap\"}", bodies.get(1));
+
+        List<LocalProxy.Stats> stats = new StopLocalProxiesCallable(proxyIds).call();
+        proxyIds = null;
+        assertEquals(1, stats.size());
+        assertEquals(3, stats.get(0).requests);
+        assertEquals(1, stats.get(0).errors);
+        assertEquals(1, stats.get(0).connections);
+        assertEquals(2, stats.get(0).latencies.length);
+        assertEquals(0, LocalProxy.count());
+    }
+
+    @Test
+    public void testIdleWatchOutlivesReadTimeout() throws Exception {
+        LocalProxy proxy = LocalProxy.start("http://127.0.0.1:" + upstream.getAddress().getPort());
+        proxyIds = Collections.singletonList(proxy.getId());
+        String localToken = LocalProxy.newToken();
+        proxy.addUser(localToken, new OkHttpClient.Builder().readTimeout(WATCH_IDLE_MILLIS, TimeUnit.MILLISECONDS).build());
+
+        HttpURLConnection watch = open(proxy.getUrl() + "/watch/pods", localToken);
+        assertEquals(200, watch.getResponseCode());
+        assertEquals("{\"type\":\"ADDED\"}\n{\"type\":\"MODIFIED\"}\n", read(watch));
+    }
+
+    private static HttpURLConnection open(String url, String token) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Authorization", "Bearer " + token);
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws Exception {
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
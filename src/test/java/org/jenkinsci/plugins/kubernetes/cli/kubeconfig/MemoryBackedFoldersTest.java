@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class MemoryBackedFoldersTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testExpand() {
+        Map<String, String> env = new HashMap<>();
+        env.put("XDG_RUNTIME_DIR", "/run/user/1000");
+
+        assertEquals("/run/user/1000", MemoryBackedFolders.expand("${XDG_RUNTIME_DIR}", env));
+        assertEquals("/run/user/1000/kube", MemoryBackedFolders.expand(" $XDG_RUNTIME_DIR/kube ", env));
+        assertEquals("/dev/shm", MemoryBackedFolders.expand("/dev/shm", env));
+        assertNull(MemoryBackedFolders.expand("${MISSING}/kube", env));
+    }
+
+    @Test
+    public void testSkipsUnusableFolders() {
+        assertNull(MemoryBackedFolders.find(Arrays.asList(
+                "${KUBERNETES_CLI_PLUGIN_MISSING_VARIABLE}",
+                new File(tmp.getRoot(), "missing").getPath())));
+    }
+
+    @Test
+    public void testUsesSharedMemory() throws Exception {
+        assumeTrue(new File("/dev/shm").isDirectory() && "tmpfs".equals(Files.getFileStore(Paths.get("/dev/shm")).type()));
+
+        String folder = MemoryBackedFolders.find(Collections.singletonList("/dev/shm"));
+
+        assertEquals("/dev/shm", new File(folder).getParent());
+        assertTrue(new File(folder).getName().startsWith("kubernetes-cli-plugin-"));
+        assertTrue(new File(folder).isDirectory());
+    }
+}
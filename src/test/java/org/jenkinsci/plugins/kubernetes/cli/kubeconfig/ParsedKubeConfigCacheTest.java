@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SecretBytes;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import hudson.util.Secret;
+import io.fabric8.kubernetes.api.model.Config;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParsedKubeConfigCacheTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testBoundedByRetainedBytes() throws Exception {
+        ParsedKubeConfigCache cache = new ParsedKubeConfigCache(100);
+        ParsedKubeConfigCache.Key a = ParsedKubeConfigCache.key(fileCredential("a", 40));
+        ParsedKubeConfigCache.Key b = ParsedKubeConfigCache.key(fileCredential("b", 40));
+        ParsedKubeConfigCache.Key c = ParsedKubeConfigCache.key(fileCredential("c", 40));
+        Config configA = new Config();
+
+        assertTrue(cache.put(a, configA));
+        assertTrue(cache.put(b, new Config()));
+        assertSame(configA, cache.getIfPresent(a));
+        assertTrue(cache.put(c, new Config()));
+
+        assertEquals(2, cache.size());
+        assertEquals(80, cache.getRetainedBytes());
+        assertSame(configA, cache.getIfPresent(a));
+        assertNull(cache.getIfPresent(b));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLargeKubeConfigNotCached() throws Exception {
+        ParsedKubeConfigCache cache = new ParsedKubeConfigCache(100);
+        assertFalse(cache.put(ParsedKubeConfigCache.key(fileCredential("a", 101)), new Config()));
+        assertEquals(0, cache.size());
+
+        ParsedKubeConfigCache disabled = new ParsedKubeConfigCache(0);
+        assertFalse(disabled.put(ParsedKubeConfigCache.key(fileCredential("a", 1)), new Config()));
+    }
+
+    @Test
+    public void testSameIdWithDifferentContents() throws Exception {
+        ParsedKubeConfigCache cache = new ParsedKubeConfigCache(100);
+        // e.g. credentials of two folders
+        ParsedKubeConfigCache.Key first = ParsedKubeConfigCache.key(fileCredential("a", 10));
+        ParsedKubeConfigCache.Key second = ParsedKubeConfigCache.key(fileCredential("a", 20));
+        assertNotEquals(first, second);
+        assertEquals(first, ParsedKubeConfigCache.key(fileCredential("a", 10)));
+
+        Config firstConfig = new Config();
+        Config secondConfig = new Config();
+        cache.put(first, firstConfig);
+        cache.put(second, secondConfig);
+
+        assertEquals(2, cache.size());
+        assertEquals(30, cache.getRetainedBytes());
+        assertSame(firstConfig, cache.getIfPresent(first));
+        assertSame(secondConfig, cache.getIfPresent(second));
+    }
+
+    @Test
+    public void testKeyFromSharedDigest() throws Exception {
+        FileCredentialsImpl credentials = fileCredential("a", 10);
+        CredentialsDigest.Secret secret = CredentialsDigest.ofSecret(credentials);
+        assertEquals(10, secret.size);
+        assertEquals(ParsedKubeConfigCache.key(credentials), ParsedKubeConfigCache.key(credentials, secret));
+    }
+
+    @Test
+    public void testOnlyFileCredentials() throws Exception {
+        assertNull(ParsedKubeConfigCache.key(new StringCredentialsImpl(CredentialsScope.GLOBAL, "secret", "secret", Secret.fromString("s3cr3t"))));
+    }
+
+    @Test
+    public void testClearedOnCredentialsChange() throws Exception {
+        ParsedKubeConfigCache.get().put(ParsedKubeConfigCache.key(fileCredential("a", 10)), new Config());
+        CredentialsProvider.lookupStores(r.jenkins).iterator().next().addCredentials(Domain.global(), fileCredential("b", 10));
+        assertEquals(0, ParsedKubeConfigCache.get().size());
+        assertEquals(0, ParsedKubeConfigCache.get().getRetainedBytes());
+    }
+
+    private static FileCredentialsImpl fileCredential(String id, int size) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            content.append('#');
+        }
+        return new FileCredentialsImpl(CredentialsScope.GLOBAL, id, id, "kubeconfig",
+                SecretBytes.fromBytes(content.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
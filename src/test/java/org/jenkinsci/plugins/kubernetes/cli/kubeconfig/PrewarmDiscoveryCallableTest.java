@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrewarmDiscoveryCallableTest {
+    private static final String TOKEN = "a-token";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startFakeApiServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            String body;
+            int status = 200;
+            switch (exchange.getRequestURI().getPath()) {
+                case "/api":
+                    body = "{\"kind\":\"APIVersions\",\"versions\":[\"v1\"]}";
+                    break;
+                case "/apis":
+                    body = "{\"kind\":\"APIGroupList\",\"apiVersion\":\"v1\",\"groups\":["
+                            + "{\"name\":\"apps\",\"versions\":[{\"groupVersion\":\"apps/v1\",\"version\":\"v1\"}],\"preferredVersion\":{\"groupVersion\":\"apps/v1\",\"version\":\"v1\"}},"
+                            + "{\"name\":\"broken.example.com\",\"versions\":[{\"groupVersion\":\"broken.example.com/v1\",\"version\":\"v1\"}],\"preferredVersion\":{\"groupVersion\":\"broken.example.com/v1\",\"version\":\"v1\"}}]}";
+                    break;
+                case "/api/v1":
+                    body = "{\"kind\":\"APIResourceList\",\"groupVersion\":\"v1\",\"resources\":[{\"name\":\"pods\",\"namespaced\":true,\"kind\":\"Pod\",\"verbs\":[\"get\"]}]}";
+                    break;
+                case "/apis/apps/v1":
+                    body = "{\"kind\":\"APIResourceList\",\"groupVersion\":\"apps/v1\",\"resources\":[{\"name\":\"deployments\",\"namespaced\":true,\"kind\":\"Deployment\",\"verbs\":[\"get\"]}]}";
+                    break;
+                default:
+                    status = 503;
+                    body = "{}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopFakeApiServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCacheFolderName() {
+        assertEquals("localhost_6443", PrewarmDiscoveryCallable.cacheFolderName("https://localhost:6443"));
+        assertEquals("10.0.0.1_443/k8s", PrewarmDiscoveryCallable.cacheFolderName("https://10.0.0.1:443/k8s"));
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        String serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        File kubeConfig = tmp.newFile("kubeconfig");
+        Files.write(kubeConfig.toPath(), ("---\n" +
+                "apiVersion: \"v1\"\n" +
+                "clusters:\n" +
+                "- cluster:\n" +
+                "    server: \"" + serverUrl + "\"\n" +
+                "  name: \"k8s\"\n" +
+                "contexts:\n" +
+                "- context:\n" +
+                "    cluster: \"k8s\"\n" +
+                "    user: \"test-credential\"\n" +
+                "  name: \"k8s\"\n" +
+                "current-context: \"k8s\"\n" +
+                "users:\n" +
+                "- name: \"test-credential\"\n" +
+                "  user:\n" +
+                "    token: \"" + TOKEN + "\"\n").getBytes(StandardCharsets.UTF_8));
+        File cache = tmp.newFolder("cache");
+
+        PrewarmDiscoveryCallable.Result result = new PrewarmDiscoveryCallable(
+                Collections.singletonList(kubeConfig.getPath()), cache.getPath()).call();
+
+        assertEquals(1, result.clusters);
+        assertEquals(3, result.documents);
+        assertEquals(1, result.failures);
+        for (String authorization : authorizations) {
+            assertEquals("Bearer " + TOKEN, authorization);
+        }
+
+        File folder = new File(cache, "discovery/127.0.0.1_" + server.getAddress().getPort());
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode groups = mapper.readTree(new File(folder, "servergroups.json"));
+        assertEquals("APIGroupList", groups.get("kind").asText());
+        assertEquals(3, groups.get("groups").size());
+        assertEquals("", groups.get("groups").get(0).get("name").asText());
+        assertEquals("v1", groups.get("groups").get(0).get("preferredVersion").get("groupVersion").asText());
+        assertEquals("apps", groups.get("groups").get(1).get("name").asText());
+
+        assertEquals("Pod", mapper.readTree(new File(folder, "v1/serverresources.json")).get("resources").get(0).get("kind").asText());
+        assertEquals("Deployment", mapper.readTree(new File(folder, "apps/v1/serverresources.json")).get("resources").get(0).get("kind").asText());
+        assertFalse(new File(folder, "broken.example.com/v1/serverresources.json").exists());
+        try (Stream<Path> files = Files.list(new File(folder, "v1").toPath())) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.CredentialsStore;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import com.cloudbees.plugins.credentials.impl.BaseStandardCredentials;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.jenkinsci.plugins.kubernetes.cli.utils.FakeBearerTokenCredentialImpl;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TokenCacheKeyTest {
+    private static final String CREDENTIAL_ID = "token";
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testSameIdInDifferentFoldersDoNotShareTokens() throws Exception {
+        // "Aa" and "BB" have the same String#hashCode
+        FreeStyleBuild a = buildInFolder("team-a", "Aa");
+        FreeStyleBuild b = buildInFolder("team-b", "BB");
+
+        assertEquals("faketoken:bob:Aa", getToken(a));
+        assertEquals("faketoken:bob:BB", getToken(b));
+        assertEquals("faketoken:bob:Aa", getToken(a));
+    }
+
+    @Test
+    public void testKeyCoversSecret() throws Exception {
+        StandardCredentials aa = new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, CREDENTIAL_ID, null, "bob", "Aa");
+        StandardCredentials bb = new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, CREDENTIAL_ID, null, "bob", "BB");
+        StandardCredentials otherAa = new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, CREDENTIAL_ID, null, "bob", "Aa");
+
+        assertNotEquals(TokenCache.credentialsKey(aa), TokenCache.credentialsKey(bb));
+        // providers outside of credentials stores return new instances on every lookup
+        assertEquals(TokenCache.credentialsKey(aa), TokenCache.credentialsKey(otherAa));
+    }
+
+    @Test
+    public void testUnknownSecretsAreNotCached() throws Exception {
+        StandardCredentials credentials = new UnknownTokenCredentials();
+        assertNull(TokenCache.credentialsKey(credentials));
+        assertSame(credentials, TokenCache.get().cachingProducer(credentials));
+    }
+
+    private FreeStyleBuild buildInFolder(String name, String password) throws Exception {
+        Folder folder = r.jenkins.createProject(Folder.class, name);
+        for (CredentialsStore store : CredentialsProvider.lookupStores(folder)) {
+            if (store.getContext() == folder) {
+                store.addCredentials(Domain.global(),
+                        new FakeBearerTokenCredentialImpl(CredentialsScope.GLOBAL, CREDENTIAL_ID, null, "bob", password));
+            }
+        }
+        FreeStyleProject project = folder.createProject(FreeStyleProject.class, "p");
+        return r.buildAndAssertSuccess(project);
+    }
+
+    private static String getToken(FreeStyleBuild build) throws Exception {
+        KubeConfigEnvironment environment = new KubeConfigEnvironment(null, null, build);
+        StandardCredentials credentials = environment.lookupCredentials(CREDENTIAL_ID);
+        assertNotNull(credentials);
+        return TokenCache.get().cachingProducer(credentials)
+                .getToken("https://localhost:6443", null, true);
+    }
+
+    private static final class UnknownTokenCredentials extends BaseStandardCredentials implements TokenProducer {
+        UnknownTokenCredentials() {
+            super(CredentialsScope.GLOBAL, CREDENTIAL_ID, null);
+        }
+
+        @Override
+        public String getToken(String serviceAddress, String caCertData, boolean skipTlsVerify) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.kubernetes.credentials.TokenProducer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the cache against a local stand-in of a token endpoint.
+ */
+public class TokenCacheTest {
+    private static final long NOW = 1_500_000_000_000L;
+
+    private HttpServer server;
+    private String serverUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> nextToken = new AtomicReference<>("token-1");
+    private final AtomicInteger status = new AtomicInteger(200);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+    private final TokenProducer producer = (serviceAddress, caCertData, skipTlsVerify) -> fetchToken(serviceAddress);
+
+    @Before
+    public void startTokenEndpoint() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/oauth/token", exchange -> {
+            requests.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = nextToken.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status.get(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        serverUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopTokenEndpoint() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testTokenIsCached() throws Exception {
+        TokenCache cache = new TokenCache(300, 60, Runnable::run, clock::get);
+        assertEquals("token-1", getToken(cache));
+        nextToken.set("token-2");
+        assertEquals("token-1", getToken(cache));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getRefreshCount());
+    }
+
+    @Test
+    public void testExpiredTokenIsFetchedAgain() throws Exception {
+        TokenCache cache = new TokenCache(300, 60, Runnable::run, clock::get);
+        assertEquals("token-1", getToken(cache));
+        nextToken.set("token-2");
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(301));
+        assertEquals("token-2", getToken(cache));
+
+        assertEquals(2, requests.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testJwtIsRefreshedBeforeExpiry() throws Exception {
+        TokenCache cache = new TokenCache(300, 60, Runnable::run, clock::get);
+        String first = jwt(TimeUnit.MILLISECONDS.toSeconds(NOW) + 100);
+        nextToken.set(first);
+        assertEquals(first, getToken(cache));
+
+        // still valid, but in its last 50 seconds: served while a new one is fetched
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(60));
+        String second = jwt(TimeUnit.MILLISECONDS.toSeconds(NOW) + 1000);
+        nextToken.set(second);
+        assertEquals(first, getToken(cache));
+        assertEquals(second, getToken(cache));
+
+        assertEquals(2, requests.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testConcurrentFetchesAreCoalesced() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TokenCache cache = new TokenCache(300, 60, executor, clock::get);
+            release = new CountDownLatch(1);
+
+            List<Future<String>> builds = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                builds.add(executor.submit(() -> getToken(cache)));
+            }
+            while (cache.getMissCount() < 5) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<String> build : builds) {
+                assertEquals("token-1", build.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, requests.get());
+            assertEquals(1, cache.getRefreshCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailuresAreCounted() throws Exception {
+        TokenCache cache = new TokenCache(300, 60, Runnable::run, clock::get);
+        status.set(500);
+        try {
+            getToken(cache);
+            fail("token endpoint failure should be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("500"));
+        }
+        assertEquals(1, cache.getFailureCount());
+        assertEquals(0, cache.getRefreshCount());
+
+        status.set(200);
+        assertEquals("token-1", getToken(cache));
+        assertEquals(2, requests.get());
+    }
+
+    private String getToken(TokenCache cache) throws IOException {
+        return cache.getToken("cred1234\n" + serverUrl, producer, serverUrl, null, true);
+    }
+
+    private static String fetchToken(String serviceAddress) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(serviceAddress + "/oauth/token").openConnection();
+        int code = connection.getResponseCode();
+        if (code != 200) {
+            throw new IOException("Token endpoint returned " + code);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(readAll(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String jwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(("{\"sub\":\"bob\",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString("sig".getBytes(StandardCharsets.UTF_8));
+    }
+}
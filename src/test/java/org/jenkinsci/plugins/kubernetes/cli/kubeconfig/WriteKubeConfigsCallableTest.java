@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins.kubernetes.cli.kubeconfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteKubeConfigsCallableTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testWritesAllConfigsInOrder() throws Exception {
+        WriteKubeConfigsCallable callable = new WriteKubeConfigsCallable(tmp.getRoot().getPath(), Arrays.asList(
+                "first".getBytes(StandardCharsets.UTF_8),
+                "second".getBytes(StandardCharsets.UTF_8)));
+
+        WriteKubeConfigsCallable.Result result = callable.call();
+
+        assertEquals(2, result.paths.size());
+        assertEquals("first", new String(Files.readAllBytes(Paths.get(result.paths.get(0))), StandardCharsets.UTF_8));
+        assertEquals("second", new String(Files.readAllBytes(Paths.get(result.paths.get(1))), StandardCharsets.UTF_8));
+        assertTrue(new File(result.paths.get(0)).getName().startsWith("kubernetes-cli-plugin-kube"));
+        assertFalse(result.createdWorkspace);
+        assertEquals(new File(System.getProperty("java.io.tmpdir")).getPath(), result.temporaryFolder);
+
+        for (String path : result.paths) {
+            Files.delete(Paths.get(path));
+        }
+    }
+
+    @Test
+    public void testCreatesMissingWorkspace() throws Exception {
+        File workspace = new File(tmp.getRoot(), "missing-workspace");
+        WriteKubeConfigsCallable callable = new WriteKubeConfigsCallable(workspace.getPath(), Arrays.asList(
+                "content".getBytes(StandardCharsets.UTF_8)));
+
+        WriteKubeConfigsCallable.Result result = callable.call();
+
+        assertTrue(result.createdWorkspace);
+        assertTrue(workspace.isDirectory());
+        Files.delete(Paths.get(result.paths.get(0)));
+    }
+
+    @Test
+    public void testWritesToKnownFolder() throws Exception {
+        File folder = tmp.newFolder("known");
+        WriteKubeConfigsCallable callable = new WriteKubeConfigsCallable(tmp.getRoot().getPath(), Arrays.asList(
+                "content".getBytes(StandardCharsets.UTF_8)), Collections.singletonList("/dev/shm"), folder.getPath());
+
+        WriteKubeConfigsCallable.Result result = callable.call();
+
+        assertEquals(folder.getPath(), result.temporaryFolder);
+        assertEquals(folder, new File(result.paths.get(0)).getParentFile());
+        assertFalse(result.memoryBackedUnavailable);
+    }
+
+    @Test
+    public void testFallsBackToTemporaryFolder() throws Exception {
+        WriteKubeConfigsCallable callable = new WriteKubeConfigsCallable(tmp.getRoot().getPath(), Arrays.asList(
+                "content".getBytes(StandardCharsets.UTF_8)), Collections.singletonList(new File(tmp.getRoot(), "missing").getPath()), null);
+
+        WriteKubeConfigsCallable.Result result = callable.call();
+
+        assertTrue(result.memoryBackedUnavailable);
+        assertEquals(new File(System.getProperty("java.io.tmpdir")).getPath(), result.temporaryFolder);
+        Files.delete(Paths.get(result.paths.get(0)));
+    }
+
+    @Test
+    public void testProbesAgainWhenKnownFolderDisappeared() throws Exception {
+        File gone = new File(tmp.getRoot(), "gone");
+        WriteKubeConfigsCallable callable = new WriteKubeConfigsCallable(tmp.getRoot().getPath(), Arrays.asList(
+                "content".getBytes(StandardCharsets.UTF_8)), Collections.singletonList(new File(tmp.getRoot(), "missing").getPath()), gone.getPath());
+
+        WriteKubeConfigsCallable.Result result = callable.call();
+
+        // not recreated without the permissions of a memory-backed folder
+        assertFalse(gone.exists());
+        assertTrue(result.memoryBackedUnavailable);
+        assertEquals(new File(System.getProperty("java.io.tmpdir")).getPath(), result.temporaryFolder);
+        Files.delete(Paths.get(result.paths.get(0)));
+    }
+}
@@ -0,0 +1,7 @@
+node{
+  stage('Run') {
+    withKubeConfig([credentialsId: 'cred1234', serverUrl: 'https://localhost:6443', pruneKubeConfig: true]) {
+      sh 'cat "$KUBECONFIG" > configDump'
+    }
+  }
+}
@@ -0,0 +1,7 @@
+node{
+  stage('Run') {
+    withKubeConfig([credentialsId: 'cred1234', contextName: 'unknown', pruneKubeConfig: true]) {
+      sh 'cat "$KUBECONFIG" > configDump'
+    }
+  }
+}
@@ -0,0 +1,12 @@
+node{
+  label "mocked-kubectl"
+  stage('Run') {
+    withKubeCredentials([
+      [credentialsId: 'cred1234', serverUrl: 'https://localhost:1234'],
+      [credentialsId: 'cred5678', serverUrl: 'https://localhost:5678'],
+      [credentialsId: 'cred9999', serverUrl: 'https://localhost:9999']
+    ]) {
+      echo "File has been configured '${env.KUBECONFIG}'"
+    }
+  }
+}
@@ -0,0 +1,10 @@
+node{
+  stage('Run') {
+    withKubeCredentials(kubectlCredentials: [
+      [credentialsId: 'cred1234', contextName: 'cont1234', clusterName: 'clus1234', serverUrl: 'https://localhost:1234'],
+      [credentialsId: 'cred9999', contextName: 'cont9999', clusterName: 'clus9999', serverUrl: 'https://localhost:9999']
+    ], mergeKubeConfigs: true) {
+      sh 'cat "$KUBECONFIG" > configDump'
+    }
+  }
+}
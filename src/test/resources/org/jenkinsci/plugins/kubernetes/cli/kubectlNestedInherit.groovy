@@ -0,0 +1,10 @@
+node{
+  stage('Run') {
+    withKubeConfig([credentialsId: 'cred1234', serverUrl: 'https://localhost:6443']) {
+      echo "Outer KUBECONFIG ${env.KUBECONFIG}"
+      withKubeConfig([credentialsId: 'cred9999', serverUrl: 'https://localhost:6443', inheritKubeConfig: true]) {
+        echo "Inner KUBECONFIG ${env.KUBECONFIG}"
+      }
+    }
+  }
+}
@@ -0,0 +1,22 @@
+node{
+  def session
+  stage('Open') {
+    session = kubeConfigSession(credentialsId: 'cred1234', serverUrl: 'https://localhost:6443')
+  }
+  stage('Sequential') {
+    withKubeConfigSession(session) {
+      echo "Using session file ${env.KUBECONFIG}"
+    }
+  }
+  stage('Parallel') {
+    parallel first: {
+      withKubeConfigSession(session) {
+        echo "Using session file ${env.KUBECONFIG}"
+      }
+    }, second: {
+      withKubeConfigSession(session) {
+        echo "Using session file ${env.KUBECONFIG}"
+      }
+    }
+  }
+}
@@ -0,0 +1,7 @@
+node{
+  stage('Run') {
+    withKubeConfigSession('kubeconfig-session-42') {
+      echo "Using session file ${env.KUBECONFIG}"
+    }
+  }
+}
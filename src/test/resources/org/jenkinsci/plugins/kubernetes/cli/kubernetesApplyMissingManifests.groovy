@@ -0,0 +1,5 @@
+node{
+  stage('Apply') {
+    kubernetesApply(credentialsId: 'cred1234', serverUrl: 'https://localhost:6443')
+  }
+}
@@ -0,0 +1,5 @@
+node{
+  stage('List') {
+    kubernetesGet(credentialsId: 'cred1234', serverUrl: 'https://localhost:6443', file: 'pods.json')
+  }
+}